@@ -4,6 +4,7 @@ import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPiece;
 import chess.ChessPosition;
+import chess.InvalidMoveException;
 import com.google.gson.Gson;
 import model.*;
 import model.ResponseException;
@@ -12,6 +13,7 @@ import websocket.messages.ServerMessage;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
 
 public class ChessClient {
@@ -21,6 +23,9 @@ public class ChessClient {
     public ListGamesResponse allGames = null;
     private ChessGame.TeamColor teamColor = ChessGame.TeamColor.WHITE;
     private ChessGame currGame = null;
+    // Sequence number of the last game event received and the stream it belongs to, for resuming after a dropped connection
+    private volatile long lastSeq = 0;
+    private volatile Long streamId = null;
 
     private enum State {
             SIGNED_IN,
@@ -52,6 +57,9 @@ public class ChessClient {
             } else if (state == State.SIGNED_IN) {
                 return switch (cmd) {
                     case "creategame" -> createGame(params);
+                    case "findmatch" -> findMatch(params);
+                    case "cancelmatch" -> cancelMatch();
+                    case "leaderboard" -> leaderboard();
                     case "listgames" -> listGames();
                     case "playgame" -> joinGame(params);
                     case "observegame" -> observeGame(params);
@@ -76,7 +84,10 @@ public class ChessClient {
     public String help() {
         if (state == State.SIGNED_IN) {
             return """
-                - createGame <gameName>
+                - createGame <gameName> [minutes] [increment seconds]
+                - findMatch [minutes] [increment seconds]
+                - cancelMatch
+                - leaderboard
                 - listGames
                 - playGame <game #> <teamColor>
                 - observeGame <game #>
@@ -172,11 +183,21 @@ public class ChessClient {
         if (state != State.SIGNED_IN) {
             throw new ResponseException(401, "You must first sign in");
         }
-        if (params.length != 1) {
+        if (params.length < 1 || params.length > 3) {
             throw new ResponseException(400, "You must enter a name for the new game");
         }
         var gameName = params[0];
-        var newGame = new GameData(0, null, null, gameName, null);
+        Integer clockSeconds = null;
+        Integer incrementSeconds = null;
+        try {
+            if (params.length > 1) {
+                clockSeconds = Integer.parseInt(params[1]) * 60;
+                incrementSeconds = params.length > 2 ? Integer.parseInt(params[2]) : 0;
+            }
+        } catch (NumberFormatException e) {
+            throw new ResponseException(400, "The time control must be whole minutes and increment seconds");
+        }
+        var newGame = new CreateGameRequest(gameName, clockSeconds, incrementSeconds);
         try {
             NewGameResponse response = server.createGame(newGame);
             return "You created a new game!";
@@ -185,6 +206,55 @@ public class ChessClient {
         }
     }
 
+    public String findMatch(String[] params) throws ResponseException {
+        if (state != State.SIGNED_IN) {
+            throw new ResponseException(401, "You must first sign in");
+        }
+        if (params.length > 2) {
+            throw new ResponseException(400, "Enter a time control like this: findMatch 10 5");
+        }
+        Integer clockSeconds = null;
+        Integer incrementSeconds = null;
+        try {
+            if (params.length > 0) {
+                clockSeconds = Integer.parseInt(params[0]) * 60;
+                incrementSeconds = params.length > 1 ? Integer.parseInt(params[1]) : 0;
+            }
+        } catch (NumberFormatException e) {
+            throw new ResponseException(400, "The time control must be whole minutes and increment seconds");
+        }
+        try {
+            // The server matches on the rating it keeps for us
+            server.findMatch(new MatchRequest(clockSeconds, incrementSeconds, null));
+            return "Looking for an opponent...";
+        } catch (ResponseException e) {
+            return "Error: unable to find a match";
+        }
+    }
+
+    public String cancelMatch() throws ResponseException {
+        if (state != State.SIGNED_IN) {
+            throw new ResponseException(401, "You must first sign in");
+        }
+        try {
+            server.cancelMatch();
+            return "You left the matchmaking queue";
+        } catch (ResponseException e) {
+            return "Error: unable to leave the queue";
+        }
+    }
+
+    public String leaderboard() throws ResponseException {
+        if (state != State.SIGNED_IN) {
+            throw new ResponseException(401, "You must first sign in");
+        }
+        try {
+            return printLeaderboard(server.leaderboard());
+        } catch (ResponseException e) {
+            return "Error: unable to get the leaderboard";
+        }
+    }
+
     public String listGames() throws ResponseException {
         // make sure user is signIn
         // list all existing games
@@ -223,13 +293,14 @@ public class ChessClient {
 
         var joinGameRequest = new JoinGameRequest(gameID, playerColorString);
         try {
-            teamColor = playerColor;
-            server.joinGame(joinGameRequest);
-            // Enter gameplay state
+            // Check the game exists before taking a seat in it
             var result = checkValidGameID(gameID, playerColor);
             if (!result) {
                 return "Error: unable to play game";
             }
+            teamColor = playerColor;
+            server.joinGame(joinGameRequest);
+            // Enter gameplay state
             state = State.GAMEPLAY;
             return String.format("You joined a game as %s team", playerColorString);
         } catch (ResponseException e) {
@@ -303,12 +374,33 @@ public class ChessClient {
     }
 
     public void onMessage(String msg) {
+        onMessage(new Gson().fromJson(msg, ServerMessage.class));
+    }
+
+    public void onMessage(ServerMessage message) {
         System.out.flush();
-        ServerMessage message = new Gson().fromJson(msg, ServerMessage.class);
+        if (message.getSeq() != null) {
+            // A full load resets the position, since the server may have restarted its numbering
+            boolean fullLoad = message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME;
+            if (fullLoad) {
+                lastSeq = message.getSeq();
+                streamId = message.getStreamId();
+            } else if (Objects.equals(streamId, message.getStreamId())) {
+                lastSeq = Math.max(lastSeq, message.getSeq());
+            }
+        }
         if (message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME) {
             var game = message.getGame();
             currGame = game;
             refreshGame();
+        } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.MOVE) {
+            applyMove(message);
+        } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.MATCH) {
+            teamColor = message.getPlayerColor();
+            state = State.GAMEPLAY;
+            System.out.printf("Found a match! You play %s in game %d%n", teamColor, message.getGameID());
+            // Called on the WebSocket's own thread, so connect from another one
+            Thread.ofVirtual().start(() -> server.playMatch(message.getGameID()));
         } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.ERROR) {
             System.out.printf("%s%n", message.getErrorMessage());
         } else if (message.getServerMessageType() == ServerMessage.ServerMessageType.NOTIFICATION) {
@@ -316,6 +408,42 @@ public class ChessClient {
         }
     }
 
+    public void onDisconnect() {
+        if (state != State.GAMEPLAY) {
+            return;
+        }
+        System.out.println("Connection lost, reconnecting...");
+        // Called on the WebSocket's own thread, so reconnect from another one
+        Thread.ofVirtual().start(() -> {
+            if (!server.resume(streamId, lastSeq)) {
+                System.out.println("Unable to reconnect; leave and rejoin the game");
+            }
+        });
+    }
+
+    private void applyMove(ServerMessage message) {
+        if (currGame == null || message.getPly() <= currGame.getPly()) {
+            // Not in a game yet, or a move we already have
+            return;
+        }
+        if (message.getPly() != currGame.getPly() + 1) {
+            // Missed a move; the server sends the whole game back
+            server.resync();
+            return;
+        }
+        try {
+            currGame.makeMove(message.getMove());
+        } catch (InvalidMoveException e) {
+            server.resync();
+            return;
+        }
+        if (message.getGameState() == ChessGame.GameState.GAME_OVER) {
+            currGame.gameOver();
+            currGame.setWinner(message.getWinner());
+        }
+        refreshGame();
+    }
+
     private String refreshGame() {
         if (currGame != null) {
             BoardUI.drawBoard(currGame.getBoard(), teamColor, null);
@@ -345,6 +473,19 @@ public class ChessClient {
         allGames = server.listGames();
     }
 
+    private String printLeaderboard(LeaderboardResponse leaderboard) {
+        if (leaderboard == null || leaderboard.players().isEmpty()) {
+            return "No rated games have been played";
+        }
+        var board = new StringBuilder();
+        int rank = 1;
+        for (var player : leaderboard.players()) {
+            board.append(String.format("%d. %s %d (±%d, %d games)%n", rank++, player.username(),
+                    Math.round(player.rating()), Math.round(player.deviation()), player.games()));
+        }
+        return board.toString();
+    }
+
     private String printGames(ListGamesResponse allGames) {
         if (allGames == null) {
             return "No games have been listed";
@@ -362,9 +503,15 @@ public class ChessClient {
     }
 
     private boolean checkValidGameID(String gameID, ChessGame.TeamColor playerColor) throws ResponseException {
+        int id;
+        try {
+            id = Integer.parseInt(gameID);
+        } catch (NumberFormatException e) {
+            return false;
+        }
         initGamesList();
         for (var game : allGames.games()) {
-            if (game.gameID() == Integer.parseInt(gameID)) {
+            if (game.gameID() == id) {
                 return true;
             }
         }
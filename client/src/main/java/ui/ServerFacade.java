@@ -13,6 +13,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
 
 public class ServerFacade {
 
@@ -22,6 +23,11 @@ public class ServerFacade {
     private WSClient wsSession;
     private final ChessClient client;
     private String connectedGameId;
+    private static final int RESUME_ATTEMPTS = 5;
+    // WebSocket commands go as binary frames unless started with -Dchess.jsonWebSocket=true
+    private static final boolean BINARY_WEBSOCKET = !Boolean.getBoolean("chess.jsonWebSocket");
+    // Large WebSocket messages arrive compressed unless started with -Dchess.compressWebSocket=false
+    private static final boolean COMPRESS_WEBSOCKET = Boolean.parseBoolean(System.getProperty("chess.compressWebSocket", "true"));
 
     public ServerFacade(ChessClient client, String url) {
         serverHTTPUrl = "http://" + url + "8080";
@@ -52,11 +58,16 @@ public class ServerFacade {
         return makeRequest("POST", path, createGameRequest, NewGameResponse.class);
     }
 
+    public NewGameResponse createGame(CreateGameRequest createGameRequest) throws ResponseException {
+        var path = "/game";
+        return makeRequest("POST", path, createGameRequest, NewGameResponse.class);
+    }
+
     public void joinGame(JoinGameRequest joinGameRequest) throws ResponseException {
         var path = "/game";
         makeRequest("PUT", path, joinGameRequest, Object.class);
         try {
-            wsSession = new WSClient(client, String.format("%s", serverWSUrl));
+            wsSession = new WSClient(client, String.format("%s", serverWSUrl), BINARY_WEBSOCKET);
             connectedGameId = joinGameRequest.gameID();
             connect();
         } catch (Exception e) {
@@ -65,8 +76,55 @@ public class ServerFacade {
         }
     }
 
+    /**
+     * Queues for a match over a new WebSocket; the server answers on it with
+     * a MATCH message once an opponent is found.
+     */
+    public void findMatch(MatchRequest matchRequest) throws ResponseException {
+        try {
+            wsSession = new WSClient(client, String.format("%s", serverWSUrl), BINARY_WEBSOCKET);
+            var command = new UserGameCommand(UserGameCommand.CommandType.MATCH, authToken, null, null)
+                    .withMatchRequest(matchRequest);
+            if (COMPRESS_WEBSOCKET) {
+                command.withCompression();
+            }
+            wsSession.sendUserGameCommand(command);
+        } catch (Exception e) {
+            System.out.printf("Error connecting to websocket: %s%n", e);
+            throw new ResponseException(500, "ERROR");
+        }
+    }
+
+    public void cancelMatch() throws ResponseException {
+        var path = "/match";
+        makeRequest("DELETE", path, null, Object.class);
+    }
+
+    // Connects to the game matchmaking made, on the socket the match arrived on
+    public void playMatch(int gameID) {
+        connectedGameId = String.valueOf(gameID);
+        connect();
+    }
+
+    public LeaderboardResponse leaderboard() throws ResponseException {
+        var path = "/leaderboard";
+        return makeRequest("GET", path, null, LeaderboardResponse.class);
+    }
+
     public ListGamesResponse listGames() throws ResponseException {
-        var path = "/game";
+        // The server sends one page at a time; follow nextCursor until every game is in
+        var games = new ArrayList<GameSummary>();
+        Integer cursor = null;
+        do {
+            var page = listGames(cursor);
+            games.addAll(page.games());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return new ListGamesResponse(games, null);
+    }
+
+    public ListGamesResponse listGames(Integer cursor) throws ResponseException {
+        var path = cursor == null ? "/game" : "/game?cursor=" + cursor;
         return makeRequest("GET", path, null, ListGamesResponse.class);
     }
 
@@ -78,7 +136,11 @@ public class ServerFacade {
     // WS methods
     public void connect() {
         // String msg = "This is my first message from my client";
-        var command = new UserGameCommand(UserGameCommand.CommandType.CONNECT, authToken, Integer.parseInt(connectedGameId), null);
+        var command = new UserGameCommand(UserGameCommand.CommandType.CONNECT, authToken, Integer.parseInt(connectedGameId), null)
+                .withMoveUpdates();
+        if (COMPRESS_WEBSOCKET) {
+            command.withCompression();
+        }
         try {
             wsSession.sendUserGameCommand(command);
         } catch (Exception e) {
@@ -88,7 +150,7 @@ public class ServerFacade {
 
     public void observeGame(String gameID) throws ResponseException {
         try {
-            wsSession = new WSClient(client, String.format("%s", serverWSUrl));
+            wsSession = new WSClient(client, String.format("%s", serverWSUrl), BINARY_WEBSOCKET);
             connectedGameId = gameID;
             connect();
         } catch (Exception e) {
@@ -106,6 +168,47 @@ public class ServerFacade {
         }
     }
 
+    /**
+     * Opens a new WebSocket after a drop and asks for the events missed since lastSeq.
+     * The server sends the whole game instead if streamId is null or no longer its stream.
+     * Retries a few times with a growing pause before giving up.
+     */
+    public boolean resume(Long streamId, long lastSeq) {
+        for (int attempt = 1; attempt <= RESUME_ATTEMPTS; attempt++) {
+            try {
+                wsSession = new WSClient(client, String.format("%s", serverWSUrl), BINARY_WEBSOCKET);
+                var command = new UserGameCommand(UserGameCommand.CommandType.RESUME, authToken, Integer.parseInt(connectedGameId), null)
+                        .withMoveUpdates()
+                        .withLastSeq(lastSeq);
+                if (streamId != null) {
+                    command.withStreamId(streamId);
+                }
+                if (COMPRESS_WEBSOCKET) {
+                    command.withCompression();
+                }
+                wsSession.sendUserGameCommand(command);
+                return true;
+            } catch (Exception e) {
+                try {
+                    Thread.sleep(attempt * 1000L);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    public void resync() {
+        var command = new UserGameCommand(UserGameCommand.CommandType.RESYNC, authToken, Integer.parseInt(connectedGameId), null);
+        try {
+            wsSession.sendUserGameCommand(command);
+        } catch (Exception e) {
+            System.out.printf("Unable to send WS command: %s%n", e);
+        }
+    }
+
     public void leaveGame() {
         var command = new UserGameCommand(UserGameCommand.CommandType.LEAVE, authToken, Integer.parseInt(connectedGameId), null);
         try {
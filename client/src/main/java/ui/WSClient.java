@@ -1,16 +1,25 @@
 package ui;
 
 import com.google.gson.Gson;
+import websocket.BinaryProtocol;
+import websocket.FrameCompression;
 import websocket.commands.UserGameCommand;
 
 import javax.websocket.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 public class WSClient extends Endpoint {
 
     public Session session;
+    private final ChessClient client;
+    // Send commands as binary frames; the server then answers in binary too
+    private final boolean binary;
 
-    public WSClient(ChessClient client, String url) throws Exception {
+    public WSClient(ChessClient client, String url, boolean binary) throws Exception {
+        this.client = client;
+        this.binary = binary;
         URI uri = new URI(url);
         WebSocketContainer container = ContainerProvider.getWebSocketContainer();
         this.session = container.connectToServer(this, uri);
@@ -20,13 +29,38 @@ public class WSClient extends Endpoint {
                 client.onMessage(message);
             }
         });
+        this.session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+            public void onMessage(ByteBuffer message) {
+                if (FrameCompression.isCompressed(message)) {
+                    // Large messages arrive deflated, in whichever format we speak
+                    message = FrameCompression.decompress(message);
+                    if (!binary) {
+                        client.onMessage(StandardCharsets.UTF_8.decode(message).toString());
+                        return;
+                    }
+                }
+                client.onMessage(BinaryProtocol.decodeMessage(message));
+            }
+        });
     }
 
     public void sendUserGameCommand(UserGameCommand command) throws Exception {
+        if (binary) {
+            this.session.getBasicRemote().sendBinary(BinaryProtocol.encode(command));
+            return;
+        }
         String msg = new Gson().toJson(command);
         this.session.getBasicRemote().sendText(msg);
     }
 
     public void onOpen(Session session, EndpointConfig endpointConfig) {
     }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        // Leaving closes normally; anything else is a drop worth resuming from
+        if (closeReason.getCloseCode() != CloseReason.CloseCodes.NORMAL_CLOSURE) {
+            client.onDisconnect();
+        }
+    }
 }
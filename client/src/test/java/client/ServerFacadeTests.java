@@ -2,6 +2,7 @@ package client;
 
 import chess.ChessGame;
 import model.GameData;
+import model.GameSummary;
 import model.JoinGameRequest;
 import model.ListGamesResponse;
 import model.UserData;
@@ -184,10 +185,10 @@ public class ServerFacadeTests {
         response = Assertions.assertDoesNotThrow(() -> serverFacade.createGame(secondGame));
         Assertions.assertEquals(2, response.gameID());
 
-        LinkedList<GameData> games = new LinkedList<GameData>();
-        games.add(firstGame);
-        games.add(secondGame);
-        var expectedGames = new ListGamesResponse(games);
+        LinkedList<GameSummary> games = new LinkedList<GameSummary>();
+        games.add(new GameSummary(1, null, null, "myGame", ChessGame.GameState.IN_PLAY));
+        games.add(new GameSummary(2, null, null, "myGame", ChessGame.GameState.IN_PLAY));
+        var expectedGames = new ListGamesResponse(games, null);
 
         var listGamesResponse = Assertions.assertDoesNotThrow(() -> serverFacade.listGames());
         Assertions.assertEquals(expectedGames, listGamesResponse);
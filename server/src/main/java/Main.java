@@ -1,11 +1,33 @@
 import chess.*;
+import dataaccess.SignedTokenAuthDAO;
 import server.Server;
 
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Base64;
+
 public class Main {
     public static void main(String[] args) {
         var piece = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN);
         System.out.println("♕ 240 Chess Server: " + piece);
-        var server = new Server();
+        // Pass "memory" or "file [path]" to run a single node without MySQL
+        var storage = args.length > 0 ? args[0] : "mysql";
+        var server = switch (storage) {
+            case "memory" -> Server.inMemory();
+            case "file" -> Server.onFile(Path.of(args.length > 1 ? args[1] : "chess.log"));
+            default -> new Server();
+        };
+        // Set -Dchess.archive=<dir> to move finished games into a memory-mapped archive
+        var archiveDir = System.getProperty("chess.archive");
+        if (archiveDir != null) {
+            server = server.withArchive(Path.of(archiveDir), Duration.ofMinutes(1));
+        }
+        // Set -Dchess.tokenSecret=<base64> to issue signed tokens instead of storing them;
+        // servers sharing the secret accept each other's tokens
+        var tokenSecret = System.getProperty("chess.tokenSecret");
+        if (tokenSecret != null) {
+            server = server.withSignedTokens(Base64.getDecoder().decode(tokenSecret), SignedTokenAuthDAO.configuredTokenTtl());
+        }
         server.run(8080);
     }
 }
\ No newline at end of file
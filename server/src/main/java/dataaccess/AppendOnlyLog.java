@@ -0,0 +1,320 @@
+package dataaccess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log on a single file. Every record is framed as
+ * [int length][int crc32][byte type][payload], and type 0 is reserved.
+ * Appends are queued and written by one flusher thread, which fsyncs once
+ * per batch (group commit). When enough records pile up the flusher
+ * rewrites the file from a snapshot.
+ * <p>
+ * Owners change their state before the record reaches disk, so after a
+ * failed write or compaction the log cuts the file back to its last complete
+ * record and hands those records to the owner to rebuild its state from.
+ * Until that succeeds every append fails.
+ */
+class AppendOnlyLog implements Closeable {
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_BATCH = 512;
+
+    record Entry(byte type, byte[] payload) {
+    }
+
+    private record Pending(Entry entry, CompletableFuture<Void> done) {
+    }
+
+    private final Path path;
+    private final int compactEvery;
+    private final Lock stateLock;
+    private final Supplier<List<Entry>> snapshot;
+    private final Consumer<List<Entry>> restore;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+    private FileChannel channel;
+    private Thread flusher;
+    private volatile boolean running;
+    private volatile boolean compactionRequested;
+    private int appendedSinceCompaction = 0;
+    // End of the last record known to be on disk; the flusher's alone, like channel
+    private long committedSize = 0;
+    // Set when recovering from a failed write failed too, so the next batch retries it first
+    private boolean damaged = false;
+
+    /**
+     * @param compactEvery number of appended records after which the log is compacted
+     * @param stateLock    lock the owner holds while changing state and calling append,
+     *                     taken during compaction so the snapshot matches the queue
+     * @param snapshot     returns records that rebuild the owner's current state
+     * @param restore      replaces the owner's state with the given records, the ones on
+     *                     disk after a failed write; called with stateLock held
+     */
+    AppendOnlyLog(Path path, int compactEvery, Lock stateLock, Supplier<List<Entry>> snapshot,
+                  Consumer<List<Entry>> restore) {
+        this.path = path;
+        this.compactEvery = compactEvery;
+        this.stateLock = stateLock;
+        this.snapshot = snapshot;
+        this.restore = restore;
+    }
+
+    /**
+     * Reads every intact record, truncates any torn or corrupt tail left by a
+     * crash, and starts the flusher. Must be called once before append.
+     */
+    List<Entry> open() throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var entries = readEntries();
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "append-only-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        return entries;
+    }
+
+    // Reads every intact record and cuts off whatever follows the last one
+    private List<Entry> readEntries() throws IOException {
+        var entries = new ArrayList<Entry>();
+        long position = 0;
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        while (true) {
+            header.clear();
+            if (!readFully(header, position)) {
+                break;
+            }
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 1 || length > MAX_RECORD_SIZE) {
+                break;
+            }
+            var body = ByteBuffer.allocate(length);
+            if (!readFully(body, position + HEADER_SIZE)) {
+                break;
+            }
+            var bytes = body.array();
+            if (checksum(bytes) != checksum) {
+                break;
+            }
+            var payload = new byte[length - 1];
+            System.arraycopy(bytes, 1, payload, 0, payload.length);
+            entries.add(new Entry(bytes[0], payload));
+            position += HEADER_SIZE + length;
+        }
+        if (position < channel.size()) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        channel.position(position);
+        committedSize = position;
+        return entries;
+    }
+
+    /**
+     * Queues a record. The future completes once the record is on disk.
+     */
+    CompletableFuture<Void> append(Entry entry) {
+        var pending = new Pending(entry, new CompletableFuture<Void>());
+        if (!running) {
+            pending.done().completeExceptionally(new IOException("log is closed"));
+            return pending.done();
+        }
+        queue.add(pending);
+        return pending.done();
+    }
+
+    /**
+     * Asks the flusher to compact at the end of its next batch.
+     */
+    void requestCompaction() {
+        compactionRequested = true;
+        // Empty marker record (type 0 is never written) to wake the flusher
+        append(new Entry((byte) 0, new byte[0]));
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        var batch = new ArrayList<Pending>();
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                if (damaged) {
+                    throw new IOException("log has not recovered from a failed write");
+                }
+                writeBatch(batch);
+                appendedSinceCompaction += batch.size();
+                if (compactionRequested || appendedSinceCompaction >= compactEvery) {
+                    compact(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                recover(e, batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void recover(IOException cause, List<Pending> failed) {
+        stateLock.lock();
+        try {
+            // Nothing queued can be written after the records that were lost, so it all fails too
+            queue.drainTo(failed);
+            if (channel.isOpen()) {
+                // Drop any part of the failed batch that did reach the file
+                channel.truncate(committedSize);
+            } else {
+                // Compaction closed it; whichever file is at path now holds only complete records
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            var entries = readEntries();
+            // A compaction that failed with nothing drained lost no changes, so there is nothing to undo
+            if (damaged || failed.stream().anyMatch(p -> !p.done().isDone())) {
+                restore.accept(entries);
+            }
+            damaged = false;
+        } catch (IOException | RuntimeException e) {
+            System.err.printf("Cannot recover log %s: %s%n", path, e.getMessage());
+            damaged = true;
+        } finally {
+            stateLock.unlock();
+        }
+        // Only once memory no longer shows the failed changes; futures already completed stay as they are
+        failed.forEach(p -> p.done().completeExceptionally(cause));
+    }
+
+    private void writeBatch(List<Pending> batch) throws IOException {
+        // One gathering write and one fsync for the whole batch
+        var buffers = new ArrayList<ByteBuffer>();
+        for (var pending : batch) {
+            if (pending.entry().type() != 0) {
+                buffers.add(encode(pending.entry()));
+            }
+        }
+        writeAll(channel, buffers);
+        channel.force(false);
+        committedSize = channel.position();
+        batch.forEach(p -> p.done().complete(null));
+    }
+
+    // On failure the records drained from the queue are added to batch, to fail with it
+    private void compact(List<Pending> batch) throws IOException {
+        // Everything still queued is already reflected in the snapshot, so it
+        // becomes durable with the snapshot instead of being appended again
+        var drained = new ArrayList<Pending>();
+        List<Entry> entries;
+        stateLock.lock();
+        try {
+            queue.drainTo(drained);
+            entries = snapshot.get();
+        } finally {
+            stateLock.unlock();
+        }
+        try {
+            var compacted = path.resolveSibling(path.getFileName() + ".compact");
+            try (var out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                var buffers = new ArrayList<ByteBuffer>();
+                for (var entry : entries) {
+                    buffers.add(encode(entry));
+                }
+                writeAll(out, buffers);
+                out.force(true);
+            }
+            // A crash before the move leaves the old log in place; the leftover file is overwritten next time
+            channel.close();
+            try {
+                Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // The compacted log if the move worked, else the old one, which is still complete
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                committedSize = channel.size();
+                channel.position(committedSize);
+            }
+        } catch (IOException e) {
+            batch.addAll(drained);
+            throw e;
+        }
+        appendedSinceCompaction = 0;
+        compactionRequested = false;
+        drained.forEach(p -> p.done().complete(null));
+    }
+
+    private static void writeAll(FileChannel out, List<ByteBuffer> buffers) throws IOException {
+        var array = buffers.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (var buffer : array) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= out.write(array);
+        }
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        var body = new byte[entry.payload().length + 1];
+        body[0] = entry.type();
+        System.arraycopy(entry.payload(), 0, body, 1, entry.payload().length);
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(body.length);
+        buffer.putInt(checksum(body));
+        buffer.put(body);
+        return buffer.flip();
+    }
+
+    private static int checksum(byte[] bytes) {
+        var crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
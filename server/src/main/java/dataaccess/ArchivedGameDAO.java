@@ -0,0 +1,160 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import model.GameSummary;
+import model.ListGamesRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GameDAO that moves finished games out of the live store and into a
+ * GameArchive. getGame still finds archived games, so they can be replayed;
+ * listings and seat changes only see live games.
+ */
+public class ArchivedGameDAO extends DataAccess.GameDAO implements Closeable {
+    public static final int ARCHIVE_BATCH_SIZE = 500;
+
+    private final DataAccess.GameDAO live;
+    private final GameArchive archive;
+    private ScheduledExecutorService archiver;
+
+    public ArchivedGameDAO(DataAccess.GameDAO live, GameArchive archive) throws DataAccessException {
+        this.live = live;
+        this.archive = archive;
+        // The live store may have forgotten IDs it handed out before a restart; new games must not reuse them
+        live.reserveGameIDs(archive.highestGameID());
+    }
+
+    /**
+     * Archives finished games every interval on a background thread until closed.
+     */
+    public void start(Duration interval) {
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "game-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(this::archiveQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Moves up to one batch of GAME_OVER games from the live store into the archive.
+     *
+     * @return number of games moved
+     */
+    public synchronized int archiveFinishedGames() throws DataAccessException {
+        int moved = 0;
+        for (var summary : live.getGamesByStatus(ChessGame.GameState.GAME_OVER, ARCHIVE_BATCH_SIZE)) {
+            var gameData = live.getGame(summary.gameID());
+            if (gameData == null) {
+                continue;
+            }
+            try {
+                // A game already in the archive was copied before a crash; just finish the move.
+                // Only a copy of this very game counts: a different game under the same ID stays live.
+                if (archive.contains(gameData.gameID()) ? !archive.containsCopy(gameData) : !archive.append(gameData)) {
+                    continue;
+                }
+            } catch (IOException e) {
+                throw new DataAccessException("Error: cannot write to archive");
+            }
+            live.deleteGame(gameData.gameID());
+            moved++;
+        }
+        return moved;
+    }
+
+    public GameData createGame(GameData gameData) throws DataAccessException {
+        return live.createGame(gameData);
+    }
+
+    public GameData getGame(int gameId) throws DataAccessException {
+        var gameData = live.getGame(gameId);
+        if (gameData != null) {
+            return gameData;
+        }
+        try {
+            return archive.get(gameId);
+        } catch (IOException e) {
+            throw new DataAccessException("Error: cannot read archive");
+        }
+    }
+
+    public void updateGame(GameData gameData) throws DataAccessException {
+        live.updateGame(gameData);
+    }
+
+    public void updateGameState(int gameId, ChessGame game) throws DataAccessException {
+        live.updateGameState(gameId, game);
+    }
+
+    public DataAccess.SeatClaim claimSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+        return live.claimSeat(gameId, color, username);
+    }
+
+    public void releaseSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+        live.releaseSeat(gameId, color, username);
+    }
+
+    public void deleteGame(int gameId) throws DataAccessException {
+        live.deleteGame(gameId);
+    }
+
+    public List<GameData> getGames() throws DataAccessException {
+        return live.getGames();
+    }
+
+    public List<GameSummary> listGames(ListGamesRequest request, int limit) throws DataAccessException {
+        return live.listGames(request, limit);
+    }
+
+    public List<GameSummary> getGamesByPlayer(String username, int limit) throws DataAccessException {
+        return live.getGamesByPlayer(username, limit);
+    }
+
+    public List<GameSummary> getGamesByStatus(ChessGame.GameState status, int limit) throws DataAccessException {
+        return live.getGamesByStatus(status, limit);
+    }
+
+    public List<GameSummary> getGamesActiveSince(Instant since, int limit) throws DataAccessException {
+        return live.getGamesActiveSince(since, limit);
+    }
+
+    public void reserveGameIDs(int throughGameId) throws DataAccessException {
+        live.reserveGameIDs(throughGameId);
+    }
+
+    public synchronized void clearAllGames() throws DataAccessException {
+        // Game IDs start over after a clear, so archived IDs would collide with new games
+        live.clearAllGames();
+        try {
+            archive.clear();
+        } catch (IOException e) {
+            throw new DataAccessException("Error: cannot clear archive");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (archiver != null) {
+            archiver.shutdown();
+        }
+        archive.close();
+    }
+
+    private void archiveQuietly() {
+        try {
+            archiveFinishedGames();
+        } catch (DataAccessException e) {
+            System.err.printf("Game archiving failed: %s%n", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dataaccess;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically deletes expired auth tokens in small batches. Each batch is
+ * its own short statement, with a pause between batches so the sweep never
+ * holds locks that logins and lookups would queue behind.
+ */
+public class AuthTokenSweeper implements Closeable {
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int MAX_BATCHES_PER_RUN = 200;
+    private static final long PAUSE_BETWEEN_BATCHES_MILLIS = 50;
+
+    private final DataAccess.AuthDAO authDAO;
+    private final int batchSize;
+    private ScheduledExecutorService sweeper;
+    private long swept = 0;
+
+    public AuthTokenSweeper(DataAccess.AuthDAO authDAO, int batchSize) {
+        this.authDAO = authDAO;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sweeps every interval on a background thread until closed.
+     */
+    public void start(Duration interval) {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "auth-token-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deletes expired tokens until a batch comes back short or the per-run cap is hit.
+     *
+     * @return number of tokens deleted
+     */
+    public synchronized int sweep() throws DataAccessException {
+        int deleted = 0;
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+            int removed = authDAO.deleteExpiredAuth(batchSize);
+            deleted += removed;
+            if (removed < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(PAUSE_BETWEEN_BATCHES_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        swept += deleted;
+        return deleted;
+    }
+
+    public synchronized long totalSwept() {
+        return swept;
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (DataAccessException e) {
+            System.err.printf("Auth token sweep failed: %s%n", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package dataaccess;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small pool of long-lived MySQL connections, each with its own cache of
+ * prepared statements keyed by SQL text. Callers keep the usual
+ * try-with-resources pattern: closing a pooled connection returns it to the
+ * pool, and closing a cached statement only clears its parameters.
+ * Public only so its Stats can be served by admin routes.
+ */
+public class ConnectionPool {
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 30_000;
+    private static final long CHECKOUT_TIMEOUT_MILLIS = 5_000;
+
+    interface Connector {
+        Connection connect() throws SQLException;
+    }
+
+    public record Stats(long statementHits, long statementMisses, int openConnections, int idleConnections) {
+    }
+
+    private final Connector connector;
+    private final int maxConnections;
+    private final int statementsPerConnection;
+    private final LinkedBlockingDeque<Pooled> idle = new LinkedBlockingDeque<Pooled>();
+    private final AtomicInteger open = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ConnectionPool(Connector connector, int maxConnections, int statementsPerConnection) {
+        this.connector = connector;
+        this.maxConnections = maxConnections;
+        this.statementsPerConnection = statementsPerConnection;
+    }
+
+    Connection getConnection() throws DataAccessException {
+        try {
+            var pooled = checkout();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(pooled));
+        } catch (SQLException e) {
+            throw new DataAccessException(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Error: interrupted waiting for a connection");
+        }
+    }
+
+    Stats stats() {
+        return new Stats(hits.get(), misses.get(), open.get(), idle.size());
+    }
+
+    private Pooled checkout() throws SQLException, InterruptedException, DataAccessException {
+        while (true) {
+            var pooled = idle.pollFirst();
+            if (pooled == null) {
+                if (open.incrementAndGet() <= maxConnections) {
+                    try {
+                        return new Pooled(connector.connect());
+                    } catch (SQLException e) {
+                        open.decrementAndGet();
+                        throw e;
+                    }
+                }
+                open.decrementAndGet();
+                pooled = idle.pollFirst(CHECKOUT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (pooled == null) {
+                    throw new DataAccessException("Error: no database connection available");
+                }
+            }
+            // Only ping connections that sat idle long enough for the server to have dropped them
+            long idleFor = System.currentTimeMillis() - pooled.returnedAt;
+            if (idleFor < VALIDATE_AFTER_IDLE_MILLIS || pooled.connection.isValid(1)) {
+                return pooled;
+            }
+            discard(pooled);
+        }
+    }
+
+    private void release(Pooled pooled) {
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+        pooled.returnedAt = System.currentTimeMillis();
+        // Most recently used first, so a burst reuses warm connections and statements
+        idle.offerFirst(pooled);
+    }
+
+    private void discard(Pooled pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.connection.close();
+        } catch (SQLException ignored) {
+            // Already broken
+        }
+    }
+
+    private class Pooled {
+        final Connection connection;
+        // Least recently used statement is closed once the cache is full
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementsPerConnection) {
+                    return false;
+                }
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException ignored) {
+                    // Statement is being dropped anyway
+                }
+                return true;
+            }
+        };
+        long returnedAt = System.currentTimeMillis();
+
+        Pooled(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+        private final Pooled pooled;
+        private boolean closed;
+
+        ConnectionHandler(Pooled pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "isClosed":
+                    return closed || pooled.connection.isClosed();
+                case "prepareStatement":
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    if (args.length == 1 || (args.length == 2 && args[1] instanceof Integer)) {
+                        return cachedStatement(args);
+                    }
+                    break;
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+            }
+            try {
+                return method.invoke(pooled.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private PreparedStatement cachedStatement(Object[] args) throws SQLException {
+            var sql = (String) args[0];
+            var key = args.length == 1 ? sql : args[1] + ":" + sql;
+            var statement = pooled.statements.get(key);
+            if (statement == null || statement.isClosed()) {
+                misses.incrementAndGet();
+                statement = args.length == 1
+                        ? pooled.connection.prepareStatement(sql)
+                        : pooled.connection.prepareStatement(sql, (Integer) args[1]);
+                pooled.statements.put(key, statement);
+            } else {
+                hits.incrementAndGet();
+            }
+            var real = statement;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (p, method, methodArgs) -> {
+                        if (method.getName().equals("close")) {
+                            // Keep the statement prepared on the server for the next caller
+                            real.clearParameters();
+                            return null;
+                        }
+                        try {
+                            return method.invoke(real, methodArgs);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
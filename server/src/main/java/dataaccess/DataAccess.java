@@ -1,26 +1,244 @@
 package dataaccess;
 
+import chess.ChessGame;
 import model.*;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public interface DataAccess {
+    // The *Async variants run the blocking call on a virtual thread, so a slow
+    // query parks a cheap virtual thread instead of a Jetty worker. That needs
+    // Connector/J 9 or later; older drivers block inside synchronized and pin the carrier
+    ExecutorService ASYNC_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    @FunctionalInterface
+    interface Call<T> {
+        T call() throws DataAccessException;
+    }
+
+    /**
+     * Runs a DAO call on ASYNC_EXECUTOR. A DataAccessException completes the
+     * future with a CompletionException whose cause is the original exception.
+     */
+    static <T> CompletableFuture<T> async(Call<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call();
+            } catch (DataAccessException e) {
+                throw new CompletionException(e);
+            }
+        }, ASYNC_EXECUTOR);
+    }
+
+    enum SeatClaim {
+        CLAIMED,
+        TAKEN,
+        NO_GAME
+    }
+
     abstract class AuthDAO {
+        public static final Duration DEFAULT_TOKEN_TTL = Duration.ofHours(12);
+        // Last-used time is only written once it is this stale, so most lookups stay reads
+        public static final Duration TOUCH_INTERVAL = Duration.ofMinutes(1);
+
         public abstract AuthData createAuth(UserData userData) throws DataAccessException;
         public abstract AuthData getAuth(String authToken) throws DataAccessException;
         public abstract void deleteAuth(String authToken) throws DataAccessException;
         public abstract void clearAllAuth() throws DataAccessException;
+
+        /**
+         * Deletes up to limit tokens that have gone unused for longer than the TTL.
+         *
+         * @return number of tokens deleted
+         */
+        public abstract int deleteExpiredAuth(int limit) throws DataAccessException;
+
+        /**
+         * Token TTL from -Dchess.tokenTtlMinutes, or DEFAULT_TOKEN_TTL.
+         */
+        public static Duration configuredTokenTtl() {
+            return Duration.ofMinutes(Long.getLong("chess.tokenTtlMinutes", DEFAULT_TOKEN_TTL.toMinutes()));
+        }
+
+        public CompletableFuture<AuthData> getAuthAsync(String authToken) {
+            return async(() -> getAuth(authToken));
+        }
+
+        public CompletableFuture<Void> deleteAuthAsync(String authToken) {
+            return async(() -> {
+                deleteAuth(authToken);
+                return null;
+            });
+        }
     }
     abstract class UserDAO {
         public abstract UserData getUser(UserData userData) throws DataAccessException;
         public abstract void createUser(UserData userData) throws DataAccessException;
+        public abstract void updatePassword(String username, String passwordHash) throws DataAccessException;
         public abstract void clearAllUsers() throws DataAccessException;
     }
     abstract class GameDAO {
         public abstract GameData createGame(GameData gameData) throws DataAccessException;
         public abstract GameData getGame(int gameId) throws DataAccessException;
         public abstract void updateGame(GameData gameData) throws DataAccessException;
+
+        /**
+         * Writes the board and game state only. Seats are left to claimSeat and
+         * releaseSeat, so a move cannot undo a seat change made meanwhile.
+         */
+        public abstract void updateGameState(int gameId, ChessGame game) throws DataAccessException;
+        public abstract SeatClaim claimSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException;
+        public abstract void releaseSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException;
+        public abstract void deleteGame(int gameId) throws DataAccessException;
         public abstract List<GameData> getGames() throws DataAccessException;
+        public abstract List<GameSummary> listGames(ListGamesRequest request, int limit) throws DataAccessException;
+        public abstract List<GameSummary> getGamesByPlayer(String username, int limit) throws DataAccessException;
+        public abstract List<GameSummary> getGamesByStatus(ChessGame.GameState status, int limit) throws DataAccessException;
+        public abstract List<GameSummary> getGamesActiveSince(Instant since, int limit) throws DataAccessException;
         public abstract void clearAllGames() throws DataAccessException;
+
+        /**
+         * Makes every game created from now on get an ID above throughGameId,
+         * e.g. so new games never reuse the ID of an archived one.
+         */
+        public abstract void reserveGameIDs(int throughGameId) throws DataAccessException;
+
+        public CompletableFuture<SeatClaim> claimSeatAsync(int gameId, ChessGame.TeamColor color, String username) {
+            return async(() -> claimSeat(gameId, color, username));
+        }
+
+        public CompletableFuture<List<GameSummary>> listGamesAsync(ListGamesRequest request, int limit) {
+            return async(() -> listGames(request, limit));
+        }
+
+        public CompletableFuture<List<GameSummary>> getGamesByPlayerAsync(String username, int limit) {
+            return async(() -> getGamesByPlayer(username, limit));
+        }
+    }
+
+    abstract class RatingDAO {
+        /**
+         * Appends a finished game to the result history.
+         *
+         * @return the result with its resultID, which orders it after every earlier result
+         */
+        public abstract GameResult recordResult(GameResult result) throws DataAccessException;
+
+        /**
+         * @return every result, oldest first
+         */
+        public abstract List<GameResult> getResults() throws DataAccessException;
+
+        /**
+         * Inserts or replaces each player's rating, all or none.
+         */
+        public abstract void saveRatings(List<PlayerRating> ratings) throws DataAccessException;
+        public abstract List<PlayerRating> getRatings() throws DataAccessException;
+
+        /**
+         * Deletes the result history and every rating.
+         */
+        public abstract void clearAllRatings() throws DataAccessException;
+    }
+
+    /**
+     * What signed auth tokens need kept: the tokens logged out before they
+     * expire, and the key epoch, which moves on when every token is revoked.
+     */
+    abstract class RevocationDAO {
+        /**
+         * Records a logged-out token until expiresAt, in epoch seconds, after which it fails on its own.
+         */
+        public abstract void revoke(String tokenId, long expiresAt) throws DataAccessException;
+
+        /**
+         * @return every revocation expiring after now, token ID to expiry
+         */
+        public abstract Map<String, Long> getRevocations(long now) throws DataAccessException;
+
+        /**
+         * Deletes up to limit revocations whose tokens expired by now.
+         *
+         * @return number of revocations deleted
+         */
+        public abstract int deleteExpiredRevocations(long now, int limit) throws DataAccessException;
+
+        /**
+         * @return the current key epoch, 0 until the first rotation
+         */
+        public abstract long getKeyEpoch() throws DataAccessException;
+
+        /**
+         * Moves to the next key epoch and deletes every revocation, since tokens
+         * signed in earlier epochs no longer verify.
+         *
+         * @return the new epoch
+         */
+        public abstract long rotateKeyEpoch() throws DataAccessException;
+    }
+
+    /**
+     * Whole-store operations for admin tooling. This base version loops over
+     * the single-row DAO calls; backends override it with batched statements.
+     */
+    class BulkDAO {
+        public static final int DEFAULT_BATCH_SIZE = 1000;
+
+        protected final AuthDAO authDAO;
+        protected final UserDAO userDAO;
+        protected final GameDAO gameDAO;
+
+        public BulkDAO(AuthDAO authDAO, UserDAO userDAO, GameDAO gameDAO) {
+            this.authDAO = authDAO;
+            this.userDAO = userDAO;
+            this.gameDAO = gameDAO;
+        }
+
+        public void clearAll() throws DataAccessException {
+            authDAO.clearAllAuth();
+            userDAO.clearAllUsers();
+            gameDAO.clearAllGames();
+        }
+
+        /**
+         * Inserts users as given, so passwords must already be hashed.
+         *
+         * @return number of users inserted
+         */
+        public int importUsers(List<UserData> users, int batchSize) throws DataAccessException {
+            for (var userData : users) {
+                userDAO.createUser(userData);
+            }
+            return users.size();
+        }
+
+        /**
+         * Inserts games with their players and board, assigning new game IDs.
+         *
+         * @return number of games inserted
+         */
+        public int importGames(List<GameData> games, int batchSize) throws DataAccessException {
+            for (var gameData : games) {
+                var created = gameDAO.createGame(gameData);
+                var game = gameData.game() == null ? created.game() : gameData.game();
+                gameDAO.updateGame(new GameData(created.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game));
+            }
+            return games.size();
+        }
+
+        /**
+         * Imports users, then games. Backends that can override this to make
+         * the whole import one transaction, so a failure leaves neither.
+         */
+        public ImportResponse importAll(List<UserData> users, List<GameData> games, int batchSize) throws DataAccessException {
+            return new ImportResponse(importUsers(users, batchSize), importGames(games, batchSize));
+        }
     }
 }
@@ -8,6 +8,7 @@ public class DatabaseManager {
     private static final String USER;
     private static final String PASSWORD;
     private static final String CONNECTION_URL;
+    private static final ConnectionPool POOL;
 
     /*
      * Load the database information for the db.properties file.
@@ -27,6 +28,10 @@ public class DatabaseManager {
                 var host = props.getProperty("db.host");
                 var port = Integer.parseInt(props.getProperty("db.port"));
                 CONNECTION_URL = String.format("jdbc:mysql://%s:%d", host, port);
+
+                var poolSize = Integer.parseInt(props.getProperty("db.poolSize", "10"));
+                var statementCacheSize = Integer.parseInt(props.getProperty("db.statementCacheSize", "32"));
+                POOL = new ConnectionPool(DatabaseManager::openConnection, poolSize, statementCacheSize);
             }
         } catch (Exception ex) {
             throw new RuntimeException("unable to process db.properties. " + ex.getMessage());
@@ -49,9 +54,10 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
+     * Borrow a pooled connection to the database, with the catalog set based upon
+     * the properties specified in db.properties. Connections to the database should
+     * be short-lived, and you must close the connection when you are done with it;
+     * closing returns it to the pool.
      * The easiest way to do that is with a try-with-resource block.
      * <br/>
      * <code>
@@ -61,12 +67,30 @@ public class DatabaseManager {
      * </code>
      */
     static Connection getConnection() throws DataAccessException {
-        try {
-            var conn = DriverManager.getConnection(CONNECTION_URL, USER, PASSWORD);
-            conn.setCatalog(DATABASE_NAME);
-            return conn;
-        } catch (SQLException e) {
-            throw new DataAccessException(e.getMessage());
-        }
+        return POOL.getConnection();
+    }
+
+    /**
+     * Prepared statement cache hits and misses, and connection counts, since startup.
+     */
+    public static ConnectionPool.Stats poolStats() {
+        return POOL.stats();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        var info = new Properties();
+        info.setProperty("user", USER);
+        info.setProperty("password", PASSWORD);
+        // Prepare statements on the server once per pooled connection; ConnectionPool
+        // keeps them open, so the driver's own client-side cache is not needed
+        info.setProperty("useServerPrepStmts", "true");
+        info.setProperty("cachePrepStmts", "false");
+        info.setProperty("cacheResultSetMetadata", "true");
+        // Track autocommit and catalog locally instead of asking the server
+        info.setProperty("useLocalSessionState", "true");
+        info.setProperty("cacheServerConfiguration", "true");
+        var conn = DriverManager.getConnection(CONNECTION_URL, info);
+        conn.setCatalog(DATABASE_NAME);
+        return conn;
     }
 }
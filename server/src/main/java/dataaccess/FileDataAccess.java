@@ -0,0 +1,599 @@
+package dataaccess;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import model.AuthData;
+import model.GameData;
+import model.GameResult;
+import model.GameSummary;
+import model.ImportResponse;
+import model.ListGamesRequest;
+import model.PlayerRating;
+import model.UserData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps users, auth tokens, games, ratings and token revocations in memory (reusing MemoryDataAccess) and
+ * makes every change durable in an AppendOnlyLog on local disk. The log is
+ * replayed on startup, so the server can run without MySQL.
+ */
+public class FileDataAccess implements DataAccess, Closeable {
+    public static final int DEFAULT_COMPACT_EVERY = 10_000;
+
+    private static final byte PUT_USER = 1;
+    private static final byte PUT_AUTH = 2;
+    private static final byte DELETE_AUTH = 3;
+    private static final byte CLEAR_AUTH = 4;
+    private static final byte CLEAR_USERS = 5;
+    private static final byte PUT_GAME = 6;
+    private static final byte CLEAR_GAMES = 7;
+    private static final byte DELETE_GAME = 8;
+    private static final byte PUT_RESULT = 9;
+    private static final byte PUT_RATING = 10;
+    private static final byte CLEAR_RATINGS = 11;
+    private static final byte REVOKE_TOKEN = 12;
+    private static final byte KEY_EPOCH = 13;
+
+    // A REVOKE_TOKEN record
+    private record Revocation(String tokenId, long expiresAt) {
+    }
+
+    private final MemoryDataAccess.AuthDAO auths = new MemoryDataAccess.AuthDAO();
+    private final MemoryDataAccess.UserDAO users = new MemoryDataAccess.UserDAO();
+    private final MemoryDataAccess.GameDAO games = new MemoryDataAccess.GameDAO();
+    private final MemoryDataAccess.RatingDAO ratings = new MemoryDataAccess.RatingDAO();
+    private final MemoryDataAccess.RevocationDAO revocations = new MemoryDataAccess.RevocationDAO();
+    // Held while a change is applied in memory and queued for the log, so the
+    // log order always matches the order changes were made
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private final Gson gson = new Gson();
+    private final AppendOnlyLog log;
+
+    public FileDataAccess(Path logFile) throws DataAccessException {
+        this(logFile, DEFAULT_COMPACT_EVERY);
+    }
+
+    public FileDataAccess(Path logFile, int compactEvery) throws DataAccessException {
+        log = new AppendOnlyLog(logFile, compactEvery, stateLock, this::snapshot, this::restore);
+        try {
+            for (var entry : log.open()) {
+                replay(entry);
+            }
+        } catch (IOException e) {
+            throw new DataAccessException(String.format("Unable to open log: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * Rewrites the log from current state on the flusher thread.
+     */
+    public void compact() {
+        log.requestCompaction();
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    public static class AuthDAO extends DataAccess.AuthDAO {
+        private final FileDataAccess store;
+
+        public AuthDAO(FileDataAccess store) {
+            this.store = store;
+        }
+
+        public AuthData createAuth(UserData userData) throws DataAccessException {
+            CompletableFuture<Void> written;
+            AuthData authData;
+            store.stateLock.lock();
+            try {
+                authData = store.auths.createAuth(userData);
+                written = store.append(PUT_AUTH, authData);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+            return authData;
+        }
+
+        public AuthData getAuth(String authToken) throws DataAccessException {
+            return store.auths.getAuth(authToken);
+        }
+
+        public void deleteAuth(String authToken) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.auths.deleteAuth(authToken);
+                written = store.append(DELETE_AUTH, authToken);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public void clearAllAuth() throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.auths.clearAllAuth();
+                written = store.append(CLEAR_AUTH, "");
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public int deleteExpiredAuth(int limit) throws DataAccessException {
+            var written = new ArrayList<CompletableFuture<Void>>();
+            store.stateLock.lock();
+            try {
+                for (var authToken : store.auths.expiredTokens(limit)) {
+                    store.auths.discardAuth(authToken);
+                    written.add(store.append(DELETE_AUTH, authToken));
+                }
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.awaitAll(written);
+            return written.size();
+        }
+    }
+
+    public static class UserDAO extends DataAccess.UserDAO {
+        private final FileDataAccess store;
+
+        public UserDAO(FileDataAccess store) {
+            this.store = store;
+        }
+
+        public UserData getUser(UserData userData) throws DataAccessException {
+            return store.users.getUser(userData);
+        }
+
+        public void createUser(UserData userData) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.users.createUser(userData);
+                written = store.append(PUT_USER, userData);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public void updatePassword(String username, String passwordHash) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.users.updatePassword(username, passwordHash);
+                // PUT_USER replaces the whole user on replay
+                written = store.append(PUT_USER, store.users.getUser(new UserData(username, null, null)));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public void clearAllUsers() throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.users.clearAllUsers();
+                written = store.append(CLEAR_USERS, "");
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+    }
+
+    public static class GameDAO extends DataAccess.GameDAO {
+        private final FileDataAccess store;
+
+        public GameDAO(FileDataAccess store) {
+            this.store = store;
+        }
+
+        public GameData createGame(GameData gameData) throws DataAccessException {
+            CompletableFuture<Void> written;
+            GameData newGame;
+            store.stateLock.lock();
+            try {
+                newGame = store.games.createGame(gameData);
+                written = store.append(PUT_GAME, newGame);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+            return newGame;
+        }
+
+        public GameData getGame(int gameId) throws DataAccessException {
+            return store.games.getGame(gameId);
+        }
+
+        public void updateGame(GameData gameData) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.games.updateGame(gameData);
+                written = store.append(PUT_GAME, gameData);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public void updateGameState(int gameId, ChessGame game) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.games.updateGameState(gameId, game);
+                written = store.append(PUT_GAME, store.games.getGame(gameId));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public SeatClaim claimSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            CompletableFuture<Void> written = null;
+            SeatClaim claim;
+            store.stateLock.lock();
+            try {
+                claim = store.games.claimSeat(gameId, color, username);
+                if (claim == SeatClaim.CLAIMED) {
+                    written = store.append(PUT_GAME, store.games.getGame(gameId));
+                }
+            } finally {
+                store.stateLock.unlock();
+            }
+            if (written != null) {
+                store.await(written);
+            }
+            return claim;
+        }
+
+        public void releaseSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            CompletableFuture<Void> written = null;
+            store.stateLock.lock();
+            try {
+                store.games.releaseSeat(gameId, color, username);
+                var gameData = store.games.getGame(gameId);
+                if (gameData != null) {
+                    written = store.append(PUT_GAME, gameData);
+                }
+            } finally {
+                store.stateLock.unlock();
+            }
+            if (written != null) {
+                store.await(written);
+            }
+        }
+
+        public void deleteGame(int gameId) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.games.deleteGame(gameId);
+                written = store.append(DELETE_GAME, Integer.toString(gameId));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public List<GameData> getGames() throws DataAccessException {
+            return store.games.getGames();
+        }
+
+        public List<GameSummary> listGames(ListGamesRequest request, int limit) throws DataAccessException {
+            return store.games.listGames(request, limit);
+        }
+
+        public List<GameSummary> getGamesByPlayer(String username, int limit) throws DataAccessException {
+            return store.games.getGamesByPlayer(username, limit);
+        }
+
+        public List<GameSummary> getGamesByStatus(ChessGame.GameState status, int limit) throws DataAccessException {
+            return store.games.getGamesByStatus(status, limit);
+        }
+
+        public List<GameSummary> getGamesActiveSince(Instant since, int limit) throws DataAccessException {
+            return store.games.getGamesActiveSince(since, limit);
+        }
+
+        public void clearAllGames() throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.games.clearAllGames();
+                written = store.append(CLEAR_GAMES, "");
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public void reserveGameIDs(int throughGameId) throws DataAccessException {
+            // Not logged: the caller reserves again on every start, before creating games
+            store.games.reserveGameIDs(throughGameId);
+        }
+    }
+
+    public static class RatingDAO extends DataAccess.RatingDAO {
+        private final FileDataAccess store;
+
+        public RatingDAO(FileDataAccess store) {
+            this.store = store;
+        }
+
+        public GameResult recordResult(GameResult result) throws DataAccessException {
+            CompletableFuture<Void> written;
+            GameResult recorded;
+            store.stateLock.lock();
+            try {
+                recorded = store.ratings.recordResult(result);
+                written = store.append(PUT_RESULT, recorded);
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+            return recorded;
+        }
+
+        public List<GameResult> getResults() throws DataAccessException {
+            return store.ratings.getResults();
+        }
+
+        public void saveRatings(List<PlayerRating> ratings) throws DataAccessException {
+            var written = new ArrayList<CompletableFuture<Void>>();
+            store.stateLock.lock();
+            try {
+                store.ratings.saveRatings(ratings);
+                for (var rating : ratings) {
+                    written.add(store.append(PUT_RATING, rating));
+                }
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.awaitAll(written);
+        }
+
+        public List<PlayerRating> getRatings() throws DataAccessException {
+            return store.ratings.getRatings();
+        }
+
+        public void clearAllRatings() throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.ratings.clearAllRatings();
+                written = store.append(CLEAR_RATINGS, "");
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+    }
+
+    public static class RevocationDAO extends DataAccess.RevocationDAO {
+        private final FileDataAccess store;
+
+        public RevocationDAO(FileDataAccess store) {
+            this.store = store;
+        }
+
+        public void revoke(String tokenId, long expiresAt) throws DataAccessException {
+            CompletableFuture<Void> written;
+            store.stateLock.lock();
+            try {
+                store.revocations.revoke(tokenId, expiresAt);
+                written = store.append(REVOKE_TOKEN, new Revocation(tokenId, expiresAt));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+        }
+
+        public Map<String, Long> getRevocations(long now) throws DataAccessException {
+            return store.revocations.getRevocations(now);
+        }
+
+        public int deleteExpiredRevocations(long now, int limit) throws DataAccessException {
+            // Not logged: replayed revocations that have expired are dropped again, and compaction leaves them out
+            return store.revocations.deleteExpiredRevocations(now, limit);
+        }
+
+        public long getKeyEpoch() throws DataAccessException {
+            return store.revocations.getKeyEpoch();
+        }
+
+        public long rotateKeyEpoch() throws DataAccessException {
+            CompletableFuture<Void> written;
+            long epoch;
+            store.stateLock.lock();
+            try {
+                epoch = store.revocations.rotateKeyEpoch();
+                written = store.append(KEY_EPOCH, Long.toString(epoch));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.await(written);
+            return epoch;
+        }
+    }
+
+    public static class BulkDAO extends DataAccess.BulkDAO {
+        private final FileDataAccess store;
+
+        public BulkDAO(FileDataAccess store) {
+            super(new AuthDAO(store), new UserDAO(store), new GameDAO(store));
+            this.store = store;
+        }
+
+        public void clearAll() throws DataAccessException {
+            var written = new ArrayList<CompletableFuture<Void>>();
+            store.stateLock.lock();
+            try {
+                store.auths.clearAllAuth();
+                store.users.clearAllUsers();
+                store.games.clearAllGames();
+                written.add(store.append(CLEAR_AUTH, ""));
+                written.add(store.append(CLEAR_USERS, ""));
+                written.add(store.append(CLEAR_GAMES, ""));
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.awaitAll(written);
+        }
+
+        public int importUsers(List<UserData> users, int batchSize) throws DataAccessException {
+            return importAll(users, List.of(), batchSize).users();
+        }
+
+        public int importGames(List<GameData> games, int batchSize) throws DataAccessException {
+            return importAll(List.of(), games, batchSize).games();
+        }
+
+        public ImportResponse importAll(List<UserData> users, List<GameData> games, int batchSize) throws DataAccessException {
+            // Queue every record, then wait once; the flusher writes them in batches of its own
+            var written = new ArrayList<CompletableFuture<Void>>();
+            store.stateLock.lock();
+            try {
+                // Reject the whole import up front, like the single MySQL transaction would
+                var usernames = new HashSet<String>();
+                for (var userData : users) {
+                    if (userData.username() == null || !usernames.add(userData.username()) || store.users.getUser(userData) != null) {
+                        throw new DataAccessException("Error: cannot import rows");
+                    }
+                }
+                for (var userData : users) {
+                    store.users.createUser(userData);
+                    written.add(store.append(PUT_USER, userData));
+                }
+                for (var gameData : games) {
+                    var created = store.games.createGame(gameData);
+                    var game = gameData.game() == null ? created.game() : gameData.game();
+                    var imported = new GameData(created.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
+                    store.games.updateGame(imported);
+                    written.add(store.append(PUT_GAME, imported));
+                }
+            } finally {
+                store.stateLock.unlock();
+            }
+            store.awaitAll(written);
+            return new ImportResponse(users.size(), games.size());
+        }
+    }
+
+    private CompletableFuture<Void> append(byte type, Object value) {
+        // Serialize while the state lock is held so the record matches what is in memory
+        var payload = value instanceof String text ? text : gson.toJson(value);
+        return log.append(new AppendOnlyLog.Entry(type, payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void await(CompletableFuture<Void> written) throws DataAccessException {
+        try {
+            written.join();
+        } catch (Exception e) {
+            throw new DataAccessException("Error: cannot write to log");
+        }
+    }
+
+    private void awaitAll(List<CompletableFuture<Void>> written) throws DataAccessException {
+        await(CompletableFuture.allOf(written.toArray(new CompletableFuture<?>[0])));
+    }
+
+    private void replay(AppendOnlyLog.Entry entry) throws DataAccessException {
+        // Every record is idempotent, so replaying one that a snapshot already covers is harmless
+        var payload = new String(entry.payload(), StandardCharsets.UTF_8);
+        switch (entry.type()) {
+            case PUT_USER -> users.restoreUser(gson.fromJson(payload, UserData.class));
+            case PUT_AUTH -> auths.restoreAuth(gson.fromJson(payload, AuthData.class));
+            case DELETE_AUTH -> auths.discardAuth(payload);
+            case CLEAR_AUTH -> auths.clearAllAuth();
+            case CLEAR_USERS -> users.clearAllUsers();
+            case PUT_GAME -> games.restoreGame(gson.fromJson(payload, GameData.class));
+            case CLEAR_GAMES -> games.clearAllGames();
+            case DELETE_GAME -> games.deleteGame(Integer.parseInt(payload));
+            case PUT_RESULT -> ratings.restoreResult(gson.fromJson(payload, GameResult.class));
+            case PUT_RATING -> ratings.saveRatings(List.of(gson.fromJson(payload, PlayerRating.class)));
+            case CLEAR_RATINGS -> ratings.clearAllRatings();
+            case REVOKE_TOKEN -> {
+                var revocation = gson.fromJson(payload, Revocation.class);
+                revocations.revoke(revocation.tokenId(), revocation.expiresAt());
+            }
+            case KEY_EPOCH -> revocations.restoreKeyEpoch(Long.parseLong(payload));
+            default -> throw new DataAccessException(String.format("Unknown log record type %d", entry.type()));
+        }
+    }
+
+    private void restore(List<AppendOnlyLog.Entry> entries) {
+        // Called by the log with stateLock held after a failed write, to drop changes that never reached disk.
+        // Lookups that skip the lock can see the state half rebuilt, but only after a disk failure.
+        int lastGameID = games.lastGameID();
+        try {
+            auths.clearAllAuth();
+            users.clearAllUsers();
+            games.clearAllGames();
+            ratings.clearAllRatings();
+            revocations.restoreKeyEpoch(0);
+            for (var entry : entries) {
+                replay(entry);
+            }
+            // IDs handed out or reserved since stay used
+            games.reserveGameIDs(lastGameID);
+        } catch (DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private List<AppendOnlyLog.Entry> snapshot() {
+        // Records that rebuild the current state; called by the log with stateLock held
+        var entries = new ArrayList<AppendOnlyLog.Entry>();
+        for (var userData : users.allUsers()) {
+            entries.add(encode(PUT_USER, userData));
+        }
+        for (var authData : auths.allAuth()) {
+            entries.add(encode(PUT_AUTH, authData));
+        }
+        try {
+            for (var gameData : games.getGames()) {
+                entries.add(encode(PUT_GAME, gameData));
+            }
+            for (var result : ratings.getResults()) {
+                entries.add(encode(PUT_RESULT, result));
+            }
+            for (var rating : ratings.getRatings()) {
+                entries.add(encode(PUT_RATING, rating));
+            }
+            // The epoch first, since replaying it clears revocations
+            entries.add(new AppendOnlyLog.Entry(KEY_EPOCH, Long.toString(revocations.getKeyEpoch()).getBytes(StandardCharsets.UTF_8)));
+            long now = Instant.now().getEpochSecond();
+            revocations.getRevocations(now).forEach((tokenId, expiresAt) ->
+                    entries.add(encode(REVOKE_TOKEN, new Revocation(tokenId, expiresAt))));
+        } catch (DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+        return entries;
+    }
+
+    private AppendOnlyLog.Entry encode(byte type, Object value) {
+        return new AppendOnlyLog.Entry(type, gson.toJson(value).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,225 @@
+package dataaccess;
+
+import com.google.gson.Gson;
+import model.GameData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Read-mostly store for finished games. Games are written once into
+ * fixed-size slots of memory-mapped segment files (archive-00000.seg, ...)
+ * and found again through an in-memory gameID to slot index that is rebuilt
+ * by scanning the segments on startup.
+ * <p>
+ * Slot layout: [int gameID][int length][int crc32][deflated GameData json].
+ * The gameID is written last, so a slot with gameID 0 was never completed.
+ */
+public class GameArchive implements Closeable {
+    public static final int RECORD_SIZE = 2048;
+    public static final int RECORDS_PER_SEGMENT = 4096;
+    private static final int HEADER_SIZE = 12;
+    private static final long SEGMENT_SIZE = (long) RECORD_SIZE * RECORDS_PER_SEGMENT;
+
+    private final Path directory;
+    private final Gson gson = new Gson();
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<MappedByteBuffer>();
+    private final ConcurrentHashMap<Integer, Long> index = new ConcurrentHashMap<Integer, Long>();
+    private long nextSlot = 0;
+    private volatile int highestGameID = 0;
+
+    public GameArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+            segments.add(map(segment));
+        }
+        scan();
+    }
+
+    /**
+     * Writes a game into the next free slot.
+     *
+     * @return false if the encoded game does not fit in one slot
+     */
+    public synchronized boolean append(GameData gameData) throws IOException {
+        var payload = deflate(gson.toJson(gameData).getBytes(StandardCharsets.UTF_8));
+        if (payload.length > RECORD_SIZE - HEADER_SIZE) {
+            return false;
+        }
+        int segment = (int) (nextSlot / RECORDS_PER_SEGMENT);
+        if (segment == segments.size()) {
+            segments.add(map(segment));
+        }
+        var buffer = segments.get(segment);
+        int offset = (int) (nextSlot % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+        buffer.putInt(offset + 4, payload.length);
+        buffer.putInt(offset + 8, checksum(payload));
+        buffer.put(offset + HEADER_SIZE, payload);
+        buffer.force(offset, HEADER_SIZE + payload.length);
+        // Publish the slot only once its contents are on disk
+        buffer.putInt(offset, gameData.gameID());
+        buffer.force(offset, 4);
+        index.put(gameData.gameID(), nextSlot);
+        highestGameID = Math.max(highestGameID, gameData.gameID());
+        nextSlot++;
+        return true;
+    }
+
+    /**
+     * @return the archived game, or null if it was never archived
+     */
+    public GameData get(int gameID) throws IOException {
+        var slot = index.get(gameID);
+        if (slot == null) {
+            return null;
+        }
+        var payload = readSlot(slot);
+        if (payload == null) {
+            throw new IOException(String.format("Archive slot %d is corrupt", slot));
+        }
+        return gson.fromJson(new String(inflate(payload), StandardCharsets.UTF_8), GameData.class);
+    }
+
+    public boolean contains(int gameID) {
+        return index.containsKey(gameID);
+    }
+
+    /**
+     * @return true if the game archived under gameData's ID has exactly gameData's contents
+     */
+    public boolean containsCopy(GameData gameData) throws IOException {
+        var slot = index.get(gameData.gameID());
+        if (slot == null) {
+            return false;
+        }
+        var payload = readSlot(slot);
+        return payload != null && Arrays.equals(inflate(payload), gson.toJson(gameData).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the highest gameID ever archived, or 0 if the archive is empty
+     */
+    public int highestGameID() {
+        return highestGameID;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Deletes every segment, e.g. when the live game table is cleared and IDs start over.
+     */
+    public synchronized void clear() throws IOException {
+        index.clear();
+        segments.clear();
+        nextSlot = 0;
+        highestGameID = 0;
+        for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+            Files.delete(segmentPath(segment));
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        segments.forEach(MappedByteBuffer::force);
+    }
+
+    private void scan() {
+        // Slots are filled in order, so the first empty slot is where appends resume
+        long slot = 0;
+        long total = (long) segments.size() * RECORDS_PER_SEGMENT;
+        for (; slot < total; slot++) {
+            var buffer = segments.get((int) (slot / RECORDS_PER_SEGMENT));
+            int gameID = buffer.getInt((int) (slot % RECORDS_PER_SEGMENT) * RECORD_SIZE);
+            if (gameID == 0) {
+                break;
+            }
+            if (readSlot(slot) != null) {
+                index.put(gameID, slot);
+                highestGameID = Math.max(highestGameID, gameID);
+            }
+        }
+        nextSlot = slot;
+    }
+
+    private byte[] readSlot(long slot) {
+        var buffer = segments.get((int) (slot / RECORDS_PER_SEGMENT));
+        int offset = (int) (slot % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+        int length = buffer.getInt(offset + 4);
+        if (length < 1 || length > RECORD_SIZE - HEADER_SIZE) {
+            return null;
+        }
+        var payload = new byte[length];
+        buffer.get(offset + HEADER_SIZE, payload);
+        return checksum(payload) == buffer.getInt(offset + 8) ? payload : null;
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        try (var channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("archive-%05d.seg", segment));
+    }
+
+    private static int checksum(byte[] bytes) {
+        var crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        var deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        deflater.setInput(bytes);
+        deflater.finish();
+        var out = new ByteArrayOutputStream(bytes.length / 4);
+        var chunk = new byte[1024];
+        while (!deflater.finished()) {
+            out.write(chunk, 0, deflater.deflate(chunk));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] bytes) throws IOException {
+        var inflater = new Inflater();
+        inflater.setInput(bytes);
+        var out = new ByteArrayOutputStream(bytes.length * 6);
+        var chunk = new byte[1024];
+        try {
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if (read == 0 && inflater.needsInput()) {
+                    throw new IOException("Truncated archive record");
+                }
+                out.write(chunk, 0, read);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return out.toByteArray();
+    }
+}
@@ -3,84 +3,458 @@ package dataaccess;
 import chess.ChessGame;
 import model.AuthData;
 import model.GameData;
+import model.GameResult;
+import model.GameSummary;
+import model.ListGamesRequest;
+import model.PlayerRating;
 import model.UserData;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+/**
+ * Thread-safe in-memory storage. Safe to share between request threads, so it
+ * can back a single-node server in place of MySqlDataAccess.
+ */
 public class MemoryDataAccess implements DataAccess {
 
     public static class AuthDAO extends DataAccess.AuthDAO {
 
-        private final HashMap<String, AuthData> authMap = new HashMap<String, AuthData>();
+        private final ConcurrentHashMap<String, AuthData> authMap = new ConcurrentHashMap<String, AuthData>();
+        private final ConcurrentHashMap<String, Instant> lastUsedMap = new ConcurrentHashMap<String, Instant>();
+        private final Duration ttl;
+        private final Clock clock;
+
+        public AuthDAO() {
+            this(configuredTokenTtl());
+        }
+
+        public AuthDAO(Duration ttl) {
+            this(ttl, Clock.systemUTC());
+        }
+
+        public AuthDAO(Duration ttl, Clock clock) {
+            this.ttl = ttl;
+            this.clock = clock;
+        }
 
         public AuthData createAuth(UserData userData) throws DataAccessException {
+            if (userData.username() == null) {
+                throw new DataAccessException("Error: cannot create auth");
+            }
             var authToken = UUID.randomUUID().toString();
             var authData = new AuthData(authToken, userData.username());
+            lastUsedMap.put(authToken, clock.instant());
             authMap.put(authToken, authData);
             return authData;
         }
 
         public AuthData getAuth(String authToken) throws DataAccessException {
+            if (authToken == null) {
+                return null;
+            }
+            var lastUsed = lastUsedMap.get(authToken);
+            var now = clock.instant();
+            if (lastUsed == null || isExpired(lastUsed, now)) {
+                return null;
+            }
+            if (lastUsed.isBefore(now.minus(TOUCH_INTERVAL))) {
+                lastUsedMap.replace(authToken, lastUsed, now);
+            }
             return authMap.get(authToken);
         }
 
         public void deleteAuth(String authToken) throws DataAccessException {
-            authMap.remove(authToken);
+            if (authToken == null || authMap.remove(authToken) == null) {
+                throw new DataAccessException("Error: invalid authToken");
+            }
+            lastUsedMap.remove(authToken);
         }
 
         public void clearAllAuth() throws DataAccessException {
             authMap.clear();
+            lastUsedMap.clear();
+        }
+
+        public int deleteExpiredAuth(int limit) throws DataAccessException {
+            var expired = expiredTokens(limit);
+            expired.forEach(this::discardAuth);
+            return expired.size();
+        }
+
+        // Used by FileDataAccess to replay its log and to snapshot state for compaction
+        void restoreAuth(AuthData authData) {
+            // Issue times are not logged, so a restored token starts a fresh TTL
+            lastUsedMap.put(authData.authToken(), clock.instant());
+            authMap.put(authData.authToken(), authData);
+        }
+
+        void discardAuth(String authToken) {
+            authMap.remove(authToken);
+            lastUsedMap.remove(authToken);
+        }
+
+        List<AuthData> allAuth() {
+            return new ArrayList<AuthData>(authMap.values());
+        }
+
+        List<String> expiredTokens(int limit) {
+            var now = clock.instant();
+            return lastUsedMap.entrySet().stream()
+                    .filter(entry -> isExpired(entry.getValue(), now))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+
+        private boolean isExpired(Instant lastUsed, Instant now) {
+            return lastUsed.plus(ttl).isBefore(now);
         }
     }
 
     public static class UserDAO extends DataAccess.UserDAO {
-        private final HashMap<String, UserData> userMap = new HashMap<String, UserData>();
+        private final ConcurrentHashMap<String, UserData> userMap = new ConcurrentHashMap<String, UserData>();
 
         public UserData getUser(UserData userData) throws DataAccessException {
-            return userMap.get(userData.username());
+            return userData.username() == null ? null : userMap.get(userData.username());
         }
 
         public void createUser(UserData userData) throws DataAccessException {
-            userMap.put(userData.username(), userData);
+            if (userData.username() == null || userMap.putIfAbsent(userData.username(), userData) != null) {
+                throw new DataAccessException("Error: cannot create user");
+            }
+        }
+
+        public void updatePassword(String username, String passwordHash) throws DataAccessException {
+            var updated = username == null ? null : userMap.computeIfPresent(username,
+                    (name, userData) -> new UserData(name, passwordHash, userData.email()));
+            if (updated == null) {
+                throw new DataAccessException("Error: cannot update user");
+            }
         }
 
         public void clearAllUsers() throws DataAccessException {
             userMap.clear();
         }
+
+        void restoreUser(UserData userData) {
+            userMap.put(userData.username(), userData);
+        }
+
+        List<UserData> allUsers() {
+            return new ArrayList<UserData>(userMap.values());
+        }
     }
 
     public static class GameDAO extends DataAccess.GameDAO {
-        private final HashMap<Integer, GameData> gameMap = new HashMap<Integer, GameData>();
-        private int gameID = 0;
+        // gameMap gives constant-time lookups, gameIndex keeps IDs sorted for listing,
+        // and playerIndex maps each username to the IDs of the games they sit in
+        private final ConcurrentHashMap<Integer, GameData> gameMap = new ConcurrentHashMap<Integer, GameData>();
+        private final ConcurrentSkipListSet<Integer> gameIndex = new ConcurrentSkipListSet<Integer>();
+        private final ConcurrentHashMap<String, ConcurrentSkipListSet<Integer>> playerIndex = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Integer, Instant> lastActivityMap = new ConcurrentHashMap<Integer, Instant>();
+        private final AtomicInteger gameID = new AtomicInteger();
 
         public GameData createGame(GameData gameData) throws DataAccessException {
-            var game = new ChessGame();
-            gameID++;
-            System.out.println(gameID);
-            var newGame = new GameData(gameID, null, null, gameData.gameName(), game);
-            gameMap.put(gameID, newGame);
+            if (gameData == null) {
+                throw new DataAccessException("Error: cannot create game");
+            }
+            var id = gameID.incrementAndGet();
+            var game = gameData.game() == null ? new ChessGame() : gameData.game();
+            // Seats are normally empty, but a game made by matchmaking starts with both filled
+            var newGame = new GameData(id, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
+            gameMap.put(id, newGame);
+            reindexPlayers(id, null, newGame);
+            lastActivityMap.put(id, Instant.now());
+            gameIndex.add(id);
             return newGame;
         }
 
         public void updateGame(GameData gameData) throws DataAccessException {
-            gameMap.put(gameData.gameID(), gameData);
+            var updated = gameMap.computeIfPresent(gameData.gameID(), (id, oldGame) -> {
+                reindexPlayers(id, oldGame, gameData);
+                return gameData;
+            });
+            if (updated == null) {
+                throw new DataAccessException("Error: cannot update game");
+            }
+            lastActivityMap.put(gameData.gameID(), Instant.now());
+        }
+
+        public void updateGameState(int gameId, ChessGame game) throws DataAccessException {
+            var updated = gameMap.computeIfPresent(gameId, (id, gameData) ->
+                    new GameData(id, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game));
+            if (updated == null) {
+                throw new DataAccessException("Error: cannot update game");
+            }
+            lastActivityMap.put(gameId, Instant.now());
+        }
+
+        public SeatClaim claimSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            var claim = new SeatClaim[]{SeatClaim.NO_GAME};
+            // compute runs atomically per key, so two claims for one game are serialized
+            gameMap.computeIfPresent(gameId, (id, gameData) -> {
+                var current = seatHolder(gameData, color);
+                if (current != null && !current.equals(username)) {
+                    claim[0] = SeatClaim.TAKEN;
+                    return gameData;
+                }
+                claim[0] = SeatClaim.CLAIMED;
+                var updated = withSeat(gameData, color, username);
+                reindexPlayers(id, gameData, updated);
+                return updated;
+            });
+            if (claim[0] == SeatClaim.CLAIMED) {
+                lastActivityMap.put(gameId, Instant.now());
+            }
+            return claim[0];
+        }
+
+        public void releaseSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            gameMap.computeIfPresent(gameId, (id, gameData) -> {
+                if (!Objects.equals(username, seatHolder(gameData, color))) {
+                    return gameData;
+                }
+                var updated = withSeat(gameData, color, null);
+                reindexPlayers(id, gameData, updated);
+                return updated;
+            });
         }
 
         public GameData getGame(int gameId) throws DataAccessException {
             return gameMap.get(gameId);
         }
 
+        public void deleteGame(int gameId) throws DataAccessException {
+            gameMap.computeIfPresent(gameId, (id, gameData) -> {
+                reindexPlayers(id, gameData, null);
+                return null;
+            });
+            gameIndex.remove(gameId);
+            lastActivityMap.remove(gameId);
+        }
+
         public List<GameData> getGames() throws DataAccessException {
-            LinkedList<GameData> gameList= new LinkedList<GameData>();
-            for (int i = 1; i <= gameID; i++) {
-                gameList.add(gameMap.get(i));
+            var gameList = new ArrayList<GameData>();
+            for (var id : gameIndex) {
+                var gameData = gameMap.get(id);
+                if (gameData != null) {
+                    gameList.add(gameData);
+                }
             }
             return gameList;
         }
 
+        public List<GameSummary> listGames(ListGamesRequest request, int limit) throws DataAccessException {
+            int cursor = request.cursor() == null ? 0 : request.cursor();
+            return collectSummaries(gameIndex.tailSet(cursor, false), limit, gameData -> matchesFilter(gameData, request));
+        }
+
+        public List<GameSummary> getGamesByPlayer(String username, int limit) throws DataAccessException {
+            var ids = playerIndex.get(username);
+            if (ids == null) {
+                return new ArrayList<GameSummary>();
+            }
+            return collectSummaries(ids.descendingSet(), limit, gameData -> true);
+        }
+
+        public List<GameSummary> getGamesByStatus(ChessGame.GameState status, int limit) throws DataAccessException {
+            return collectSummaries(gameIndex.descendingSet(), limit, gameData -> gameData.game().getGameState() == status);
+        }
+
+        public List<GameSummary> getGamesActiveSince(Instant since, int limit) throws DataAccessException {
+            return lastActivityMap.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isBefore(since))
+                    .sorted(Map.Entry.<Integer, Instant>comparingByValue().reversed())
+                    .map(entry -> gameMap.get(entry.getKey()))
+                    .filter(Objects::nonNull)
+                    .limit(limit)
+                    .map(this::toSummary)
+                    .toList();
+        }
+
         public void clearAllGames() throws DataAccessException {
+            gameIndex.clear();
             gameMap.clear();
-            gameID = 0;
+            playerIndex.clear();
+            lastActivityMap.clear();
+            gameID.set(0);
+        }
+
+        public void reserveGameIDs(int throughGameId) throws DataAccessException {
+            gameID.accumulateAndGet(throughGameId, Math::max);
+        }
+
+        int lastGameID() {
+            return gameID.get();
+        }
+
+        void restoreGame(GameData gameData) {
+            // Insert or replace a game under its existing ID and keep the ID generator ahead of it
+            var oldGame = gameMap.put(gameData.gameID(), gameData);
+            reindexPlayers(gameData.gameID(), oldGame, gameData);
+            gameIndex.add(gameData.gameID());
+            lastActivityMap.put(gameData.gameID(), Instant.now());
+            gameID.accumulateAndGet(gameData.gameID(), Math::max);
+        }
+
+        private List<GameSummary> collectSummaries(Iterable<Integer> ids, int limit, Predicate<GameData> filter) {
+            var gameList = new ArrayList<GameSummary>();
+            for (var id : ids) {
+                if (gameList.size() >= limit) {
+                    break;
+                }
+                var gameData = gameMap.get(id);
+                if (gameData != null && filter.test(gameData)) {
+                    gameList.add(toSummary(gameData));
+                }
+            }
+            return gameList;
+        }
+
+        private void reindexPlayers(int id, GameData oldGame, GameData newGame) {
+            // Move the game between players' ID sets when a seat changes hands
+            for (var color : ChessGame.TeamColor.values()) {
+                var oldPlayer = seatHolder(oldGame, color);
+                var newPlayer = seatHolder(newGame, color);
+                if (Objects.equals(oldPlayer, newPlayer)) {
+                    continue;
+                }
+                if (oldPlayer != null && !oldPlayer.equals(seatHolder(newGame, opposite(color)))) {
+                    playerIndex.computeIfPresent(oldPlayer, (name, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+                if (newPlayer != null) {
+                    playerIndex.computeIfAbsent(newPlayer, name -> new ConcurrentSkipListSet<Integer>()).add(id);
+                }
+            }
+        }
+
+        private ChessGame.TeamColor opposite(ChessGame.TeamColor color) {
+            return color == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        }
+
+        private String seatHolder(GameData gameData, ChessGame.TeamColor color) {
+            if (gameData == null) {
+                return null;
+            }
+            return color == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+        }
+
+        private GameData withSeat(GameData gameData, ChessGame.TeamColor color, String username) {
+            if (color == ChessGame.TeamColor.WHITE) {
+                return new GameData(gameData.gameID(), username, gameData.blackUsername(), gameData.gameName(), gameData.game());
+            }
+            return new GameData(gameData.gameID(), gameData.whiteUsername(), username, gameData.gameName(), gameData.game());
+        }
+
+        private boolean matchesFilter(GameData gameData, ListGamesRequest request) {
+            // Mirror the WHERE clause built by MySqlDataAccess.GameDAO.listGames
+            if (Boolean.TRUE.equals(request.openSeats()) && gameData.whiteUsername() != null && gameData.blackUsername() != null) {
+                return false;
+            }
+            if (request.player() != null && !request.player().equals(gameData.whiteUsername()) && !request.player().equals(gameData.blackUsername())) {
+                return false;
+            }
+            return request.status() == null || request.status() == gameData.game().getGameState();
+        }
+
+        private GameSummary toSummary(GameData gameData) {
+            var status = gameData.game().getGameState();
+            return new GameSummary(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), status);
+        }
+    }
+
+    public static class RatingDAO extends DataAccess.RatingDAO {
+        private final ConcurrentSkipListMap<Long, GameResult> results = new ConcurrentSkipListMap<Long, GameResult>();
+        private final ConcurrentHashMap<String, PlayerRating> ratingMap = new ConcurrentHashMap<String, PlayerRating>();
+
+        public synchronized GameResult recordResult(GameResult result) throws DataAccessException {
+            long resultID = results.isEmpty() ? 1 : results.lastKey() + 1;
+            var recorded = new GameResult(resultID, result.gameID(), result.whiteUsername(), result.blackUsername(),
+                    result.winner(), result.endedAtMillis());
+            results.put(resultID, recorded);
+            return recorded;
+        }
+
+        public List<GameResult> getResults() throws DataAccessException {
+            return new ArrayList<GameResult>(results.values());
+        }
+
+        public void saveRatings(List<PlayerRating> ratings) throws DataAccessException {
+            for (var rating : ratings) {
+                ratingMap.put(rating.username(), rating);
+            }
+        }
+
+        public List<PlayerRating> getRatings() throws DataAccessException {
+            return new ArrayList<PlayerRating>(ratingMap.values());
+        }
+
+        public synchronized void clearAllRatings() throws DataAccessException {
+            results.clear();
+            ratingMap.clear();
+        }
+
+        // Used by FileDataAccess to replay its log
+        void restoreResult(GameResult result) {
+            results.put(result.resultID(), result);
+        }
+    }
+
+    public static class RevocationDAO extends DataAccess.RevocationDAO {
+        private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<String, Long>();
+        private long keyEpoch = 0;
+
+        public void revoke(String tokenId, long expiresAt) throws DataAccessException {
+            revoked.put(tokenId, expiresAt);
+        }
+
+        public Map<String, Long> getRevocations(long now) throws DataAccessException {
+            var current = new HashMap<String, Long>();
+            revoked.forEach((tokenId, expiresAt) -> {
+                if (expiresAt > now) {
+                    current.put(tokenId, expiresAt);
+                }
+            });
+            return current;
+        }
+
+        public int deleteExpiredRevocations(long now, int limit) throws DataAccessException {
+            int deleted = 0;
+            for (var entry : revoked.entrySet()) {
+                if (deleted >= limit) {
+                    break;
+                }
+                if (entry.getValue() <= now && revoked.remove(entry.getKey(), entry.getValue())) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        }
+
+        public synchronized long getKeyEpoch() throws DataAccessException {
+            return keyEpoch;
+        }
+
+        public synchronized long rotateKeyEpoch() throws DataAccessException {
+            revoked.clear();
+            return ++keyEpoch;
+        }
+
+        // Used by FileDataAccess to replay its log
+        synchronized void restoreKeyEpoch(long epoch) {
+            revoked.clear();
+            keyEpoch = epoch;
         }
     }
 }
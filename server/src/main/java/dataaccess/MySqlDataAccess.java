@@ -4,12 +4,27 @@ import chess.ChessGame;
 import com.google.gson.Gson;
 import model.AuthData;
 import model.GameData;
+import model.GameResult;
+import model.GameSummary;
+import model.ImportResponse;
+import model.ListGamesRequest;
+import model.PlayerRating;
 import model.UserData;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
@@ -21,15 +36,31 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     public static class AuthDAO extends DataAccess.AuthDAO {
+        private final Duration ttl;
+        private final Clock clock;
+
+        public AuthDAO() {
+            this(configuredTokenTtl());
+        }
+
+        public AuthDAO(Duration ttl) {
+            this(ttl, Clock.systemUTC());
+        }
+
+        public AuthDAO(Duration ttl, Clock clock) {
+            this.ttl = ttl;
+            this.clock = clock;
+        }
 
         public AuthData createAuth(UserData userData) throws DataAccessException {
             // Insert an AuthData object into auth table and return authToken
             var authToken = UUID.randomUUID().toString();
             try (var conn = DatabaseManager.getConnection()) {
-                var statement = "INSERT INTO auth (username, authToken) VALUES (?, ?)";
+                var statement = "INSERT INTO auth (username, authToken, lastUsed) VALUES (?, ?, ?)";
                 try (var ps = conn.prepareStatement(statement)) {
                     ps.setString(1, userData.username());
                     ps.setString(2, authToken);
+                    ps.setTimestamp(3, Timestamp.from(clock.instant()));
                     ps.executeUpdate();
                 }
             } catch (Exception e) {
@@ -39,19 +70,33 @@ public class MySqlDataAccess implements DataAccess {
         }
 
         public AuthData getAuth(String authToken) throws DataAccessException {
-            // Return matching authToken from database else return null
+            // Return matching unexpired authToken from database else return null
             try (var conn = DatabaseManager.getConnection()) {
-                var statement = "SELECT username, authToken FROM auth WHERE authToken=?";
+                // Times come from this DAO's clock, the same one that set lastUsed
+                var now = clock.instant();
+                var statement = "SELECT username, authToken, lastUsed < ? AS stale "
+                        + "FROM auth WHERE authToken=? AND lastUsed >= ?";
+                AuthData authData;
                 try (var ps = conn.prepareStatement(statement)) {
-                    ps.setString(1, authToken);
+                    ps.setTimestamp(1, Timestamp.from(now.minus(TOUCH_INTERVAL)));
+                    ps.setString(2, authToken);
+                    ps.setTimestamp(3, Timestamp.from(now.minus(ttl)));
                     try (var rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            return readAuth(rs);
-                        } else {
+                        if (!rs.next()) {
                             return null;
                         }
+                        authData = readAuth(rs);
+                        if (!rs.getBoolean("stale")) {
+                            return authData;
+                        }
                     }
                 }
+                try (var ps = conn.prepareStatement("UPDATE auth SET lastUsed=? WHERE authToken=?")) {
+                    ps.setTimestamp(1, Timestamp.from(now));
+                    ps.setString(2, authToken);
+                    ps.executeUpdate();
+                }
+                return authData;
             } catch (Exception e) {
                 throw new DataAccessException("Error: cannot get auth");
             }
@@ -85,6 +130,20 @@ public class MySqlDataAccess implements DataAccess {
             }
         }
 
+        public int deleteExpiredAuth(int limit) throws DataAccessException {
+            // Oldest first through the lastUsed index, one bounded batch per call, so row locks stay short
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "DELETE FROM auth WHERE lastUsed < ? ORDER BY lastUsed LIMIT ?";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setTimestamp(1, Timestamp.from(clock.instant().minus(ttl)));
+                    ps.setInt(2, limit);
+                    return ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot delete expired auth");
+            }
+        }
+
         private AuthData readAuth(ResultSet rs) throws SQLException {
             // Convert auth table ResultSet into AuthData object
             var authToken = rs.getString("authToken");
@@ -128,6 +187,22 @@ public class MySqlDataAccess implements DataAccess {
             }
         }
 
+        public void updatePassword(String username, String passwordHash) throws DataAccessException {
+            // Replace a user's password hash, e.g. after the BCrypt cost changes
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "UPDATE user SET password=? WHERE username=?";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setString(1, passwordHash);
+                    ps.setString(2, username);
+                    if (ps.executeUpdate() < 1) {
+                        throw new DataAccessException("Error: no such user");
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot update user");
+            }
+        }
+
         public void clearAllUsers() throws DataAccessException {
             // Clear user table in database
             try (var conn = DatabaseManager.getConnection()) {
@@ -150,24 +225,28 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     public static class GameDAO extends DataAccess.GameDAO {
+        private static final String SUMMARY_COLUMNS = "SELECT gameID, whiteUsername, blackUsername, gameName, gameState FROM game";
 
         public GameData createGame(GameData gameData) throws DataAccessException {
             // Insert GameData object into game table
             int gameId = 0;
-            var game = new ChessGame();
+            var game = gameData.game() == null ? new ChessGame() : gameData.game();
             var gameString = new Gson().toJson(game);
 
             try (var conn = DatabaseManager.getConnection()) {
-                var statement = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameString) VALUES (null, null, ?, ?)";
+                // Seats are normally empty, but a game made by matchmaking starts with both filled
+                var statement = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameString) VALUES (?, ?, ?, ?)";
                 try (var ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
-                    ps.setString(1, (gameData.gameName()));
-                    ps.setString(2, (gameString));
+                    ps.setString(1, gameData.whiteUsername());
+                    ps.setString(2, gameData.blackUsername());
+                    ps.setString(3, (gameData.gameName()));
+                    ps.setString(4, (gameString));
                     ps.executeUpdate();
                     var rs = ps.getGeneratedKeys();
                     if (rs.next()) {
                         gameId = rs.getInt(1);
                     }
-                    return new GameData(gameId, null, null, gameData.gameName(), game);
+                    return new GameData(gameId, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
                 }
             } catch (Exception e) {
                 throw new DataAccessException("Error: cannot create game");
@@ -177,12 +256,13 @@ public class MySqlDataAccess implements DataAccess {
         public void updateGame(GameData gameData) throws DataAccessException {
             // Modify existing game with new player information in game table in database
             try (var conn = DatabaseManager.getConnection()) {
-                var statement = "UPDATE game SET whiteUsername=?, blackUsername=?, gameString=? WHERE gameID=?";
+                var statement = "UPDATE game SET whiteUsername=?, blackUsername=?, gameString=?, gameState=? WHERE gameID=?";
                 try (var ps = conn.prepareStatement(statement)) {
                     ps.setString(1, gameData.whiteUsername());
                     ps.setString(2, gameData.blackUsername());
                     ps.setString(3, new Gson().toJson(gameData.game()));
-                    ps.setInt(4, gameData.gameID());
+                    ps.setString(4, gameData.game().getGameState().name());
+                    ps.setInt(5, gameData.gameID());
                     var rowsAffected = ps.executeUpdate();
                     if (rowsAffected < 1) {
                         throw new DataAccessException("Error: cannot update name");
@@ -193,6 +273,63 @@ public class MySqlDataAccess implements DataAccess {
             }
         }
 
+        public void updateGameState(int gameId, ChessGame game) throws DataAccessException {
+            // Board and state only; the player columns belong to claimSeat and releaseSeat
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "UPDATE game SET gameString=?, gameState=? WHERE gameID=?";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setString(1, new Gson().toJson(game));
+                    ps.setString(2, game.getGameState().name());
+                    ps.setInt(3, gameId);
+                    if (ps.executeUpdate() < 1) {
+                        throw new DataAccessException("Error: cannot update game");
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot update game");
+            }
+        }
+
+        public SeatClaim claimSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            // Take the seat only if it is empty (or already ours); only the player column is written
+            var column = seatColumn(color);
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "UPDATE game SET " + column + "=? WHERE gameID=? AND (" + column + " IS NULL OR " + column + "=?)";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setString(1, username);
+                    ps.setInt(2, gameId);
+                    ps.setString(3, username);
+                    if (ps.executeUpdate() > 0) {
+                        return SeatClaim.CLAIMED;
+                    }
+                }
+                // Lost the race or bad gameID, find out which
+                try (var ps = conn.prepareStatement("SELECT 1 FROM game WHERE gameID=?")) {
+                    ps.setInt(1, gameId);
+                    try (var rs = ps.executeQuery()) {
+                        return rs.next() ? SeatClaim.TAKEN : SeatClaim.NO_GAME;
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot claim seat");
+            }
+        }
+
+        public void releaseSeat(int gameId, ChessGame.TeamColor color, String username) throws DataAccessException {
+            // Clear the seat only if the user still holds it
+            var column = seatColumn(color);
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "UPDATE game SET " + column + "=NULL WHERE gameID=? AND " + column + "=?";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setInt(1, gameId);
+                    ps.setString(2, username);
+                    ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot release seat");
+            }
+        }
+
         public GameData getGame(int gameId) throws DataAccessException {
             // Find game in database with matcing gameID and return GameData object
             try (var conn = DatabaseManager.getConnection()) {
@@ -211,6 +348,18 @@ public class MySqlDataAccess implements DataAccess {
             return null;
         }
 
+        public void deleteGame(int gameId) throws DataAccessException {
+            // Remove a single game, e.g. after it has been moved to the archive
+            try (var conn = DatabaseManager.getConnection()) {
+                try (var ps = conn.prepareStatement("DELETE FROM game WHERE gameID=?")) {
+                    ps.setInt(1, gameId);
+                    ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot delete game");
+            }
+        }
+
         public List<GameData> getGames() throws DataAccessException {
             // Find and return all games in game table in database
             var gamesList = new LinkedList<GameData>();
@@ -229,6 +378,48 @@ public class MySqlDataAccess implements DataAccess {
             return gamesList;
         }
 
+        public List<GameSummary> listGames(ListGamesRequest request, int limit) throws DataAccessException {
+            // Find one page of games after the cursor without reading the gameString column
+            var statement = new StringBuilder(SUMMARY_COLUMNS + " WHERE gameID > ?");
+            var params = new ArrayList<Object>();
+            params.add(request.cursor() == null ? 0 : request.cursor());
+            if (Boolean.TRUE.equals(request.openSeats())) {
+                statement.append(" AND (whiteUsername IS NULL OR blackUsername IS NULL)");
+            }
+            if (request.player() != null) {
+                statement.append(" AND (whiteUsername=? OR blackUsername=?)");
+                params.add(request.player());
+                params.add(request.player());
+            }
+            if (request.status() != null) {
+                statement.append(" AND gameState=?");
+                params.add(request.status().name());
+            }
+            statement.append(" ORDER BY gameID LIMIT ?");
+            params.add(limit);
+            return querySummaries(statement.toString(), params.toArray());
+        }
+
+        public List<GameSummary> getGamesByPlayer(String username, int limit) throws DataAccessException {
+            // Newest games where the user holds either seat; each half of the UNION uses its own username index
+            var statement = "(" + SUMMARY_COLUMNS + " WHERE whiteUsername=? ORDER BY gameID DESC LIMIT ?)"
+                    + " UNION (" + SUMMARY_COLUMNS + " WHERE blackUsername=? ORDER BY gameID DESC LIMIT ?)"
+                    + " ORDER BY gameID DESC LIMIT ?";
+            return querySummaries(statement, username, limit, username, limit, limit);
+        }
+
+        public List<GameSummary> getGamesByStatus(ChessGame.GameState status, int limit) throws DataAccessException {
+            // Newest games in the given state, read from the (gameState, gameID) index
+            var statement = SUMMARY_COLUMNS + " WHERE gameState=? ORDER BY gameID DESC LIMIT ?";
+            return querySummaries(statement, status.name(), limit);
+        }
+
+        public List<GameSummary> getGamesActiveSince(Instant since, int limit) throws DataAccessException {
+            // Most recently updated games, read from the lastActivity index
+            var statement = SUMMARY_COLUMNS + " WHERE lastActivity>=? ORDER BY lastActivity DESC LIMIT ?";
+            return querySummaries(statement, Timestamp.from(since), limit);
+        }
+
         public void clearAllGames() throws DataAccessException {
             // Clear game table in database
             try (var conn = DatabaseManager.getConnection()) {
@@ -241,6 +432,18 @@ public class MySqlDataAccess implements DataAccess {
             }
         }
 
+        public void reserveGameIDs(int throughGameId) throws DataAccessException {
+            // MySQL keeps the counter above the highest existing ID however low this is set
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = String.format("ALTER TABLE game AUTO_INCREMENT = %d", (long) throughGameId + 1);
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot reserve game IDs");
+            }
+        }
+
         private GameData readGame(ResultSet rs) throws SQLException {
             // Convert game ResultSet into GameData object
             var gameID = rs.getInt("gameID");
@@ -251,6 +454,321 @@ public class MySqlDataAccess implements DataAccess {
             var game = new Gson().fromJson(gameString, ChessGame.class);
             return new GameData(gameID, whiteUsername, blackUsername, gameName, game);
         }
+
+        private String seatColumn(ChessGame.TeamColor color) {
+            return color == ChessGame.TeamColor.WHITE ? "whiteUsername" : "blackUsername";
+        }
+
+        private List<GameSummary> querySummaries(String statement, Object... params) throws DataAccessException {
+            // Run a projected game query and convert every row into a GameSummary
+            var summaries = new ArrayList<GameSummary>();
+            try (var conn = DatabaseManager.getConnection()) {
+                try (var ps = conn.prepareStatement(statement)) {
+                    for (int i = 0; i < params.length; i++) {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            summaries.add(readGameSummary(rs));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot list games");
+            }
+            return summaries;
+        }
+
+        private GameSummary readGameSummary(ResultSet rs) throws SQLException {
+            // Convert projected game ResultSet into GameSummary object
+            var gameID = rs.getInt("gameID");
+            var whiteUsername = rs.getString("whiteUsername");
+            var blackUsername = rs.getString("blackUsername");
+            var gameName = rs.getString("gameName");
+            var status = ChessGame.GameState.valueOf(rs.getString("gameState"));
+            return new GameSummary(gameID, whiteUsername, blackUsername, gameName, status);
+        }
+    }
+
+    public static class RatingDAO extends DataAccess.RatingDAO {
+
+        public GameResult recordResult(GameResult result) throws DataAccessException {
+            // Insert a result; the auto-increment resultID orders the history
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "INSERT INTO result (gameID, whiteUsername, blackUsername, winner, endedAt) VALUES (?, ?, ?, ?, ?)";
+                try (var ps = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
+                    ps.setInt(1, result.gameID());
+                    ps.setString(2, result.whiteUsername());
+                    ps.setString(3, result.blackUsername());
+                    ps.setString(4, result.winner() == null ? null : result.winner().name());
+                    ps.setTimestamp(5, new Timestamp(result.endedAtMillis()));
+                    ps.executeUpdate();
+                    try (var rs = ps.getGeneratedKeys()) {
+                        rs.next();
+                        return new GameResult(rs.getLong(1), result.gameID(), result.whiteUsername(), result.blackUsername(),
+                                result.winner(), result.endedAtMillis());
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot record result");
+            }
+        }
+
+        public List<GameResult> getResults() throws DataAccessException {
+            var results = new ArrayList<GameResult>();
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "SELECT resultID, gameID, whiteUsername, blackUsername, winner, endedAt FROM result ORDER BY resultID";
+                try (var ps = conn.prepareStatement(statement)) {
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            var winner = rs.getString("winner");
+                            results.add(new GameResult(rs.getLong("resultID"), rs.getInt("gameID"), rs.getString("whiteUsername"),
+                                    rs.getString("blackUsername"), winner == null ? null : ChessGame.TeamColor.valueOf(winner),
+                                    rs.getTimestamp("endedAt").getTime()));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot get results");
+            }
+            return results;
+        }
+
+        public void saveRatings(List<PlayerRating> ratings) throws DataAccessException {
+            // Upsert every rating in one transaction, sent as a single batch
+            var statement = "INSERT INTO rating (username, rating, deviation, games, lastPlayed) VALUES (?, ?, ?, ?, ?)"
+                    + " ON DUPLICATE KEY UPDATE rating=VALUES(rating), deviation=VALUES(deviation),"
+                    + " games=VALUES(games), lastPlayed=VALUES(lastPlayed)";
+            try (var conn = DatabaseManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try (var ps = conn.prepareStatement(statement)) {
+                    for (var rating : ratings) {
+                        ps.setString(1, rating.username());
+                        ps.setDouble(2, rating.rating());
+                        ps.setDouble(3, rating.deviation());
+                        ps.setInt(4, rating.games());
+                        ps.setTimestamp(5, new Timestamp(rating.lastPlayedMillis()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot save ratings");
+            }
+        }
+
+        public List<PlayerRating> getRatings() throws DataAccessException {
+            var ratings = new ArrayList<PlayerRating>();
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "SELECT username, rating, deviation, games, lastPlayed FROM rating";
+                try (var ps = conn.prepareStatement(statement)) {
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ratings.add(new PlayerRating(rs.getString("username"), rs.getDouble("rating"), rs.getDouble("deviation"),
+                                    rs.getInt("games"), rs.getTimestamp("lastPlayed").getTime()));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot get ratings");
+            }
+            return ratings;
+        }
+
+        public void clearAllRatings() throws DataAccessException {
+            // Clear result and rating tables in database
+            try (var conn = DatabaseManager.getConnection()) {
+                for (var table : new String[]{"result", "rating"}) {
+                    try (var ps = conn.prepareStatement("TRUNCATE " + table)) {
+                        ps.executeUpdate();
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot clear ratings");
+            }
+        }
+    }
+
+    public static class RevocationDAO extends DataAccess.RevocationDAO {
+
+        public void revoke(String tokenId, long expiresAt) throws DataAccessException {
+            try (var conn = DatabaseManager.getConnection()) {
+                var statement = "INSERT INTO revocation (tokenId, expiresAt) VALUES (?, ?) ON DUPLICATE KEY UPDATE expiresAt=VALUES(expiresAt)";
+                try (var ps = conn.prepareStatement(statement)) {
+                    ps.setString(1, tokenId);
+                    ps.setLong(2, expiresAt);
+                    ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot revoke token");
+            }
+        }
+
+        public Map<String, Long> getRevocations(long now) throws DataAccessException {
+            var revocations = new HashMap<String, Long>();
+            try (var conn = DatabaseManager.getConnection()) {
+                try (var ps = conn.prepareStatement("SELECT tokenId, expiresAt FROM revocation WHERE expiresAt > ?")) {
+                    ps.setLong(1, now);
+                    try (var rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            revocations.put(rs.getString("tokenId"), rs.getLong("expiresAt"));
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot get revocations");
+            }
+            return revocations;
+        }
+
+        public int deleteExpiredRevocations(long now, int limit) throws DataAccessException {
+            // One short batch, walking the expiresAt index, like AuthDAO.deleteExpiredAuth
+            try (var conn = DatabaseManager.getConnection()) {
+                try (var ps = conn.prepareStatement("DELETE FROM revocation WHERE expiresAt <= ? LIMIT ?")) {
+                    ps.setLong(1, now);
+                    ps.setInt(2, limit);
+                    return ps.executeUpdate();
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot delete revocations");
+            }
+        }
+
+        public long getKeyEpoch() throws DataAccessException {
+            try (var conn = DatabaseManager.getConnection()) {
+                try (var ps = conn.prepareStatement("SELECT epoch FROM key_epoch WHERE id=1")) {
+                    try (var rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getLong("epoch") : 0;
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot get key epoch");
+            }
+        }
+
+        public long rotateKeyEpoch() throws DataAccessException {
+            // Bump the epoch and drop the revocations it makes pointless, both or neither
+            try (var conn = DatabaseManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    try (var ps = conn.prepareStatement("INSERT INTO key_epoch (id, epoch) VALUES (1, 1) ON DUPLICATE KEY UPDATE epoch=epoch+1")) {
+                        ps.executeUpdate();
+                    }
+                    long epoch;
+                    try (var ps = conn.prepareStatement("SELECT epoch FROM key_epoch WHERE id=1");
+                         var rs = ps.executeQuery()) {
+                        rs.next();
+                        epoch = rs.getLong("epoch");
+                    }
+                    try (var ps = conn.prepareStatement("DELETE FROM revocation")) {
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                    return epoch;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot rotate key epoch");
+            }
+        }
+    }
+
+    public static class BulkDAO extends DataAccess.BulkDAO {
+        // MySQL allows at most 65535 placeholders in one statement
+        private static final int MAX_PLACEHOLDERS = 65535;
+
+        private interface RowBinder<T> {
+            void bind(PreparedStatement ps, int column, T value) throws SQLException;
+        }
+
+        private static final RowBinder<UserData> USER_ROW = (ps, column, userData) -> {
+            ps.setString(column, userData.username());
+            ps.setString(column + 1, userData.password());
+            ps.setString(column + 2, userData.email());
+        };
+
+        private static final RowBinder<GameData> GAME_ROW = (ps, column, gameData) -> {
+            var game = gameData.game() == null ? new ChessGame() : gameData.game();
+            ps.setString(column, gameData.whiteUsername());
+            ps.setString(column + 1, gameData.blackUsername());
+            ps.setString(column + 2, gameData.gameName());
+            ps.setString(column + 3, new Gson().toJson(game));
+            ps.setString(column + 4, game.getGameState().name());
+        };
+
+        private static final String INSERT_USERS = "INSERT INTO user (username, password, email) VALUES ";
+        private static final String INSERT_GAMES = "INSERT INTO game (whiteUsername, blackUsername, gameName, gameString, gameState) VALUES ";
+
+        public BulkDAO() {
+            super(new AuthDAO(), new UserDAO(), new GameDAO());
+        }
+
+        public void clearAll() throws DataAccessException {
+            // Truncate every table on one connection instead of one connection per DAO
+            try (var conn = DatabaseManager.getConnection()) {
+                for (var table : new String[]{"auth", "user", "game"}) {
+                    try (var ps = conn.prepareStatement("TRUNCATE " + table)) {
+                        ps.executeUpdate();
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot clear database");
+            }
+        }
+
+        public int importUsers(List<UserData> users, int batchSize) throws DataAccessException {
+            return importAll(users, List.of(), batchSize).users();
+        }
+
+        public int importGames(List<GameData> games, int batchSize) throws DataAccessException {
+            return importAll(List.of(), games, batchSize).games();
+        }
+
+        public ImportResponse importAll(List<UserData> users, List<GameData> games, int batchSize) throws DataAccessException {
+            if (batchSize < 1) {
+                throw new DataAccessException("Error: bad batch size");
+            }
+            // Users and games on one connection with one commit, so a failed import leaves neither
+            try (var conn = DatabaseManager.getConnection()) {
+                conn.setAutoCommit(false);
+                try {
+                    insertRows(conn, INSERT_USERS, 3, users, batchSize, USER_ROW);
+                    insertRows(conn, INSERT_GAMES, 5, games, batchSize, GAME_ROW);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("Error: cannot import rows");
+            }
+            return new ImportResponse(users.size(), games.size());
+        }
+
+        private <T> void insertRows(Connection conn, String statement, int columns, List<T> rows, int batchSize,
+                                    RowBinder<T> binder) throws SQLException {
+            // Multi-row INSERTs of batchSize rows each, in the caller's transaction
+            int rowsPerStatement = Math.min(batchSize, MAX_PLACEHOLDERS / columns);
+            var row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+            for (int start = 0; start < rows.size(); start += rowsPerStatement) {
+                var chunk = rows.subList(start, Math.min(rows.size(), start + rowsPerStatement));
+                // Every full chunk uses the same SQL text, so its prepared statement is reused
+                try (var ps = conn.prepareStatement(statement + String.join(", ", Collections.nCopies(chunk.size(), row)))) {
+                    int column = 1;
+                    for (var value : chunk) {
+                        binder.bind(ps, column, value);
+                        column += columns;
+                    }
+                    ps.executeUpdate();
+                }
+            }
+        }
     }
 
     private final String[] createStatements = {
@@ -268,8 +786,11 @@ public class MySqlDataAccess implements DataAccess {
             CREATE TABLE IF NOT EXISTS auth (
               `username` varchar(256) NOT NULL,
               `authToken` varchar(256) NOT NULL,
+              `issuedAt` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+              `lastUsed` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
               PRIMARY KEY (`authToken`),
-              INDEX(authToken)
+              INDEX(authToken),
+              INDEX(lastUsed)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
             """,
 
@@ -280,14 +801,127 @@ public class MySqlDataAccess implements DataAccess {
               `blackUsername` varchar(256) DEFAULT NULL,
               `gameName` varchar(256) DEFAULT NULL,
               `gameString` TEXT DEFAULT NULL,
+              `gameState` varchar(16) NOT NULL DEFAULT 'IN_PLAY',
+              `lastActivity` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
               PRIMARY KEY (`gameID`),
-              INDEX(gameID)
+              INDEX(gameID),
+              INDEX(whiteUsername, gameID),
+              INDEX(blackUsername, gameID),
+              INDEX(gameState, gameID),
+              INDEX(lastActivity)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+
+            """
+            CREATE TABLE IF NOT EXISTS result (
+              `resultID` bigint NOT NULL AUTO_INCREMENT,
+              `gameID` int NOT NULL,
+              `whiteUsername` varchar(256) NOT NULL,
+              `blackUsername` varchar(256) NOT NULL,
+              `winner` varchar(8) DEFAULT NULL,
+              `endedAt` TIMESTAMP(3) NOT NULL,
+              PRIMARY KEY (`resultID`)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+
             """
+            CREATE TABLE IF NOT EXISTS rating (
+              `username` varchar(256) NOT NULL,
+              `rating` double NOT NULL,
+              `deviation` double NOT NULL,
+              `games` int NOT NULL,
+              `lastPlayed` TIMESTAMP(3) NOT NULL,
+              PRIMARY KEY (`username`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+
+            """
+            CREATE TABLE IF NOT EXISTS revocation (
+              `tokenId` varchar(64) NOT NULL,
+              `expiresAt` bigint NOT NULL,
+              PRIMARY KEY (`tokenId`),
+              INDEX(expiresAt)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+
+            """
+            CREATE TABLE IF NOT EXISTS key_epoch (
+              `id` tinyint NOT NULL,
+              `epoch` bigint NOT NULL,
+              PRIMARY KEY (`id`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """
+    };
+
+    // Columns and indexes added since the tables were first created. CREATE TABLE IF NOT EXISTS
+    // leaves an older table alone, so each one is added here unless it is already there.
+    private record Migration(String table, String name, boolean index, String alter) {
+    }
+
+    private final Migration[] migrations = {
+            new Migration("auth", "issuedAt", false,
+                    "ALTER TABLE auth ADD COLUMN `issuedAt` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"),
+            new Migration("auth", "lastUsed", false,
+                    "ALTER TABLE auth ADD COLUMN `lastUsed` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"),
+            new Migration("auth", "lastUsed", true, "ALTER TABLE auth ADD INDEX lastUsed (lastUsed)"),
+            new Migration("game", "gameState", false,
+                    "ALTER TABLE game ADD COLUMN `gameState` varchar(16) NOT NULL DEFAULT 'IN_PLAY'"),
+            new Migration("game", "lastActivity", false,
+                    "ALTER TABLE game ADD COLUMN `lastActivity` TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)"),
+            new Migration("game", "whiteUsername", true, "ALTER TABLE game ADD INDEX whiteUsername (whiteUsername, gameID)"),
+            new Migration("game", "blackUsername", true, "ALTER TABLE game ADD INDEX blackUsername (blackUsername, gameID)"),
+            new Migration("game", "gameState", true, "ALTER TABLE game ADD INDEX gameState (gameState, gameID)"),
+            new Migration("game", "lastActivity", true, "ALTER TABLE game ADD INDEX lastActivity (lastActivity)"),
     };
 
+    private void migrate(Connection conn) throws SQLException {
+        for (var migration : migrations) {
+            var statement = migration.index()
+                    ? "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=? AND INDEX_NAME=?"
+                    : "SELECT 1 FROM information_schema.COLUMNS WHERE TABLE_SCHEMA=DATABASE() AND TABLE_NAME=? AND COLUMN_NAME=?";
+            try (var ps = conn.prepareStatement(statement)) {
+                ps.setString(1, migration.table());
+                ps.setString(2, migration.name());
+                try (var rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        continue;
+                    }
+                }
+            }
+            try (var ps = conn.prepareStatement(migration.alter())) {
+                ps.executeUpdate();
+            }
+            if (!migration.index() && migration.name().equals("gameState")) {
+                backfillGameState(conn);
+            }
+        }
+    }
+
+    private void backfillGameState(Connection conn) throws SQLException {
+        // Games stored before the column existed all read IN_PLAY; take their real state from the board
+        var finished = new ArrayList<Integer>();
+        try (var ps = conn.prepareStatement("SELECT gameID, gameString FROM game");
+             var rs = ps.executeQuery()) {
+            while (rs.next()) {
+                var game = new Gson().fromJson(rs.getString("gameString"), ChessGame.class);
+                if (game != null && game.getGameState() == ChessGame.GameState.GAME_OVER) {
+                    finished.add(rs.getInt("gameID"));
+                }
+            }
+        }
+        try (var ps = conn.prepareStatement("UPDATE game SET gameState=? WHERE gameID=?")) {
+            for (var gameID : finished) {
+                ps.setString(1, ChessGame.GameState.GAME_OVER.name());
+                ps.setInt(2, gameID);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
     private void configureDatabase() throws DataAccessException {
-        // Create database and user, auth, and game tables if they do not already exist
+        // Create database and user, auth, game, result, rating, revocation and key_epoch tables if they do not already exist,
+        // then bring tables made by older versions up to date
         try {
             DatabaseManager.createDatabase();
         } catch (DataAccessException ex) {
@@ -299,6 +933,7 @@ public class MySqlDataAccess implements DataAccess {
                     preparedStatement.executeUpdate();
                 }
             }
+            migrate(conn);
         } catch (DataAccessException ex) {
             throw new DataAccessException(String.format("Unable to connect to database: %s", ex.getMessage()));
         } catch (SQLException ex) {
@@ -0,0 +1,192 @@
+package dataaccess;
+
+import model.AuthData;
+import model.UserData;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AuthDAO that issues HMAC-SHA256 signed tokens instead of storing them.
+ * A token is base64url(username).expiry.nonce.signature, so getAuth checks
+ * it in memory without touching the database. Logged-out tokens go in a
+ * revocation set until they would have expired anyway.
+ * <p>
+ * Revocations and the key epoch are kept in a RevocationDAO, so they survive
+ * a restart. The key is derived from the secret and the epoch, and clearing
+ * every token moves to the next epoch. Checks use an in-memory copy, which
+ * load reads and deleteExpiredAuth refreshes, so servers sharing the secret
+ * and the store honour each other's logouts and clears within one sweep.
+ */
+public class SignedTokenAuthDAO extends DataAccess.AuthDAO {
+    public static final Duration DEFAULT_TTL = DEFAULT_TOKEN_TTL;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int PURGE_EVERY = 1024;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final byte[] secret;
+    private final Duration ttl;
+    private final Clock clock;
+    private final DataAccess.RevocationDAO revocationDAO;
+    private final SecureRandom random = new SecureRandom();
+    // Signature of each revoked token, mapped to the token's expiry in epoch seconds
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<String, Long>();
+    private volatile SecretKeySpec key;
+    private long keyEpoch = 0;
+    private int revokedSincePurge = 0;
+
+    public SignedTokenAuthDAO(byte[] secret, Duration ttl, Clock clock, DataAccess.RevocationDAO revocationDAO) {
+        this.secret = secret.clone();
+        this.ttl = ttl;
+        this.clock = clock;
+        this.revocationDAO = revocationDAO;
+        // Epoch 0 signs with the secret itself, so tokens from before epochs existed stay valid
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+    }
+
+    /**
+     * Keeps revocations in memory only, so they are lost on restart.
+     */
+    public SignedTokenAuthDAO(byte[] secret, Duration ttl, Clock clock) {
+        this(secret, ttl, clock, new MemoryDataAccess.RevocationDAO());
+    }
+
+    /**
+     * Uses a random secret, so tokens only verify on this server and do not survive a restart.
+     */
+    public SignedTokenAuthDAO(Duration ttl) {
+        this(randomSecret(), ttl, Clock.systemUTC());
+    }
+
+    /**
+     * Reads the key epoch and revocations from the RevocationDAO. Call once the store is ready.
+     */
+    public void load() throws DataAccessException {
+        useEpoch(revocationDAO.getKeyEpoch());
+        revoked.putAll(revocationDAO.getRevocations(clock.instant().getEpochSecond()));
+    }
+
+    public AuthData createAuth(UserData userData) throws DataAccessException {
+        if (userData.username() == null) {
+            throw new DataAccessException("Error: cannot create auth");
+        }
+        var nonce = new byte[12];
+        random.nextBytes(nonce);
+        long expiry = clock.instant().plus(ttl).getEpochSecond();
+        var payload = String.format("%s.%d.%s", ENCODER.encodeToString(userData.username().getBytes(StandardCharsets.UTF_8)),
+                expiry, ENCODER.encodeToString(nonce));
+        return new AuthData(payload + "." + sign(payload, key), userData.username());
+    }
+
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        if (authToken == null) {
+            return null;
+        }
+        var parts = authToken.split("\\.");
+        if (parts.length != 4) {
+            return null;
+        }
+        var payload = authToken.substring(0, authToken.lastIndexOf('.'));
+        var expected = sign(payload, key).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, parts[3].getBytes(StandardCharsets.UTF_8))) {
+            return null;
+        }
+        try {
+            if (Long.parseLong(parts[1]) <= clock.instant().getEpochSecond() || revoked.containsKey(parts[3])) {
+                return null;
+            }
+            return new AuthData(authToken, new String(DECODER.decode(parts[0]), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public CompletableFuture<AuthData> getAuthAsync(String authToken) {
+        // Verification is a hash over a few bytes; a thread hop would cost more than the work
+        try {
+            return CompletableFuture.completedFuture(getAuth(authToken));
+        } catch (DataAccessException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public void deleteAuth(String authToken) throws DataAccessException {
+        if (getAuth(authToken) == null) {
+            throw new DataAccessException("Error: invalid authToken");
+        }
+        var parts = authToken.split("\\.");
+        // Stored first, so the logout is not reported done until it would survive a restart
+        revocationDAO.revoke(parts[3], Long.parseLong(parts[1]));
+        revoked.put(parts[3], Long.parseLong(parts[1]));
+        purgeExpiredRevocations();
+    }
+
+    public void clearAllAuth() throws DataAccessException {
+        // Outstanding tokens cannot be deleted, so move to the next key epoch to invalidate them all
+        useEpoch(revocationDAO.rotateKeyEpoch());
+    }
+
+    public int deleteExpiredAuth(int limit) throws DataAccessException {
+        // Nothing is stored per token; only revocations of expired tokens can be dropped
+        long now = clock.instant().getEpochSecond();
+        int removed = revocationDAO.deleteExpiredRevocations(now, limit);
+        revoked.values().removeIf(expiry -> expiry <= now);
+        if (removed < limit) {
+            // Last batch of the sweep: pick up logouts and clears made by other servers
+            load();
+        }
+        return removed;
+    }
+
+    public int revokedCount() {
+        return revoked.size();
+    }
+
+    private synchronized void purgeExpiredRevocations() {
+        // Once a token has expired it fails verification on its own
+        if (++revokedSincePurge < PURGE_EVERY) {
+            return;
+        }
+        revokedSincePurge = 0;
+        long now = clock.instant().getEpochSecond();
+        revoked.values().removeIf(expiry -> expiry <= now);
+    }
+
+    private synchronized void useEpoch(long epoch) throws DataAccessException {
+        if (epoch == keyEpoch) {
+            return;
+        }
+        // Revocations belong to tokens signed with the old key, which fail on their own now
+        key = epoch == 0 ? new SecretKeySpec(secret, ALGORITHM)
+                : new SecretKeySpec(DECODER.decode(sign("epoch " + epoch, new SecretKeySpec(secret, ALGORITHM))), ALGORITHM);
+        keyEpoch = epoch;
+        revoked.clear();
+    }
+
+    private static String sign(String payload, SecretKeySpec key) throws DataAccessException {
+        try {
+            var mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return ENCODER.encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new DataAccessException("Error: cannot sign token");
+        }
+    }
+
+    private static byte[] randomSecret() {
+        var secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        return secret;
+    }
+}
@@ -0,0 +1,290 @@
+package server;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import model.PlayerRating;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One node's view of the cluster. Every game has one owner node, picked from
+ * a hash ring, which runs all of its commands. A node that receives a command
+ * for a game it does not own forwards it to the owner's topic. The owner works
+ * with a stand-in Session whose sends are published back to the client's node.
+ * Game broadcasts go out once on the game's topic, and every node with clients
+ * in that game delivers them locally.
+ */
+class ClusterNode implements Closeable {
+    private static final Gson GSON = new Gson();
+    private static final String CLUSTER_TOPIC = "cluster";
+
+    enum Kind {
+        // To the owner: a client command, a client gone, a seat change made over HTTP
+        COMMAND, CLOSED, SEAT_CLAIMED, SEAT_RELEASED,
+        // To the client's node: a message for one client, a close, confirmation the client joined a game
+        SEND, CLOSE, JOINED,
+        // On a game's topic: a broadcast for everyone in the game
+        BROADCAST,
+        // To every node: storage was cleared, ratings changed
+        CLEAR, RATINGS
+    }
+
+    record Envelope(Kind kind, String node, String session, int gameID, String message, String moveMessage,
+                    boolean moveUpdates, ChessGame.TeamColor color, String username) {
+
+        static Envelope of(Kind kind, String node, String session, int gameID) {
+            return new Envelope(kind, node, session, gameID, null, null, false, null, null);
+        }
+    }
+
+    private final String nodeId;
+    private final HashRing ring;
+    private final MessageBus bus;
+    private final AtomicLong nextKey = new AtomicLong();
+    private final List<MessageBus.Subscription> subscriptions = new ArrayList<MessageBus.Subscription>();
+    private Consumer<Envelope> handler;
+
+    // Clients connected to this node whose games live elsewhere, by key, and the game each is in
+    private final ConcurrentHashMap<Session, String> localKeys = new ConcurrentHashMap<Session, String>();
+    private final ConcurrentHashMap<String, Session> localSessions = new ConcurrentHashMap<String, Session>();
+    private final ConcurrentHashMap<String, Integer> forwardedGames = new ConcurrentHashMap<String, Integer>();
+    // Stand-ins for clients connected to other nodes, playing games this node owns
+    private final ConcurrentHashMap<String, Session> remoteSessions = new ConcurrentHashMap<String, Session>();
+    private final ConcurrentHashMap<Session, String> remoteKeys = new ConcurrentHashMap<Session, String>();
+    private final ConcurrentHashMap<Integer, MessageBus.Subscription> gameSubscriptions = new ConcurrentHashMap<Integer, MessageBus.Subscription>();
+
+    ClusterNode(String nodeId, HashRing ring, MessageBus bus) {
+        this.nodeId = nodeId;
+        this.ring = ring;
+        this.bus = bus;
+    }
+
+    void start(Consumer<Envelope> handler) {
+        this.handler = handler;
+        subscriptions.add(bus.subscribe(nodeTopic(nodeId), this::receive));
+        subscriptions.add(bus.subscribe(CLUSTER_TOPIC, this::receive));
+    }
+
+    boolean owns(int gameID) {
+        return ring.ownerOf(gameID).equals(nodeId);
+    }
+
+    void forwardCommand(Session local, int gameID, String command) {
+        var key = localKeys.computeIfAbsent(local, session -> nodeId + "/" + nextKey.incrementAndGet());
+        localSessions.put(key, local);
+        forwardedGames.put(key, gameID);
+        var envelope = new Envelope(Kind.COMMAND, nodeId, key, gameID, command, null, false, null, null);
+        bus.publish(nodeTopic(ring.ownerOf(gameID)), GSON.toJson(envelope));
+    }
+
+    void forwardSeat(Kind kind, int gameID, ChessGame.TeamColor color, String username) {
+        var envelope = new Envelope(kind, nodeId, null, gameID, null, null, false, color, username);
+        bus.publish(nodeTopic(ring.ownerOf(gameID)), GSON.toJson(envelope));
+    }
+
+    /**
+     * Tells the client's node that the client is now in the game, so it starts relaying the game's broadcasts.
+     */
+    void confirmJoined(Session remote, int gameID, boolean moveUpdates) {
+        var key = remoteKeys.get(remote);
+        if (key != null) {
+            var envelope = new Envelope(Kind.JOINED, nodeId, key, gameID, null, null, moveUpdates, null, null);
+            bus.publish(nodeTopic(nodeOf(key)), GSON.toJson(envelope));
+        }
+    }
+
+    /**
+     * Publishes a broadcast once for every other node. Clients that asked for MOVE
+     * messages get moveMessage when there is one; except is left out.
+     */
+    void publishToGame(int gameID, String message, String moveMessage, Session except) {
+        var exceptKey = except == null ? null : remoteKeys.get(except);
+        var envelope = new Envelope(Kind.BROADCAST, nodeId, exceptKey, gameID, message, moveMessage, false, null, null);
+        bus.publish(gameTopic(gameID), GSON.toJson(envelope));
+    }
+
+    void publishClear() {
+        bus.publish(CLUSTER_TOPIC, GSON.toJson(Envelope.of(Kind.CLEAR, nodeId, null, 0)));
+    }
+
+    void publishRatings(List<PlayerRating> ratings) {
+        var envelope = new Envelope(Kind.RATINGS, nodeId, null, 0, GSON.toJson(ratings), null, false, null, null);
+        bus.publish(CLUSTER_TOPIC, GSON.toJson(envelope));
+    }
+
+    void subscribeGame(int gameID) {
+        gameSubscriptions.computeIfAbsent(gameID, id -> bus.subscribe(gameTopic(id), this::receive));
+    }
+
+    void unsubscribeGame(int gameID) {
+        var subscription = gameSubscriptions.remove(gameID);
+        if (subscription != null) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * The stand-in for a client on another node, created the first time one of its commands arrives.
+     */
+    Session remoteSession(String key) {
+        return remoteSessions.computeIfAbsent(key, k -> {
+            var session = newRemoteSession(k);
+            remoteKeys.put(session, k);
+            return session;
+        });
+    }
+
+    /**
+     * Forgets a client on another node that has disconnected.
+     *
+     * @return its stand-in, or null if it was not known here
+     */
+    Session remoteClosed(String key) {
+        var session = remoteSessions.remove(key);
+        if (session != null) {
+            remoteKeys.remove(session);
+        }
+        return session;
+    }
+
+    boolean isRemote(Session session) {
+        return remoteKeys.containsKey(session);
+    }
+
+    Session localSession(String key) {
+        return localSessions.get(key);
+    }
+
+    String localKey(Session session) {
+        return localKeys.get(session);
+    }
+
+    /**
+     * Forgets a local client that has disconnected and tells the owner of its game.
+     */
+    void localClosed(Session session) {
+        var key = localKeys.remove(session);
+        if (key == null) {
+            return;
+        }
+        localSessions.remove(key);
+        var gameID = forwardedGames.remove(key);
+        if (gameID != null) {
+            bus.publish(nodeTopic(ring.ownerOf(gameID)), GSON.toJson(Envelope.of(Kind.CLOSED, nodeId, key, gameID)));
+        }
+    }
+
+    void clear() {
+        localKeys.clear();
+        localSessions.clear();
+        forwardedGames.clear();
+        remoteSessions.clear();
+        remoteKeys.clear();
+        gameSubscriptions.values().forEach(MessageBus.Subscription::close);
+        gameSubscriptions.clear();
+    }
+
+    @Override
+    public void close() {
+        clear();
+        subscriptions.forEach(MessageBus.Subscription::close);
+        subscriptions.clear();
+    }
+
+    private void receive(String message) {
+        var envelope = GSON.fromJson(message, Envelope.class);
+        // Cluster-wide news this node sent itself has already been acted on here
+        boolean clusterWide = envelope.kind() == Kind.CLEAR || envelope.kind() == Kind.RATINGS;
+        if (clusterWide && envelope.node().equals(nodeId)) {
+            return;
+        }
+        handler.accept(envelope);
+    }
+
+    private Session newRemoteSession(String key) {
+        var open = new AtomicBoolean(true);
+        var topic = nodeTopic(nodeOf(key));
+        var remote = (RemoteEndpoint) Proxy.newProxyInstance(RemoteEndpoint.class.getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "sendString":
+                            if (open.get()) {
+                                var envelope = new Envelope(Kind.SEND, nodeId, key, 0, (String) args[0], null, false, null, null);
+                                bus.publish(topic, GSON.toJson(envelope));
+                            }
+                            if (args.length == 2 && args[1] instanceof WriteCallback callback) {
+                                callback.writeSuccess();
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            // Pings and flushes are the client's node's business
+                            return defaultValue(method);
+                    }
+                });
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRemote":
+                            return remote;
+                        case "isOpen":
+                            return open.get();
+                        case "close":
+                        case "disconnect":
+                            // The client's node closes the socket and answers with CLOSED
+                            if (open.getAndSet(false)) {
+                                bus.publish(topic, GSON.toJson(Envelope.of(Kind.CLOSE, nodeId, key, 0)));
+                            }
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "remote session " + key;
+                        default:
+                            return defaultValue(method);
+                    }
+                });
+    }
+
+    private static Object defaultValue(Method method) {
+        var type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+
+    private static String nodeOf(String key) {
+        return key.substring(0, key.lastIndexOf('/'));
+    }
+
+    private static String nodeTopic(String node) {
+        return "node." + node;
+    }
+
+    private static String gameTopic(int gameID) {
+        return "game." + gameID;
+    }
+}
@@ -0,0 +1,74 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One mailbox per active game. Commands for a game run one at a time, in the
+ * order they were submitted; different games drain on the shared executor in
+ * parallel. A mailbox is dropped as soon as it runs dry.
+ */
+class GameActors {
+    // Commands run per turn before a busy game yields its thread to other games
+    private static final int MAX_COMMANDS_PER_TURN = 32;
+
+    private final Executor executor;
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<Integer, Mailbox>();
+
+    GameActors(Executor executor) {
+        this.executor = executor;
+    }
+
+    void submit(int gameID, Runnable command) {
+        // compute is atomic per key, so a command never lands in a mailbox that is being dropped
+        var mailbox = mailboxes.compute(gameID, (id, current) -> {
+            var target = current == null ? new Mailbox(id) : current;
+            target.queue.add(command);
+            return target;
+        });
+        mailbox.schedule();
+    }
+
+    int activeGames() {
+        return mailboxes.size();
+    }
+
+    private class Mailbox {
+        private final int gameID;
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Mailbox(int gameID) {
+            this.gameID = gameID;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            for (int i = 0; i < MAX_COMMANDS_PER_TURN; i++) {
+                var command = queue.poll();
+                if (command == null) {
+                    break;
+                }
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    System.err.printf("Command for game %d failed: %s%n", gameID, e);
+                }
+            }
+            scheduled.set(false);
+            if (!queue.isEmpty()) {
+                schedule();
+                return;
+            }
+            mailboxes.computeIfPresent(gameID, (id, current) ->
+                    current == this && queue.isEmpty() && !scheduled.get() ? null : current);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package server;
+
+import model.GameData;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of the games being played over WebSockets. Games with nobody
+ * connected leave once they have been idle for the timeout, and when the cache
+ * is full the least recently used game goes first, preferring games nobody is
+ * connected to. A game whose last write did not reach storage is handed to the
+ * eviction listener so it can be flushed. The flush should first call
+ * claimFlush, since a newer write of the game may have come in meanwhile.
+ */
+class GameCache implements Closeable {
+    public static final int DEFAULT_MAX_GAMES = 10_000;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    @FunctionalInterface
+    interface Loader {
+        GameData load(int gameID) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface Writer {
+        void write(GameData gameData) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface EvictionListener {
+        void evicted(int gameID, GameData gameData, boolean dirty);
+    }
+
+    record Stats(long hits, long misses, long sizeEvictions, long idleEvictions, long dirtyEvictions,
+                 long supersededFlushes, int size) {
+    }
+
+    private final int maxGames;
+    private final Duration idleTimeout;
+    // True while a game has sessions connected; such games are not idle however long since the last move
+    private final IntPredicate inUse;
+    private final EvictionListener listener;
+    // Access order, so iteration starts at the least recently used game
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true);
+    // Dirty games evicted and not yet flushed; a newer write of the game takes its place here
+    private final HashMap<Integer, GameData> pendingFlushes = new HashMap<Integer, GameData>();
+    private long hits;
+    private long misses;
+    private long sizeEvictions;
+    private long idleEvictions;
+    private long dirtyEvictions;
+    private long supersededFlushes;
+    private ScheduledExecutorService sweeper;
+
+    GameCache(int maxGames, Duration idleTimeout, IntPredicate inUse, EvictionListener listener) {
+        this.maxGames = maxGames;
+        this.idleTimeout = idleTimeout;
+        this.inUse = inUse;
+        this.listener = listener;
+    }
+
+    /**
+     * Cache configured by -Dchess.gameCacheSize and -Dchess.gameCacheIdleMinutes.
+     */
+    static GameCache fromSystemProperties(IntPredicate inUse, EvictionListener listener) {
+        int maxGames = Integer.getInteger("chess.gameCacheSize", DEFAULT_MAX_GAMES);
+        long idleMinutes = Long.getLong("chess.gameCacheIdleMinutes", DEFAULT_IDLE_TIMEOUT.toMinutes());
+        return new GameCache(maxGames, Duration.ofMinutes(idleMinutes), inUse, listener);
+    }
+
+    synchronized GameData get(int gameID) {
+        var entry = entries.get(gameID);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        entry.touch();
+        return entry.gameData;
+    }
+
+    /**
+     * Returns the cached game, loading and caching it on a miss.
+     */
+    GameData load(int gameID, Loader loader) throws Exception {
+        var cached = get(gameID);
+        if (cached != null) {
+            return cached;
+        }
+        // Loaded outside the lock; callers for one game run one at a time, so two loads do not race
+        // The evicted copy of a game not yet flushed wins over what storage had
+        return put(loader.load(gameID), false);
+    }
+
+    void put(GameData gameData) {
+        put(gameData, false);
+    }
+
+    /**
+     * Caches the game and writes it to storage. If the write fails the game
+     * stays cached as dirty, so it is flushed when evicted.
+     */
+    void write(GameData gameData, Writer writer) throws Exception {
+        put(gameData, true);
+        writer.write(gameData);
+        synchronized (this) {
+            var entry = entries.get(gameData.gameID());
+            if (entry != null && entry.gameData == gameData) {
+                entry.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Applies a change to the game if it is cached; games not cached are left
+     * alone, since they are loaded fresh from storage when next used. Only for
+     * changes already in storage, like seats, as a reload keeps storage's seats.
+     */
+    synchronized void update(int gameID, UnaryOperator<GameData> change) {
+        var entry = entries.get(gameID);
+        if (entry != null) {
+            entry.gameData = change.apply(entry.gameData);
+        }
+    }
+
+    /**
+     * Called by the flush of an evicted dirty game before it writes.
+     *
+     * @return false if the game has been written or cached again since, and the flush would overwrite newer state
+     */
+    synchronized boolean claimFlush(int gameID, GameData gameData) {
+        if (pendingFlushes.get(gameID) == gameData) {
+            pendingFlushes.remove(gameID);
+            return true;
+        }
+        supersededFlushes++;
+        return false;
+    }
+
+    synchronized void remove(int gameID) {
+        entries.remove(gameID);
+        pendingFlushes.remove(gameID);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        pendingFlushes.clear();
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, sizeEvictions, idleEvictions, dirtyEvictions, supersededFlushes, entries.size());
+    }
+
+    void startIdleSweep(Duration interval) {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "game-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::evictIdle, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Evicts games with nobody connected and no activity within the idle timeout.
+     *
+     * @return number of games evicted
+     */
+    int evictIdle() {
+        long cutoff = System.nanoTime() - idleTimeout.toNanos();
+        var evicted = new ArrayList<Entry>();
+        synchronized (this) {
+            var iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                var entry = iterator.next();
+                if (entry.lastActivity - cutoff <= 0 && !inUse.test(entry.gameData.gameID())) {
+                    iterator.remove();
+                    evicted(entry);
+                    evicted.add(entry);
+                }
+            }
+            idleEvictions += evicted.size();
+        }
+        notifyEvicted(evicted);
+        return evicted.size();
+    }
+
+    @Override
+    public void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private GameData put(GameData gameData, boolean dirty) {
+        var evicted = new ArrayList<Entry>();
+        synchronized (this) {
+            var pending = pendingFlushes.remove(gameData.gameID());
+            if (pending != null && !dirty) {
+                // Loaded from storage before the evicted copy was flushed, so the evicted board is newer.
+                // Seats are written to storage directly, and updates made while evicted are only there
+                gameData = Objects.equals(gameData.whiteUsername(), pending.whiteUsername())
+                        && Objects.equals(gameData.blackUsername(), pending.blackUsername()) ? pending
+                        : new GameData(gameData.gameID(), gameData.whiteUsername(), gameData.blackUsername(),
+                        pending.gameName(), pending.game());
+                dirty = true;
+            }
+            var entry = entries.get(gameData.gameID());
+            if (entry == null) {
+                entry = new Entry(gameData);
+                entries.put(gameData.gameID(), entry);
+            }
+            entry.gameData = gameData;
+            entry.dirty = dirty || entry.dirty;
+            entry.touch();
+            if (entries.size() > maxGames) {
+                evictForSize(evicted);
+            }
+        }
+        notifyEvicted(evicted);
+        return gameData;
+    }
+
+    private void evictForSize(List<Entry> evicted) {
+        // First pass skips games people are connected to; the second takes whatever is oldest
+        for (boolean skipInUse : new boolean[]{true, false}) {
+            var iterator = entries.values().iterator();
+            while (entries.size() > maxGames && iterator.hasNext()) {
+                var entry = iterator.next();
+                if (skipInUse && inUse.test(entry.gameData.gameID())) {
+                    continue;
+                }
+                iterator.remove();
+                evicted(entry);
+                evicted.add(entry);
+                sizeEvictions++;
+            }
+        }
+    }
+
+    private void evicted(Entry entry) {
+        if (entry.dirty) {
+            pendingFlushes.put(entry.gameData.gameID(), entry.gameData);
+        }
+    }
+
+    private void notifyEvicted(List<Entry> evicted) {
+        for (var entry : evicted) {
+            if (entry.dirty) {
+                synchronized (this) {
+                    dirtyEvictions++;
+                }
+            }
+            listener.evicted(entry.gameData.gameID(), entry.gameData, entry.dirty);
+        }
+    }
+
+    private static class Entry {
+        GameData gameData;
+        boolean dirty;
+        long lastActivity;
+
+        Entry(GameData gameData) {
+            this.gameData = gameData;
+        }
+
+        void touch() {
+            lastActivity = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package server;
+
+import com.google.gson.Gson;
+import websocket.messages.ServerMessage;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Numbers the events broadcast in one game and keeps the most recent ones,
+ * already encoded, so a client that drops can resume from the last sequence
+ * number it saw instead of reloading the whole game.
+ * <p>
+ * Numbering starts over whenever a new GameEvents is made for the game, e.g.
+ * after a restart or on another cluster node, so each one also has a random
+ * stream ID. A client resuming with another stream's number gets a reload.
+ */
+class GameEvents {
+    public static final int DEFAULT_REPLAY_LIMIT = 256;
+    private static final Gson GSON = new Gson();
+
+    private final int replayLimit;
+    private final ArrayDeque<String> recent = new ArrayDeque<String>();
+    private final long streamId;
+    private long lastSeq = 0;
+
+    GameEvents(int replayLimit) {
+        this.replayLimit = replayLimit;
+        this.streamId = ThreadLocalRandom.current().nextLong();
+    }
+
+    long streamId() {
+        return streamId;
+    }
+
+    /**
+     * Gives the message the next sequence number and returns it encoded.
+     */
+    synchronized String record(ServerMessage message) {
+        message.setSeq(++lastSeq);
+        message.setStreamId(streamId);
+        var encoded = GSON.toJson(message);
+        recent.addLast(encoded);
+        if (recent.size() > replayLimit) {
+            recent.removeFirst();
+        }
+        return encoded;
+    }
+
+    synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Events after the given sequence number, oldest first, or null if the
+     * number is from another stream or some of the events are no longer kept,
+     * and the client needs a full reload.
+     */
+    synchronized List<String> since(Long streamId, long seq) {
+        long firstKept = lastSeq - recent.size() + 1;
+        if (streamId == null || streamId != this.streamId || seq > lastSeq || seq + 1 < firstKept) {
+            return null;
+        }
+        var missed = new ArrayList<String>(recent);
+        return missed.subList((int) (seq + 1 - firstKept), missed.size());
+    }
+}
@@ -0,0 +1,37 @@
+package server;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * MessageBus for nodes running in one JVM. Each message is handed to every
+ * subscriber on the publishing thread, so ordering is exactly publish order.
+ * Subscribers must not block.
+ */
+public class LoopbackMessageBus implements MessageBus {
+    private final ConcurrentHashMap<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<String, List<Consumer<String>>>();
+
+    public void publish(String topic, String message) {
+        var handlers = subscribers.get(topic);
+        if (handlers == null) {
+            return;
+        }
+        for (var handler : handlers) {
+            try {
+                handler.accept(message);
+            } catch (RuntimeException e) {
+                System.err.printf("Subscriber to %s failed: %s%n", topic, e);
+            }
+        }
+    }
+
+    public Subscription subscribe(String topic, Consumer<String> handler) {
+        subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<Consumer<String>>()).add(handler);
+        return () -> subscribers.computeIfPresent(topic, (t, handlers) -> {
+            handlers.remove(handler);
+            return handlers.isEmpty() ? null : handlers;
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package server;
+
+import java.util.function.Consumer;
+
+/**
+ * Topic-based publish/subscribe between the nodes of a cluster. Messages are
+ * opaque strings; delivery order is expected to match publish order for each
+ * publisher and topic.
+ */
+public interface MessageBus {
+
+    interface Subscription extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    void publish(String topic, String message);
+
+    Subscription subscribe(String topic, Consumer<String> handler);
+}
@@ -0,0 +1,71 @@
+package server;
+
+import websocket.FrameCompression;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses outgoing messages for sessions that asked for compression.
+ * Messages under the threshold, like most notifications, go out as they are,
+ * since deflating a few dozen bytes costs CPU and saves next to nothing. A
+ * message that does not shrink is also sent as it is.
+ */
+class MessageCompressor {
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * @param bytesIn   size of the messages that were compressed
+     * @param bytesOut  size of the frames they became
+     * @param nanos     time spent compressing, including attempts that did not pay off
+     */
+    record Stats(long compressed, long skipped, long bytesIn, long bytesOut, long nanos) {
+        double ratio() {
+            return bytesIn == 0 ? 1.0 : (double) bytesOut / bytesIn;
+        }
+    }
+
+    private final int threshold;
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    MessageCompressor(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Compressor configured by -Dchess.compressThreshold, in bytes.
+     */
+    static MessageCompressor fromSystemProperties() {
+        return new MessageCompressor(Integer.getInteger("chess.compressThreshold", DEFAULT_THRESHOLD));
+    }
+
+    /**
+     * @return the compressed frame, or null if the message should be sent as it is
+     */
+    ByteBuffer compress(ByteBuffer payload) {
+        if (payload.remaining() < threshold) {
+            skipped.increment();
+            return null;
+        }
+        long start = System.nanoTime();
+        var frame = FrameCompression.compress(payload, Deflater.DEFAULT_COMPRESSION);
+        nanos.add(System.nanoTime() - start);
+        if (frame.remaining() >= payload.remaining()) {
+            skipped.increment();
+            return null;
+        }
+        compressed.increment();
+        bytesIn.add(payload.remaining());
+        bytesOut.add(frame.remaining());
+        return frame;
+    }
+
+    Stats stats() {
+        return new Stats(compressed.sum(), skipped.sum(), bytesIn.sum(), bytesOut.sum(), nanos.sum());
+    }
+}
@@ -0,0 +1,137 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous WebSocket sends with a bounded queue per session. Each session
+ * has at most one write in flight and the next message goes out when it
+ * completes, so nothing blocks on a slow client. A session whose queue
+ * overflows is closed rather than holding up the game.
+ */
+class OutboundQueues {
+    public static final int DEFAULT_QUEUE_LIMIT = 256;
+    // RFC 6455 "Try Again Later"
+    private static final int TRY_AGAIN_LATER = 1013;
+
+    private final int queueLimit;
+    private final ConcurrentHashMap<Session, Outbox> outboxes = new ConcurrentHashMap<Session, Outbox>();
+    private final LongAdder overflowed = new LongAdder();
+
+    OutboundQueues(int queueLimit) {
+        this.queueLimit = queueLimit;
+    }
+
+    void send(Session session, String message) {
+        if (!session.isOpen()) {
+            remove(session);
+            return;
+        }
+        outboxes.computeIfAbsent(session, Outbox::new).enqueue(message);
+    }
+
+    /**
+     * Queues a binary frame. The buffer itself is left untouched, so one
+     * encoded message can be handed to any number of sessions.
+     */
+    void send(Session session, ByteBuffer message) {
+        if (!session.isOpen()) {
+            remove(session);
+            return;
+        }
+        outboxes.computeIfAbsent(session, Outbox::new).enqueue(message.duplicate());
+    }
+
+    void remove(Session session) {
+        outboxes.remove(session);
+    }
+
+    void clear() {
+        outboxes.clear();
+    }
+
+    /**
+     * Number of sessions closed because they fell too far behind.
+     */
+    long overflowedSessions() {
+        return overflowed.sum();
+    }
+
+    private class Outbox implements WriteCallback {
+        private final Session session;
+        // Text frames as Strings, binary frames as ByteBuffers
+        private final ArrayDeque<Object> queue = new ArrayDeque<Object>();
+        private boolean writing;
+        private boolean closed;
+
+        Outbox(Session session) {
+            this.session = session;
+        }
+
+        void enqueue(Object message) {
+            Object next;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() >= queueLimit) {
+                    closed = true;
+                    queue.clear();
+                    next = null;
+                } else if (writing) {
+                    queue.add(message);
+                    return;
+                } else {
+                    writing = true;
+                    next = message;
+                }
+            }
+            if (next == null) {
+                overflowed.increment();
+                outboxes.remove(session, this);
+                session.close(TRY_AGAIN_LATER, "Too far behind; reconnect to resync");
+                return;
+            }
+            write(next);
+        }
+
+        @Override
+        public void writeSuccess() {
+            Object next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    writing = false;
+                    return;
+                }
+            }
+            write(next);
+        }
+
+        @Override
+        public void writeFailed(Throwable error) {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            outboxes.remove(session, this);
+        }
+
+        private void write(Object message) {
+            try {
+                if (message instanceof ByteBuffer bytes) {
+                    session.getRemote().sendBytes(bytes, this);
+                } else {
+                    session.getRemote().sendString((String) message, this);
+                }
+            } catch (RuntimeException e) {
+                writeFailed(e);
+            }
+        }
+    }
+}
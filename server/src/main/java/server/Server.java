@@ -1,43 +1,212 @@
 package server;
 
 import chess.*;
+import dataaccess.ArchivedGameDAO;
+import dataaccess.AuthTokenSweeper;
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import dataaccess.DatabaseManager;
+import dataaccess.FileDataAccess;
+import dataaccess.GameArchive;
+import dataaccess.MemoryDataAccess;
 import dataaccess.MySqlDataAccess;
+import dataaccess.SignedTokenAuthDAO;
 import model.*;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.extensions.Frame;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketFrame;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 import service.*;
 import spark.*;
 import com.google.gson.Gson;
+import websocket.BinaryProtocol;
 import websocket.commands.UserGameCommand;
 import websocket.messages.ServerMessage;
 
-import java.util.LinkedList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class Server {
 
-    private final MySqlDataAccess.AuthDAO authDAO = new MySqlDataAccess.AuthDAO();
-    private final MySqlDataAccess.UserDAO userDAO = new MySqlDataAccess.UserDAO();
-    private final MySqlDataAccess.GameDAO gameDAO = new MySqlDataAccess.GameDAO();
+    private final DataAccess.AuthDAO authDAO;
+    private final DataAccess.UserDAO userDAO;
+    private final DataAccess.GameDAO gameDAO;
+    private final DataAccess.BulkDAO bulkDAO;
+    private final DataAccess.RatingDAO ratingDAO;
+    private final DataAccess.RevocationDAO revocationDAO;
+    private final boolean useDatabase;
 
-    private final AuthService authService = new AuthService(authDAO, userDAO, gameDAO);
-    private final GameService gameService = new GameService(gameDAO);
+    private final AuthService authService;
+    private final GameService gameService;
+    private final AdminService adminService;
+    private final PasswordHasher passwordHasher;
+    private final MatchmakingService matchmakingService;
+    private final RatingService ratingService;
 
     private WSHandler wsHandler = new WSHandler();
+    // Set when this server is one node of several; null when it runs alone
+    private ClusterNode cluster;
+    private AuthTokenSweeper tokenSweeper;
 
-    public int run(int desiredPort) {
-        // Initialize database
+    public Server() {
+        this(new MySqlDataAccess.AuthDAO(), new MySqlDataAccess.UserDAO(), new MySqlDataAccess.GameDAO(),
+                new MySqlDataAccess.BulkDAO(), new MySqlDataAccess.RatingDAO(), new MySqlDataAccess.RevocationDAO(), true);
+    }
+
+    public Server(DataAccess.AuthDAO authDAO, DataAccess.UserDAO userDAO, DataAccess.GameDAO gameDAO) {
+        this(authDAO, userDAO, gameDAO, new DataAccess.BulkDAO(authDAO, userDAO, gameDAO), new MemoryDataAccess.RatingDAO(),
+                new MemoryDataAccess.RevocationDAO(), false);
+    }
+
+    private Server(DataAccess.AuthDAO authDAO, DataAccess.UserDAO userDAO, DataAccess.GameDAO gameDAO,
+                   DataAccess.BulkDAO bulkDAO, DataAccess.RatingDAO ratingDAO, DataAccess.RevocationDAO revocationDAO,
+                   boolean useDatabase) {
+        this.authDAO = authDAO;
+        this.userDAO = userDAO;
+        this.gameDAO = gameDAO;
+        this.bulkDAO = bulkDAO;
+        this.ratingDAO = ratingDAO;
+        this.revocationDAO = revocationDAO;
+        this.useDatabase = useDatabase;
+        this.passwordHasher = PasswordHasher.fromSystemProperties();
+        this.authService = new AuthService(authDAO, userDAO, bulkDAO, passwordHasher);
+        this.gameService = new GameService(gameDAO);
+        // Seats taken over HTTP go straight into the live game, so WebSocket commands never reread it
+        gameService.addSeatListener(wsHandler);
+        // Admin routes stay disabled unless started with -Dchess.adminToken=<token>
+        this.adminService = new AdminService(bulkDAO, System.getProperty("chess.adminToken"), passwordHasher);
+        this.matchmakingService = new MatchmakingService(gameDAO, Clock.systemUTC());
+        // Players queued over a WebSocket hear about their match on it
+        matchmakingService.addMatchListener(wsHandler);
+        this.ratingService = new RatingService(ratingDAO, Clock.systemUTC());
+    }
+
+    public static Server inMemory() {
+        return new Server(new MemoryDataAccess.AuthDAO(), new MemoryDataAccess.UserDAO(), new MemoryDataAccess.GameDAO());
+    }
+
+    public static Server onFile(Path logFile) {
+        FileDataAccess store = null;
         try {
-            new MySqlDataAccess();
-        } catch (Exception e) {
-            System.out.printf("Cannot initialize databases: %s%n", e);
+            store = new FileDataAccess(logFile);
+        } catch (DataAccessException e) {
+            System.out.printf("Cannot open data file: %s%n", e);
             System.exit(1);
         }
+        return new Server(new FileDataAccess.AuthDAO(store), new FileDataAccess.UserDAO(store), new FileDataAccess.GameDAO(store),
+                new FileDataAccess.BulkDAO(store), new FileDataAccess.RatingDAO(store), new FileDataAccess.RevocationDAO(store), false);
+    }
+
+    /**
+     * Returns a server over the same storage that moves finished games into
+     * a memory-mapped archive in the given directory.
+     */
+    public Server withArchive(Path archiveDir, Duration interval) {
+        ArchivedGameDAO archivedGameDAO = null;
+        try {
+            archivedGameDAO = new ArchivedGameDAO(gameDAO, new GameArchive(archiveDir));
+            archivedGameDAO.start(interval);
+        } catch (IOException | DataAccessException e) {
+            System.out.printf("Cannot open game archive: %s%n", e);
+            System.exit(1);
+        }
+        // Generic bulk operations, so clearing also empties the archive
+        return new Server(authDAO, userDAO, archivedGameDAO, new DataAccess.BulkDAO(authDAO, userDAO, archivedGameDAO), ratingDAO,
+                revocationDAO, useDatabase);
+    }
+
+    /**
+     * Returns a server over the same storage that issues HMAC-signed tokens,
+     * checked in memory, instead of looking tokens up in the auth store.
+     * Logouts and the signing key epoch are kept in the store.
+     */
+    public Server withSignedTokens(byte[] secret, Duration ttl) {
+        var signedAuthDAO = new SignedTokenAuthDAO(secret, ttl, Clock.systemUTC(), revocationDAO);
+        var storeBulkDAO = bulkDAO;
+        // Keep the store's batched imports and clear; clearing also rotates the signing key
+        var signedBulkDAO = new DataAccess.BulkDAO(signedAuthDAO, userDAO, gameDAO) {
+            public void clearAll() throws DataAccessException {
+                storeBulkDAO.clearAll();
+                signedAuthDAO.clearAllAuth();
+            }
+
+            public int importUsers(List<UserData> users, int batchSize) throws DataAccessException {
+                return storeBulkDAO.importUsers(users, batchSize);
+            }
+
+            public int importGames(List<GameData> games, int batchSize) throws DataAccessException {
+                return storeBulkDAO.importGames(games, batchSize);
+            }
+
+            public ImportResponse importAll(List<UserData> users, List<GameData> games, int batchSize) throws DataAccessException {
+                return storeBulkDAO.importAll(users, games, batchSize);
+            }
+        };
+        return new Server(signedAuthDAO, userDAO, gameDAO, signedBulkDAO, ratingDAO, revocationDAO, useDatabase);
+    }
+
+    /**
+     * Returns a server over the same storage that runs as one node of a
+     * cluster. Each game is owned by one node, chosen by consistent hashing
+     * on its ID. Other nodes forward the game's commands to the owner and
+     * relay its broadcasts to their own clients. Every node must be given the
+     * same node list, the same bus and the same storage.
+     */
+    public Server inCluster(String nodeId, List<String> nodeIds, MessageBus bus) {
+        var node = new Server(authDAO, userDAO, gameDAO, bulkDAO, ratingDAO, revocationDAO, useDatabase);
+        node.cluster = new ClusterNode(nodeId, new HashRing(nodeIds, HashRing.DEFAULT_VIRTUAL_NODES), bus);
+        node.cluster.start(node.wsHandler::onClusterMessage);
+        // Games end on their owner; every other node hears the new ratings for its leaderboard
+        node.ratingService.addRatingListener(node.cluster::publishRatings);
+        return node;
+    }
+
+    WSHandler webSocketHandler() {
+        return wsHandler;
+    }
+
+    public int run(int desiredPort) {
+        // Initialize database
+        if (useDatabase) {
+            try {
+                new MySqlDataAccess();
+            } catch (Exception e) {
+                System.out.printf("Cannot initialize databases: %s%n", e);
+                System.exit(1);
+            }
+        }
+
+        ratingService.load();
+        if (authDAO instanceof SignedTokenAuthDAO signedAuthDAO) {
+            // Logouts and clears from before a restart, or made by other servers
+            try {
+                signedAuthDAO.load();
+            } catch (DataAccessException e) {
+                System.out.printf("Cannot load token revocations: %s%n", e);
+                System.exit(1);
+            }
+        }
+        tokenSweeper = new AuthTokenSweeper(authDAO, AuthTokenSweeper.DEFAULT_BATCH_SIZE);
+        tokenSweeper.start(Duration.ofMinutes(1));
+        wsHandler.sessions.startHeartbeats(SessionRegistry.DEFAULT_HEARTBEAT_INTERVAL, SessionRegistry.DEFAULT_HEARTBEAT_TIMEOUT);
+        wsHandler.games.startIdleSweep(Duration.ofMinutes(1));
+        wsHandler.flagTimers.start();
+        matchmakingService.start(MatchmakingService.DEFAULT_TICK);
 
         Spark.port(desiredPort);
 
@@ -49,9 +218,22 @@ public class Server {
         Spark.post("/session", this::loginUser);
         Spark.delete("/session", this::logoutUser);
         Spark.get("/game", this::listGames);
+        Spark.get("/game/mine", this::listPlayerGames);
         Spark.post("/game", this::createGame);
         Spark.put("/game", this::joinGame);
+        Spark.post("/match", this::enterMatchmaking);
+        Spark.get("/match", this::matchStatus);
+        Spark.delete("/match", this::leaveMatchmaking);
+        Spark.get("/leaderboard", this::leaderboard);
         Spark.delete("/db", this::clearDB);
+        Spark.post("/admin/import", this::importData);
+        Spark.get("/admin/matchmaking", this::matchmakingStats);
+        Spark.get("/admin/passwords", this::passwordStats);
+        Spark.get("/admin/games", this::gameCacheStats);
+        Spark.get("/admin/pool", this::poolStats);
+        Spark.get("/admin/sessions", this::sessionStats);
+        Spark.get("/admin/compression", this::compressionStats);
+        Spark.post("/admin/ratings/recompute", this::recomputeRatings);
         Spark.exception(ResponseException.class, this::exceptionHandler);
 
         Spark.awaitInitialization();
@@ -78,46 +260,297 @@ public class Server {
     }
 
     private Object logoutUser(Request request, Response response) throws ResponseException {
-        var authData = authService.verifyAuthToken(request);
-        authService.logoutRequest(authData.authToken());
+        await(authService.verifyAuthTokenAsync(request.headers("Authorization"))
+                .thenCompose(authData -> authService.logoutAsync(authData.authToken())));
         return "{}";
     }
 
     private Object listGames(Request request, Response response) throws ResponseException {
-        authService.verifyAuthToken(request);
-        ListGamesResponse res = gameService.listGamesRequest();
+        var listRequest = parseListGamesRequest(request);
+        ListGamesResponse res = await(authService.verifyAuthTokenAsync(request.headers("Authorization"))
+                .thenCompose(authData -> gameService.listGamesAsync(listRequest)));
+        return new Gson().toJson(res);
+    }
+
+    private Object listPlayerGames(Request request, Response response) throws ResponseException {
+        ListGamesResponse res = await(authService.verifyAuthTokenAsync(request.headers("Authorization"))
+                .thenCompose(authData -> gameService.getPlayerGamesAsync(authData.username(), GameService.DEFAULT_PAGE_SIZE)));
         return new Gson().toJson(res);
     }
 
+    private ListGamesRequest parseListGamesRequest(Request request) throws ResponseException {
+        // Read optional ?cursor=&limit=&open=&player=&status= filters
+        try {
+            Integer cursor = request.queryParams("cursor") == null ? null : Integer.parseInt(request.queryParams("cursor"));
+            Integer limit = request.queryParams("limit") == null ? null : Integer.parseInt(request.queryParams("limit"));
+            Boolean openSeats = request.queryParams("open") == null ? null : Boolean.parseBoolean(request.queryParams("open"));
+            String player = request.queryParams("player");
+            ChessGame.GameState status = null;
+            if (request.queryParams("status") != null) {
+                status = ChessGame.GameState.valueOf(request.queryParams("status").toUpperCase());
+            }
+            return new ListGamesRequest(cursor, limit, openSeats, player, status);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+    }
+
     private Object createGame(Request request, Response response) throws ResponseException {
         authService.verifyAuthToken(request);
-        var gameData = new Gson().fromJson(request.body(), GameData.class);
-        NewGameResponse res = gameService.newGameRequest(gameData);
+        var createRequest = new Gson().fromJson(request.body(), CreateGameRequest.class);
+        NewGameResponse res = gameService.newGameRequest(createRequest);
         return new Gson().toJson(res);
     }
 
     private Object joinGame(Request request, Response response) throws ResponseException {
-        var authData = authService.verifyAuthToken(request);
         var joinRequest = new Gson().fromJson(request.body(), JoinGameRequest.class);
-        gameService.joinGame(joinRequest, authData.username());
+        await(authService.verifyAuthTokenAsync(request.headers("Authorization"))
+                .thenCompose(authData -> gameService.joinGameAsync(joinRequest, authData.username())));
+        return "{}";
+    }
+
+    private Object enterMatchmaking(Request request, Response response) throws ResponseException {
+        var authData = authService.verifyAuthToken(request);
+        var matchRequest = new Gson().fromJson(request.body(), MatchRequest.class);
+        matchmakingService.enqueue(authData.username(), withStoredRating(authData.username(), matchRequest));
+        return new Gson().toJson(matchmakingService.status(authData.username()));
+    }
+
+    private Object matchStatus(Request request, Response response) throws ResponseException {
+        var authData = authService.verifyAuthToken(request);
+        return new Gson().toJson(matchmakingService.status(authData.username()));
+    }
+
+    private Object leaveMatchmaking(Request request, Response response) throws ResponseException {
+        var authData = authService.verifyAuthToken(request);
+        matchmakingService.leave(authData.username());
         return "{}";
     }
 
+    // Players are matched on the rating kept here, not on one they send
+    private MatchRequest withStoredRating(String username, MatchRequest matchRequest) {
+        int rating = (int) Math.round(ratingService.getRating(username).rating());
+        if (matchRequest == null) {
+            return new MatchRequest(null, null, rating);
+        }
+        return new MatchRequest(matchRequest.clockSeconds(), matchRequest.incrementSeconds(), rating);
+    }
+
+    private Object leaderboard(Request request, Response response) throws ResponseException {
+        authService.verifyAuthToken(request);
+        int limit = RatingService.DEFAULT_LEADERBOARD_SIZE;
+        if (request.queryParams("limit") != null) {
+            try {
+                limit = Integer.parseInt(request.queryParams("limit"));
+            } catch (NumberFormatException e) {
+                throw new ResponseException(400, "Error: bad request");
+            }
+        }
+        return new Gson().toJson(ratingService.getLeaderboard(limit));
+    }
+
+    private Object recomputeRatings(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(ratingService.recompute());
+    }
+
+    private Object matchmakingStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(matchmakingService.stats());
+    }
+
+    private Object passwordStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(passwordHasher.stats());
+    }
+
+    private Object gameCacheStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(wsHandler.games.stats());
+    }
+
+    private Object poolStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        if (!useDatabase) {
+            throw new ResponseException(404, "Error: not using a database");
+        }
+        return new Gson().toJson(DatabaseManager.poolStats());
+    }
+
+    private Object sessionStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(wsHandler.sessions.stats());
+    }
+
+    private Object compressionStats(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        return new Gson().toJson(wsHandler.compressor.stats());
+    }
+
+    private Object importData(Request request, Response response) throws ResponseException {
+        adminService.verifyAdminToken(request.headers("Authorization"));
+        var importRequest = new Gson().fromJson(request.body(), ImportRequest.class);
+        ImportResponse res = adminService.importData(importRequest);
+        return new Gson().toJson(res);
+    }
+
     private Object clearDB(Request request, Response response) {
         authService.clearDB();
+        ratingService.clear();
         wsHandler.clear();
         return "{}";
     }
 
+    private static <T> T await(CompletableFuture<T> future) throws ResponseException {
+        // Spark routes are synchronous, so unwrap the async result back into the route's exceptions
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ResponseException responseException) {
+                throw responseException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
     @WebSocket
-    public class WSHandler {
-        // ConcurrentHashMap to store WebSocket connections
-        private static final ConcurrentHashMap<Integer, List<Session>> SESSION_MAP = new ConcurrentHashMap<>();
-        private static final ConcurrentHashMap<Integer, GameData> GAME_DATA_MAP = new ConcurrentHashMap<>();
+    public class WSHandler implements GameService.SeatListener, MatchmakingService.MatchListener {
+        // WebSocket connections per game, with a reverse index from session to game
+        private final SessionRegistry sessions = new SessionRegistry();
+        // Games being played, bounded by count and idle time; reloaded from storage on a miss
+        private final GameCache games = GameCache.fromSystemProperties(gameID -> sessions.liveSessions(gameID) > 0, this::gameEvicted);
+        // Numbered, replayable event stream per game, for clients resuming after a drop
+        private final ConcurrentHashMap<Integer, GameEvents> gameEvents = new ConcurrentHashMap<>();
+        // One Gson for every message; each message is encoded once however many sessions receive it
+        private static final Gson GSON = new Gson();
+        private final OutboundQueues outbound = new OutboundQueues(OutboundQueues.DEFAULT_QUEUE_LIMIT);
+        // Each game's commands run one at a time on virtual threads, so the game's cached
+        // state is never changed by two commands at once and database calls never hold a Jetty thread
+        private final GameActors gameActors = new GameActors(DataAccess.ASYNC_EXECUTOR);
+        // Sessions that asked for MOVE messages; everyone else still gets a full LOAD_GAME per move
+        private final Set<Session> moveSubscribers = ConcurrentHashMap.newKeySet();
+        // Sessions that sent binary frames and so get binary frames back; everyone else speaks JSON
+        private final Set<Session> binarySessions = ConcurrentHashMap.newKeySet();
+        // Sessions that asked for compression, and the compressor that decides which messages are worth it
+        private final Set<Session> compressedSessions = ConcurrentHashMap.newKeySet();
+        private final MessageCompressor compressor = MessageCompressor.fromSystemProperties();
+        // Flag-fall timers for every running chess clock, all on one wheel; each game has at most one pending
+        private final Clock clock = Clock.systemUTC();
+        private final TimerWheel flagTimers = new TimerWheel(TimerWheel.DEFAULT_TICK, clock);
+        private final ConcurrentHashMap<Integer, TimerWheel.Timeout> flagTimeouts = new ConcurrentHashMap<>();
+        // Players waiting in matchmaking over a WebSocket, both ways round so either side can find the other
+        private final ConcurrentHashMap<String, Session> matchSessions = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Session, String> matchUsernames = new ConcurrentHashMap<>();
 
         @OnWebSocketMessage
-        public void onMessage(Session session, String message) throws Exception {
-            var userCommand = new Gson().fromJson(message, UserGameCommand.class);
+        public void onMessage(Session session, String message) {
+            route(session, GSON.fromJson(message, UserGameCommand.class), message);
+        }
+
+        @OnWebSocketMessage
+        public void onBinaryMessage(Session session, byte[] payload, int offset, int length) {
+            UserGameCommand userCommand;
+            try {
+                userCommand = BinaryProtocol.decodeCommand(ByteBuffer.wrap(payload, offset, length));
+            } catch (IllegalArgumentException e) {
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage("Error: malformed command");
+                outbound.send(session, BinaryProtocol.encode(serverErrorMessage));
+                return;
+            }
+            binarySessions.add(session);
+            route(session, userCommand, null);
+        }
+
+        private void route(Session session, UserGameCommand userCommand, String json) {
+            // Recorded on the node holding the socket, since that is where frames are encoded for it
+            if (userCommand.wantsCompression()) {
+                compressedSessions.add(session);
+            }
+            if (userCommand.getCommandType() == UserGameCommand.CommandType.MATCH) {
+                // The matchmaking queue is this node's own, so it is never forwarded to a game's owner
+                DataAccess.ASYNC_EXECUTOR.execute(() -> handleCommand(session, userCommand));
+                return;
+            }
+            // A command without a gameID still goes through handleCommand so the client gets the usual error
+            var gameID = Objects.requireNonNullElse(userCommand.getGameID(), 0);
+            if (cluster != null && !cluster.owns(gameID)) {
+                // Another node runs this game; its replies come back over the bus as JSON
+                // and are re-encoded here for binary clients
+                cluster.forwardCommand(session, gameID, json != null ? json : GSON.toJson(userCommand));
+                return;
+            }
+            gameActors.submit(gameID, () -> handleCommand(session, userCommand));
+        }
+
+        private void onClusterMessage(ClusterNode.Envelope envelope) {
+            switch (envelope.kind()) {
+                case COMMAND -> {
+                    var remote = cluster.remoteSession(envelope.session());
+                    var userCommand = GSON.fromJson(envelope.message(), UserGameCommand.class);
+                    gameActors.submit(envelope.gameID(), () -> handleCommand(remote, userCommand));
+                }
+                case CLOSED -> {
+                    var remote = cluster.remoteClosed(envelope.session());
+                    if (remote != null) {
+                        dropSession(remote);
+                    }
+                }
+                case SEAT_CLAIMED -> seatClaimed(envelope.gameID(), envelope.color(), envelope.username());
+                case SEAT_RELEASED -> seatReleased(envelope.gameID(), envelope.color(), envelope.username());
+                case SEND -> {
+                    var local = cluster.localSession(envelope.session());
+                    if (local != null) {
+                        send(local, new Outgoing(null, envelope.message()));
+                    }
+                }
+                case CLOSE -> {
+                    var local = cluster.localSession(envelope.session());
+                    if (local != null) {
+                        local.close();
+                    }
+                }
+                case JOINED -> {
+                    var local = cluster.localSession(envelope.session());
+                    if (local != null) {
+                        sessions.add(envelope.gameID(), local);
+                        if (envelope.moveUpdates()) {
+                            moveSubscribers.add(local);
+                        }
+                        cluster.subscribeGame(envelope.gameID());
+                    }
+                }
+                case BROADCAST -> deliverBroadcast(envelope);
+                case CLEAR -> clearLocal();
+                case RATINGS -> ratingService.ratingsChangedElsewhere(List.of(GSON.fromJson(envelope.message(), PlayerRating[].class)));
+            }
+        }
+
+        // A broadcast from the node that owns the game, for the clients connected here
+        private void deliverBroadcast(ClusterNode.Envelope envelope) {
+            var message = new Outgoing(null, envelope.message());
+            var moveMessage = envelope.moveMessage() == null ? null : new Outgoing(null, envelope.moveMessage());
+            for (var session : sessions.sessions(envelope.gameID())) {
+                if (cluster.isRemote(session) || Objects.equals(envelope.session(), cluster.localKey(session))) {
+                    continue;
+                }
+                boolean wantsMove = moveMessage != null && moveSubscribers.contains(session);
+                send(session, wantsMove ? moveMessage : message);
+            }
+        }
+
+        private void handleCommand(Session session, UserGameCommand userCommand) {
+            try {
+                dispatch(session, userCommand);
+            } catch (Exception e) {
+                commandFailed(session, userCommand, e);
+            }
+        }
+
+        private void dispatch(Session session, UserGameCommand userCommand) throws Exception {
             // Verify user
             String username;
             try {
@@ -126,13 +559,15 @@ public class Server {
                 // Bad gameID
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("Error: invalid authToken");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
                 return;
             }
             var gameID = userCommand.getGameID();
 
             if (userCommand.getCommandType() == UserGameCommand.CommandType.CONNECT) {
+                if (userCommand.wantsMoveUpdates()) {
+                    moveSubscribers.add(session);
+                }
                 userConnect(session, username, gameID);
             }
             if (userCommand.getCommandType() == UserGameCommand.CommandType.MAKE_MOVE) {
@@ -144,81 +579,228 @@ public class Server {
             if (userCommand.getCommandType() == UserGameCommand.CommandType.RESIGN) {
                 userResign(session, username, gameID);
             }
+            if (userCommand.getCommandType() == UserGameCommand.CommandType.RESYNC) {
+                userResync(session, gameID);
+            }
+            if (userCommand.getCommandType() == UserGameCommand.CommandType.RESUME) {
+                userResume(session, gameID, userCommand.getStreamId(), userCommand.getLastSeq());
+            }
+            if (userCommand.getCommandType() == UserGameCommand.CommandType.MATCH) {
+                userMatch(session, username, userCommand.getMatchRequest());
+            }
+        }
+
+        // Any frame, including the pong answering a heartbeat ping, shows the client is still there
+        @OnWebSocketFrame
+        public void onFrame(Session session, Frame frame) {
+            sessions.touch(session);
         }
 
+        // Transport errors end the connection, so forget the session straight away
         @OnWebSocketError
-        public void onError(Session session, Throwable error) throws ResponseException {
-            if (error.getClass() == ResponseException.class) {
-                throw new ResponseException(((ResponseException) error).statusCode(), error.getMessage());
-            }
-            String sessionId = "unknown";
+        public void onError(Session session, Throwable error) {
+            System.err.printf("WebSocket error: %s%n", error.getMessage());
             if (session != null) {
-                String path = session.getUpgradeRequest().getRequestURI().getPath();
+                dropSession(session);
+            }
+        }
+
+        // Tells the client its command failed, in whichever format the session speaks
+        private void commandFailed(Session session, UserGameCommand userCommand, Exception error) {
+            System.err.printf("Error handling %s: %s%n", userCommand.getCommandType(), error.getMessage());
+            // ResponseException messages are already written for the client
+            boolean expected = error instanceof ResponseException;
+            if (!expected) {
+                error.printStackTrace();
             }
-            System.err.println("Error in session " + sessionId + ": " + error.getMessage());
-            error.printStackTrace();
-            // Optionally notify the client
             if (session != null && session.isOpen()) {
-                try {
-                    session.getRemote().sendString("An error occurred: " + error.getMessage());
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage(expected ? error.getMessage() : "Error: " + error.getMessage());
+                send(session, serverErrorMessage);
             }
         }
 
         // On close, remove the session from the group
         @OnWebSocketClose
         public void onClose(Session session, int statusCode, String reason) {
+            // A client that comes back resumes on a new session
+            dropSession(session);
+        }
+
+        private void dropSession(Session session) {
+            var gameID = sessions.remove(session);
+            outbound.remove(session);
+            moveSubscribers.remove(session);
+            binarySessions.remove(session);
+            compressedSessions.remove(session);
+            // A player who hangs up while waiting leaves the queue
+            var matchUsername = matchUsernames.remove(session);
+            if (matchUsername != null && matchSessions.remove(matchUsername, session)) {
+                matchmakingService.leave(matchUsername);
+            }
+            if (cluster != null) {
+                cluster.localClosed(session);
+                // Stop relaying a game from another node once nobody here is in it
+                if (gameID != null && !cluster.owns(gameID) && sessions.liveSessions(gameID) == 0) {
+                    cluster.unsubscribeGame(gameID);
+                }
+            }
+        }
+
+        private void addToGame(int gameID, Session session) {
+            if (cluster != null && cluster.isRemote(session)) {
+                sessions.addRemote(gameID, session);
+                cluster.confirmJoined(session, gameID, moveSubscribers.contains(session));
+            } else {
+                sessions.add(gameID, session);
+            }
+        }
+
+        // Sessions whose socket is on this node; clients on other nodes get broadcasts through the game's topic
+        private Collection<Session> localSessions(int gameID) {
+            var gameSessions = sessions.sessions(gameID);
+            if (cluster == null) {
+                return gameSessions;
+            }
+            return gameSessions.stream().filter(session -> !cluster.isRemote(session)).toList();
         }
 
         // Helper to broadcast messages to a group
-        private void broadcastMessage(Integer sessionId, String message, Session session) {
-            List<Session> sessions = SESSION_MAP.get(sessionId);
-            if (sessions == null) {
+        private void broadcastMessage(Integer sessionId, Outgoing message, Session session) {
+            for (var target : localSessions(sessionId)) {
+                if (!target.equals(session)) {
+                    send(target, message);
+                }
+            }
+            if (cluster != null) {
+                cluster.publishToGame(sessionId, message.json(), null, session);
+            }
+        }
+
+        private void send(Session session, ServerMessage message) {
+            send(session, new Outgoing(message, null));
+        }
+
+        // Sends a message in whichever format the session speaks, compressed if it asked and the message is large
+        private void send(Session session, Outgoing message) {
+            boolean binary = binarySessions.contains(session);
+            if (compressedSessions.contains(session)) {
+                var frame = binary ? message.compressedBinary() : message.compressedJson();
+                if (frame != null) {
+                    outbound.send(session, frame);
+                    return;
+                }
+            }
+            if (binary) {
+                outbound.send(session, message.binary());
+            } else {
+                outbound.send(session, message.json());
+            }
+        }
+
+        // Runs in the game's mailbox, so it lands between commands rather than during one
+        @Override
+        public void seatClaimed(int gameID, ChessGame.TeamColor color, String username) {
+            if (cluster != null && !cluster.owns(gameID)) {
+                cluster.forwardSeat(ClusterNode.Kind.SEAT_CLAIMED, gameID, color, username);
                 return;
             }
-            sessions.forEach(s -> {
-                try {
-                    if (s.isOpen()) {
-                        if (!s.equals(session)) {
-                            s.getRemote().sendString(message); // Send the message
-                        }
+            gameActors.submit(gameID, () -> games.update(gameID, gameData -> withSeat(gameData, color, username)));
+        }
+
+        @Override
+        public void seatReleased(int gameID, ChessGame.TeamColor color, String username) {
+            if (cluster != null && !cluster.owns(gameID)) {
+                cluster.forwardSeat(ClusterNode.Kind.SEAT_RELEASED, gameID, color, username);
+                return;
+            }
+            gameActors.submit(gameID, () -> games.update(gameID, gameData -> {
+                var holder = color == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+                return Objects.equals(holder, username) ? withSeat(gameData, color, null) : gameData;
+            }));
+        }
+
+        private static GameData withSeat(GameData gameData, ChessGame.TeamColor color, String username) {
+            if (color == ChessGame.TeamColor.WHITE) {
+                return new GameData(gameData.gameID(), username, gameData.blackUsername(), gameData.gameName(), gameData.game());
+            }
+            return new GameData(gameData.gameID(), gameData.whiteUsername(), username, gameData.gameName(), gameData.game());
+        }
+
+        private void gameEvicted(int gameID, GameData gameData, boolean dirty) {
+            if (dirty) {
+                // Flush through the game's mailbox, and only if no newer write came in while it waited
+                gameActors.submit(gameID, () -> {
+                    if (!games.claimFlush(gameID, gameData)) {
+                        return;
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
+                    try {
+                        gameService.updateGameState(gameData);
+                    } catch (Exception e) {
+                        System.err.printf("Cannot flush game %d: %s%n", gameID, e.getMessage());
+                    }
+                });
+            }
+            if (sessions.liveSessions(gameID) == 0) {
+                gameEvents.remove(gameID);
+            }
         }
 
-        private void userConnect(Session session, String username, int gameID) throws Exception {
-            // Check if there are existing connections to that game
-            var sessions = SESSION_MAP.get(gameID);
-            if (sessions == null) {
-                sessions = new LinkedList<Session>();
+        private GameEvents events(int gameID) {
+            return gameEvents.computeIfAbsent(gameID, id -> new GameEvents(GameEvents.DEFAULT_REPLAY_LIMIT));
+        }
+
+        // Numbers a game event, keeps it for replay and sends it to the game's sessions
+        private void publish(int gameID, ServerMessage message, Session except) {
+            broadcastMessage(gameID, new Outgoing(message, events(gameID).record(message)), except);
+        }
+
+        // Sends a just-made move to every session in the game, as a MOVE or a full LOAD_GAME
+        // depending on what the session asked for. Each form is encoded at most once.
+        private void broadcastMove(int gameID, ChessMove move, ChessGame game) {
+            // The MOVE form is what gets replayed, so it is always recorded, even with nobody connected
+            var moveEvent = ServerMessage.move(move, game);
+            var moveMessage = new Outgoing(moveEvent, events(gameID).record(moveEvent));
+            var loadGameMessage = new Outgoing(loadGame(game, moveEvent.getStreamId(), moveEvent.getSeq()), null);
+            for (var session : localSessions(gameID)) {
+                send(session, moveSubscribers.contains(session) ? moveMessage : loadGameMessage);
             }
+            if (cluster != null) {
+                // Other nodes pick the form for each of their clients
+                cluster.publishToGame(gameID, loadGameMessage.json(), moveMessage.json(), null);
+            }
+        }
+
+        private ServerMessage loadGame(ChessGame game, long streamId, long seq) {
+            var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, null);
+            serverMsg.setGame(game);
+            serverMsg.setSeq(seq);
+            serverMsg.setStreamId(streamId);
+            return serverMsg;
+        }
+
+        // The game as it stands, numbered where its event stream is now
+        private ServerMessage loadGame(ChessGame game, GameEvents events) {
+            return loadGame(game, events.streamId(), events.lastSeq());
+        }
+
+        private void userConnect(Session session, String username, int gameID) throws Exception {
             // Check if game is active
             GameData game;
-            boolean gameExists = GAME_DATA_MAP.containsKey(gameID);
-            if (!gameExists) {
-                // fetch game and cache it
-                try {
-                    game = gameService.getGame(gameID);
-                    GAME_DATA_MAP.put(gameID, game);
-                } catch (Exception e) {
-                    // Bad gameID
-                    var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
-                    serverErrorMessage.setErrorMessage("Error: invalid gameID");
-                    var errorMsg = new Gson().toJson(serverErrorMessage);
-                    session.getRemote().sendString(errorMsg);
-                    return;
-                }
-            } else {
-                game = GAME_DATA_MAP.get(gameID);
+            try {
+                game = games.load(gameID, gameService::getGame);
+            } catch (Exception e) {
+                // Bad gameID
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage("Error: invalid gameID");
+                send(session, serverErrorMessage);
+                return;
+            }
+
+            // After a restart the clock is still running in storage, but nothing is timing it yet
+            if (!flagTimeouts.containsKey(gameID)) {
+                armClock(gameID, game.game());
             }
-            // Just in case, refresh game
-            game = gameDAO.getGame(gameID);
-            GAME_DATA_MAP.put(gameID, game);
 
             String playerOrObserver = "an observer";
             // Check if user is a player or observer
@@ -231,29 +813,19 @@ public class Server {
             // Notify all users that so-and-so joined the game (as color or as observer)
             String msg = String.format("%s joined the game as %s", username, playerOrObserver);
             var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, msg);
-            String notifyMessage = new Gson().toJson(serverMsg);
-            broadcastMessage(gameID, notifyMessage, session);
+            publish(gameID, serverMsg, session);
             // Add new connection to game
-            sessions.add(session);
-            SESSION_MAP.put(gameID, sessions);
+            addToGame(gameID, session);
 
             // Send LOAD_GAME to new user
-            serverMsg = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, null);
-            serverMsg.setGame(game.game());
-            String loadGameMessage = new Gson().toJson(serverMsg);
-            session.getRemote().sendString(loadGameMessage);
+            send(session, loadGame(game.game(), events(gameID)));
 
         }
 
         private void userMakeMove(Session session, String username, int gameID, ChessMove move) throws Exception {
             ChessGame.TeamColor playerColor;
             // Check if game is active
-            GameData gameData = GAME_DATA_MAP.get(gameID);
-            if (gameData.blackUsername() == null || gameData.whiteUsername() == null) {
-                // Just in case, refresh game
-                gameData = gameDAO.getGame(gameID);
-                GAME_DATA_MAP.put(gameID, gameData);
-            }
+            GameData gameData = games.load(gameID, gameService::getGame);
             // Check if user is a player or observer
             var players = getPlayerAndOpponentColors(session, username, gameData);
             if (players == null) {
@@ -267,16 +839,21 @@ public class Server {
             if (currTurn != playerColor) {
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("It is not your turn");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
                 return;
             }
             // check if game has already ended
             if (game.getGameState() == ChessGame.GameState.GAME_OVER) {
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("Error: the game is over. No more moves can be made");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
+                return;
+            }
+            // The mover may have run out of time since the last tick of the timer wheel
+            var chessClock = game.getClock();
+            long now = clock.millis();
+            if (chessClock != null && chessClock.hasFlagged(playerColor, now)) {
+                endOnTime(gameID, gameData, playerColor);
                 return;
             }
             // double check that they sent an actual move
@@ -305,34 +882,37 @@ public class Server {
             if (!isValid) {
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("Error: invalid move");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
                 return;
             }
             game.makeMove(move);
             // Check to see if opponent in check or checkmate or stalemate
             game.setTeamTurn(opponentColor);
             ServerMessage checkOrGameOverServerMsg = checkIfCheckOrGameOver(username, playerColor, opponentColor, game);
+            if (chessClock != null) {
+                chessClock.punch(playerColor, now);
+                if (game.getGameState() == ChessGame.GameState.GAME_OVER) {
+                    chessClock.stop(opponentColor, now);
+                }
+            }
             // Update game in map and DB
             gameData = new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
-            GAME_DATA_MAP.put(gameID, gameData);
-            gameService.updateGame(gameData);
-            // Send LOAD_GAME to all users
-            var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, null);
-            serverMsg.setGame(gameData.game());
-            String loadGameMessage = new Gson().toJson(serverMsg);
-            broadcastMessage(gameID, loadGameMessage, null);
+            games.write(gameData, gameService::updateGameState);
+            armClock(gameID, game);
+            if (game.getGameState() == ChessGame.GameState.GAME_OVER) {
+                rateGame(gameData);
+            }
+            // Send the move to all users
+            broadcastMove(gameID, move, gameData.game());
             // Send NOTIFICATION of move to all other users
             String startPos = ChessPosition.parsePositionToString(move.getStartPosition());
             String endPos = ChessPosition.parsePositionToString(move.getEndPosition());
             var msg = String.format("%s (%s) moved from %s to %s", username, playerColor, startPos, endPos);
-            serverMsg = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, msg);
-            String moveNotification = new Gson().toJson(serverMsg);
-            broadcastMessage(gameID, moveNotification, session);
+            var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, msg);
+            publish(gameID, serverMsg, session);
             if (checkOrGameOverServerMsg != null) {
                 // Notify users of check or end of game
-                String checkOrGameOverMsg = new Gson().toJson(checkOrGameOverServerMsg);
-                broadcastMessage(gameID, checkOrGameOverMsg, null);
+                publish(gameID, checkOrGameOverServerMsg, null);
             }
         }
 
@@ -341,7 +921,7 @@ public class Server {
             ChessGame.TeamColor playerColor = null;
 
             // Check if game is active
-            GameData gameData = GAME_DATA_MAP.get(gameID);
+            GameData gameData = games.load(gameID, gameService::getGame);
 
             // Check if user is a player or observer
             if (Objects.equals(username, gameData.whiteUsername())) {
@@ -358,25 +938,23 @@ public class Server {
                     gameData = new GameData(gameID, gameData.whiteUsername(), null, gameData.gameName(), gameData.game());
                 }
 
-                // Update game in map and DB
-                GAME_DATA_MAP.put(gameID, gameData);
-                gameService.updateGame(gameData);
+                // Update game in map and free the seat in DB without rewriting the board
+                games.put(gameData);
+                gameService.leaveGame(gameID, playerColor, username);
             }
 
-            var sessions = SESSION_MAP.get(gameID);
-            for (int i = 0; i < sessions.size(); i++) {
-                if (sessions.get(i).equals(session)) {
-                    sessions.remove(i);
-                    break;
-                }
-            }
-            SESSION_MAP.put(gameID, sessions);
+            sessions.remove(session);
 
             // Send NOTIFICATION to all users
             var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, String.format("%s left the game", username));
-            String leaveGameMessage = new Gson().toJson(serverMsg);
-            broadcastMessage(gameID, leaveGameMessage, null);
+            publish(gameID, serverMsg, null);
             session.close();
+
+            // A finished game nobody is watching can leave the cache; it is served from the archive from now on
+            if (sessions.liveSessions(gameID) == 0 && gameData.game().getGameState() == ChessGame.GameState.GAME_OVER) {
+                games.remove(gameID);
+                gameEvents.remove(gameID);
+            }
         }
 
         private void userResign(Session session, String username, int gameID) throws Exception {
@@ -385,12 +963,7 @@ public class Server {
             ChessGame.TeamColor opponentColor;
 
             // Check if game is active
-            GameData gameData = GAME_DATA_MAP.get(gameID);
-            if (gameData.blackUsername() == null || gameData.whiteUsername() == null) {
-                // Just in case, refresh game
-                gameData = gameDAO.getGame(gameID);
-                GAME_DATA_MAP.put(gameID, gameData);
-            }
+            GameData gameData = games.load(gameID, gameService::getGame);
 
             // Check if user is a player or observer
             var players = getPlayerAndOpponentColors(session, username, gameData);
@@ -403,19 +976,22 @@ public class Server {
             if (gameData.game().getGameState() == ChessGame.GameState.GAME_OVER) {
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("Error: the game is already over");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
                 return;
             }
             // End game
             var game = gameData.game();
+            if (game.getClock() != null) {
+                game.getClock().stop(game.getTeamTurn(), clock.millis());
+            }
             game.gameOver();
             game.setWinner(opponentColor);
+            armClock(gameID, game);
 
             // Update game in map and DB
             gameData = new GameData(gameID, gameData.whiteUsername(), gameData.blackUsername(), gameData.gameName(), game);
-            GAME_DATA_MAP.put(gameID, gameData);
-            gameService.updateGame(gameData);
+            games.write(gameData, gameService::updateGameState);
+            rateGame(gameData);
 
             // Get opponent username for message
             String opponentUsername;
@@ -427,15 +1003,145 @@ public class Server {
             // Send NOTIFICATION to all users
             var msg = String.format("%s (%s) resigned. %s (%s) wins!", username, playerColor, opponentUsername, opponentColor);
             var serverMsg = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, msg);
-            String leaveGameMessage = new Gson().toJson(serverMsg);
-            broadcastMessage(gameID, leaveGameMessage, null);
+            publish(gameID, serverMsg, null);
+        }
+
+        private void userResync(Session session, int gameID) throws Exception {
+            GameData gameData;
+            try {
+                gameData = games.load(gameID, gameService::getGame);
+            } catch (Exception e) {
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage("Error: invalid gameID");
+                send(session, serverErrorMessage);
+                return;
+            }
+            send(session, loadGame(gameData.game(), events(gameID)));
+        }
+
+        private void userResume(Session session, int gameID, Long streamId, long lastSeq) throws Exception {
+            try {
+                games.load(gameID, gameService::getGame);
+            } catch (Exception e) {
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage("Error: invalid gameID");
+                send(session, serverErrorMessage);
+                return;
+            }
+            // Rejoin quietly; the other sessions never saw this client leave
+            moveSubscribers.add(session);
+            addToGame(gameID, session);
+
+            var missed = events(gameID).since(streamId, lastSeq);
+            if (missed == null) {
+                // Too far behind, or numbered by a server that has since restarted: fall back to a full reload
+                userResync(session, gameID);
+                return;
+            }
+            for (var event : missed) {
+                send(session, new Outgoing(null, event));
+            }
+        }
+
+        private void userMatch(Session session, String username, MatchRequest matchRequest) {
+            try {
+                matchmakingService.enqueue(username, withStoredRating(username, matchRequest));
+            } catch (ResponseException e) {
+                var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+                serverErrorMessage.setErrorMessage(e.getMessage());
+                send(session, serverErrorMessage);
+                return;
+            }
+            var previous = matchSessions.put(username, session);
+            if (previous != null && previous != session) {
+                matchUsernames.remove(previous);
+            }
+            matchUsernames.put(session, username);
+            send(session, new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "Looking for an opponent"));
+        }
+
+        // Called on the matchmaker's thread once the game is stored
+        @Override
+        public void matched(MatchmakingService.Match match) {
+            sendMatch(match.whiteUsername(), match.gameID(), ChessGame.TeamColor.WHITE);
+            sendMatch(match.blackUsername(), match.gameID(), ChessGame.TeamColor.BLACK);
+        }
+
+        // Players who queued over HTTP have no session here and find the game by polling
+        private void sendMatch(String username, int gameID, ChessGame.TeamColor color) {
+            var session = matchSessions.remove(username);
+            if (session != null) {
+                matchUsernames.remove(session, username);
+                send(session, ServerMessage.match(gameID, color));
+            }
+        }
+
+        // Times the side to move, replacing any earlier timer for the game; a stopped clock just clears it
+        private void armClock(int gameID, ChessGame game) {
+            var previous = flagTimeouts.remove(gameID);
+            if (previous != null) {
+                previous.cancel();
+            }
+            var chessClock = game.getClock();
+            if (chessClock == null || !chessClock.isRunning() || game.getGameState() == ChessGame.GameState.GAME_OVER) {
+                return;
+            }
+            var timeout = flagTimers.schedule(chessClock.flagAt(game.getTeamTurn()),
+                    () -> gameActors.submit(gameID, () -> flagFell(gameID)));
+            flagTimeouts.put(gameID, timeout);
+        }
+
+        // Runs in the game's mailbox when the side to move's time should be up
+        private void flagFell(int gameID) {
+            try {
+                var gameData = games.load(gameID, gameService::getGame);
+                var game = gameData.game();
+                var chessClock = game.getClock();
+                if (chessClock == null || game.getGameState() == ChessGame.GameState.GAME_OVER) {
+                    flagTimeouts.remove(gameID);
+                    return;
+                }
+                if (!chessClock.hasFlagged(game.getTeamTurn(), clock.millis())) {
+                    // A move beat the timer; time the new turn instead
+                    armClock(gameID, game);
+                    return;
+                }
+                endOnTime(gameID, gameData, game.getTeamTurn());
+            } catch (Exception e) {
+                System.err.printf("Cannot end game %d on time: %s%n", gameID, e.getMessage());
+            }
+        }
+
+        private void endOnTime(int gameID, GameData gameData, ChessGame.TeamColor loser) throws Exception {
+            var game = gameData.game();
+            var winner = loser == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            game.getClock().stop(loser, clock.millis());
+            game.gameOver();
+            game.setWinner(winner);
+            armClock(gameID, game);
+            games.write(gameData, gameService::updateGameState);
+            rateGame(gameData);
+
+            var loserUsername = loser == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+            var winnerUsername = winner == ChessGame.TeamColor.WHITE ? gameData.whiteUsername() : gameData.blackUsername();
+            var msg = String.format("%s (%s) ran out of time. %s (%s) wins!", loserUsername, loser, winnerUsername, winner);
+            publish(gameID, new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, msg), null);
+        }
+
+        // Runs once per game, in its mailbox right after the final state is written.
+        // The game is over either way, so a rating failure is logged rather than sent to the players.
+        private void rateGame(GameData gameData) {
+            try {
+                ratingService.gameEnded(gameData);
+            } catch (RuntimeException e) {
+                System.err.printf("Cannot rate game %d: %s%n", gameData.gameID(), e.getMessage());
+            }
         }
 
         private void sendInvalidMoveError(Session session) throws Exception {
             var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
             serverErrorMessage.setErrorMessage("Error: invalid move");
-            var errorMsg = new Gson().toJson(serverErrorMessage);
-            session.getRemote().sendString(errorMsg);
+            send(session, serverErrorMessage);
         }
 
         private ChessGame.TeamColor[] getPlayerAndOpponentColors(Session session, String username, GameData gameData) throws Exception {
@@ -453,8 +1159,7 @@ public class Server {
                 // user is not a player
                 var serverErrorMessage = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
                 serverErrorMessage.setErrorMessage("Error: user is not a player in game");
-                var errorMsg = new Gson().toJson(serverErrorMessage);
-                session.getRemote().sendString(errorMsg);
+                send(session, serverErrorMessage);
                 return null;
             }
             return new ChessGame.TeamColor[]{playerColor, opponentColor};
@@ -485,13 +1190,106 @@ public class Server {
         }
 
         public void clear() {
-            GAME_DATA_MAP.clear();
-            SESSION_MAP.clear();
+            clearLocal();
+            if (cluster != null) {
+                // Storage is shared, so every node's cached games are now stale
+                cluster.publishClear();
+            }
+        }
+
+        /**
+         * One message in both formats, plain or compressed. Each form is
+         * encoded at most once, and only if some session needs it; either
+         * format can be built from the other.
+         */
+        private final class Outgoing {
+            private ServerMessage message;
+            private String json;
+            private ByteBuffer binary;
+            private ByteBuffer compressedJson;
+            private ByteBuffer compressedBinary;
+            private boolean jsonCompressed;
+            private boolean binaryCompressed;
+
+            Outgoing(ServerMessage message, String json) {
+                this.message = message;
+                this.json = json;
+            }
+
+            String json() {
+                if (json == null) {
+                    json = GSON.toJson(message);
+                }
+                return json;
+            }
+
+            ByteBuffer binary() {
+                if (binary == null) {
+                    if (message == null) {
+                        message = GSON.fromJson(json, ServerMessage.class);
+                    }
+                    binary = BinaryProtocol.encode(message);
+                }
+                return binary;
+            }
+
+            // Null when the message is not worth compressing
+            ByteBuffer compressedJson() {
+                if (!jsonCompressed) {
+                    jsonCompressed = true;
+                    compressedJson = compressor.compress(StandardCharsets.UTF_8.encode(json()));
+                }
+                return compressedJson;
+            }
+
+            ByteBuffer compressedBinary() {
+                if (!binaryCompressed) {
+                    binaryCompressed = true;
+                    compressedBinary = compressor.compress(binary());
+                }
+                return compressedBinary;
+            }
+        }
+
+        private void clearLocal() {
+            games.clear();
+            sessions.clear();
+            gameEvents.clear();
+            outbound.clear();
+            moveSubscribers.clear();
+            binarySessions.clear();
+            compressedSessions.clear();
+            flagTimeouts.values().forEach(TimerWheel.Timeout::cancel);
+            flagTimeouts.clear();
+            matchSessions.clear();
+            matchUsernames.clear();
+            matchmakingService.clear();
+            ratingService.clearLeaderboard();
+            if (cluster != null) {
+                cluster.clear();
+            }
         }
     }
 
     public void stop() {
         Spark.stop();
         Spark.awaitStop();
+        if (tokenSweeper != null) {
+            tokenSweeper.close();
+        }
+        wsHandler.sessions.close();
+        wsHandler.games.close();
+        wsHandler.flagTimers.close();
+        matchmakingService.close();
+        if (cluster != null) {
+            cluster.close();
+        }
+        if (gameDAO instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                System.err.printf("Cannot close game storage: %s%n", e);
+            }
+        }
     }
 }
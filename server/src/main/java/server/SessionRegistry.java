@@ -0,0 +1,183 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Which WebSocket sessions are in which game. Each session is indexed both
+ * ways, so adding and removing one is constant time whatever the game size,
+ * and a closed session can be dropped without knowing its game. Heartbeats
+ * ping every session and disconnect any that have gone quiet for too long.
+ */
+class SessionRegistry implements Closeable {
+    public static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_HEARTBEAT_TIMEOUT = Duration.ofSeconds(75);
+
+    record Stats(int totalSessions, long reapedSessions, Map<Integer, Integer> liveSessionsPerGame) {
+    }
+
+    private final ConcurrentHashMap<Integer, Set<Session>> sessionsByGame = new ConcurrentHashMap<Integer, Set<Session>>();
+    private final ConcurrentHashMap<Session, Integer> gameBySession = new ConcurrentHashMap<Session, Integer>();
+    // Last time anything arrived from each session, in System.nanoTime units
+    private final ConcurrentHashMap<Session, Long> lastSeen = new ConcurrentHashMap<Session, Long>();
+    private final LongAdder reaped = new LongAdder();
+    private ScheduledExecutorService heartbeats;
+
+    void add(int gameID, Session session) {
+        addRemote(gameID, session);
+        touch(session);
+    }
+
+    /**
+     * Registers a session whose socket is held by another node. It gets no
+     * heartbeats here; that node reports when it goes away.
+     */
+    void addRemote(int gameID, Session session) {
+        var previous = gameBySession.put(session, gameID);
+        if (previous != null && previous != gameID) {
+            removeFromGame(previous, session);
+        }
+        sessionsByGame.compute(gameID, (id, sessions) -> {
+            var target = sessions == null ? ConcurrentHashMap.<Session>newKeySet() : sessions;
+            target.add(session);
+            return target;
+        });
+    }
+
+    /**
+     * @return the game the session was in, or null if it was not registered
+     */
+    Integer remove(Session session) {
+        lastSeen.remove(session);
+        var gameID = gameBySession.remove(session);
+        if (gameID != null) {
+            removeFromGame(gameID, session);
+        }
+        return gameID;
+    }
+
+    Collection<Session> sessions(int gameID) {
+        var sessions = sessionsByGame.get(gameID);
+        return sessions == null ? Set.of() : sessions;
+    }
+
+    void removeGame(int gameID) {
+        var sessions = sessionsByGame.remove(gameID);
+        if (sessions != null) {
+            for (var session : sessions) {
+                gameBySession.remove(session, gameID);
+                lastSeen.remove(session);
+            }
+        }
+    }
+
+    void touch(Session session) {
+        if (gameBySession.containsKey(session)) {
+            lastSeen.put(session, System.nanoTime());
+        }
+    }
+
+    int liveSessions(int gameID) {
+        return sessions(gameID).size();
+    }
+
+    Map<Integer, Integer> liveSessionsPerGame() {
+        var counts = new HashMap<Integer, Integer>();
+        sessionsByGame.forEach((gameID, sessions) -> counts.put(gameID, sessions.size()));
+        return counts;
+    }
+
+    int totalSessions() {
+        return gameBySession.size();
+    }
+
+    /**
+     * Number of sessions disconnected for missing heartbeats.
+     */
+    long reapedSessions() {
+        return reaped.sum();
+    }
+
+    Stats stats() {
+        return new Stats(totalSessions(), reapedSessions(), liveSessionsPerGame());
+    }
+
+    void clear() {
+        sessionsByGame.clear();
+        gameBySession.clear();
+        lastSeen.clear();
+    }
+
+    void startHeartbeats(Duration interval, Duration timeout) {
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "websocket-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(() -> heartbeat(timeout), interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Disconnects sessions not heard from within the timeout, then pings the rest.
+     * The client's pong counts as hearing from it.
+     */
+    void heartbeat(Duration timeout) {
+        reapIdle(timeout);
+        for (var session : lastSeen.keySet()) {
+            try {
+                session.getRemote().sendPing(ByteBuffer.allocate(0));
+            } catch (IOException | RuntimeException e) {
+                // Missing pongs will get it reaped
+            }
+        }
+    }
+
+    int reapIdle(Duration timeout) {
+        long cutoff = System.nanoTime() - timeout.toNanos();
+        int count = 0;
+        for (var entry : lastSeen.entrySet()) {
+            if (entry.getValue() - cutoff > 0) {
+                continue;
+            }
+            var session = entry.getKey();
+            remove(session);
+            count++;
+            try {
+                // The peer is not answering, so do not wait for a close handshake
+                session.disconnect();
+            } catch (IOException | RuntimeException e) {
+                // Already gone
+            }
+        }
+        reaped.add(count);
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    private void removeFromGame(int gameID, Session session) {
+        // Drop the game's set once it is empty so finished games do not linger
+        sessionsByGame.computeIfPresent(gameID, (id, sessions) -> {
+            sessions.remove(session);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+}
@@ -0,0 +1,188 @@
+package server;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hierarchical timer wheel: any number of timers on one thread, with constant
+ * time to schedule, cancel and fire. Each level has 64 slots, and a slot on
+ * level n covers 64^n ticks. A timer goes on the lowest level whose range
+ * reaches its deadline. When time enters a higher level's slot, its timers
+ * cascade down to finer levels, until they fire from level 0. Four levels of
+ * 100 ms ticks reach about 19 days; later timers wait on the top level.
+ */
+class TimerWheel implements Closeable {
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(100);
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << SLOT_BITS * LEVELS;
+
+    interface Timeout {
+        /**
+         * @return true if the timer was pending and now will not fire
+         */
+        boolean cancel();
+    }
+
+    private final long tickMillis;
+    private final Clock clock;
+    private final long originMillis;
+    // A sentinel per slot heads a circular list of the slot's timers
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+    // The last tick processed, or the one being processed during advance
+    private long currentTick = 0;
+    private int pending = 0;
+    private ScheduledExecutorService ticker;
+
+    TimerWheel(Duration tick, Clock clock) {
+        this.tickMillis = tick.toMillis();
+        this.clock = clock;
+        this.originMillis = clock.millis();
+        for (var level : slots) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Entry(0, null);
+            }
+        }
+    }
+
+    /**
+     * Runs task on the wheel's thread once the clock reaches deadlineMillis,
+     * never earlier and at most a tick later. Tasks should be quick, handing
+     * real work to another thread.
+     */
+    Timeout schedule(long deadlineMillis, Runnable task) {
+        // Rounded up, so a timer never fires before its deadline
+        long tick = Math.max(0, Math.ceilDiv(deadlineMillis - originMillis, tickMillis));
+        synchronized (this) {
+            var entry = new Entry(Math.max(tick, currentTick + 1), task);
+            insert(entry);
+            pending++;
+            return entry;
+        }
+    }
+
+    synchronized int pending() {
+        return pending;
+    }
+
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "timer-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Processes every tick up to the clock's current time and runs the timers that came due.
+     *
+     * @return number of timers run
+     */
+    int advance() {
+        long target = Math.floorDiv(clock.millis() - originMillis, tickMillis);
+        var due = new ArrayList<Runnable>();
+        synchronized (this) {
+            while (currentTick < target) {
+                long tick = ++currentTick;
+                // Highest level first, so its timers can cascade into the lower slots cascading next.
+                // Timers are placed relative to the tick being processed, which puts each one in a
+                // lower level than the slot it came from.
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((tick & (1L << SLOT_BITS * level) - 1) == 0) {
+                        cascade(slots[level][slotIndex(tick, level)]);
+                    }
+                }
+                var head = slots[0][slotIndex(tick, 0)];
+                while (head.next != head) {
+                    var entry = head.next;
+                    entry.unlink();
+                    pending--;
+                    due.add(entry.task);
+                }
+            }
+        }
+        for (var task : due) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.printf("Timer failed: %s%n", e);
+            }
+        }
+        return due.size();
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void cascade(Entry head) {
+        while (head.next != head) {
+            var entry = head.next;
+            entry.unlink();
+            insert(entry);
+        }
+    }
+
+    private void insert(Entry entry) {
+        long delta = entry.expiresTick - currentTick;
+        // Timers past the top level's reach wait in its farthest slot and are placed again when it cascades
+        long slotTick = delta < SPAN ? entry.expiresTick : currentTick + SPAN - 1;
+        int level = 0;
+        while (level < LEVELS - 1 && slotTick - currentTick >= 1L << SLOT_BITS * (level + 1)) {
+            level++;
+        }
+        entry.linkBefore(slots[level][slotIndex(slotTick, level)]);
+    }
+
+    private static int slotIndex(long tick, int level) {
+        return (int) (tick >>> SLOT_BITS * level) & SLOTS - 1;
+    }
+
+    private class Entry implements Timeout {
+        final long expiresTick;
+        final Runnable task;
+        Entry prev = this;
+        Entry next = this;
+
+        Entry(long expiresTick, Runnable task) {
+            this.expiresTick = expiresTick;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (next == this) {
+                    return false;
+                }
+                unlink();
+                pending--;
+                return true;
+            }
+        }
+
+        void linkBefore(Entry head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package service;
+
+import dataaccess.DataAccess;
+import model.GameData;
+import model.ImportRequest;
+import model.ImportResponse;
+import model.ResponseException;
+import model.UserData;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+public class AdminService {
+    public static final int MAX_BATCH_SIZE = 10_000;
+    private static final Pattern BCRYPT_HASH = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./A-Za-z0-9]{53}$");
+
+    private final DataAccess.BulkDAO bulkDAO;
+    private final String adminToken;
+    private final PasswordHasher passwordHasher;
+
+    /**
+     * @param adminToken token that must be sent as Authorization to use admin routes;
+     *                   null disables them
+     */
+    public AdminService(DataAccess.BulkDAO bulkDAO, String adminToken) {
+        this(bulkDAO, adminToken, PasswordHasher.defaultHasher());
+    }
+
+    public AdminService(DataAccess.BulkDAO bulkDAO, String adminToken, PasswordHasher passwordHasher) {
+        this.bulkDAO = bulkDAO;
+        this.adminToken = adminToken;
+        this.passwordHasher = passwordHasher;
+    }
+
+    public void verifyAdminToken(String authToken) throws ResponseException {
+        if (adminToken == null || !adminToken.equals(authToken)) {
+            throw new ResponseException(401, "Error: unauthorized");
+        }
+    }
+
+    public ImportResponse importData(ImportRequest request) throws ResponseException {
+        int batchSize = request.batchSize() == null ? DataAccess.BulkDAO.DEFAULT_BATCH_SIZE : request.batchSize();
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        List<UserData> users = request.users() == null ? List.of() : request.users();
+        List<GameData> games = request.games() == null ? List.of() : request.games();
+        for (var userData : users) {
+            if (userData == null || isBlank(userData.username()) || isBlank(userData.password())) {
+                throw new ResponseException(400, "Error: bad request");
+            }
+        }
+        for (var gameData : games) {
+            if (gameData == null || isBlank(gameData.gameName())) {
+                throw new ResponseException(400, "Error: bad request");
+            }
+        }
+        // Fixtures should carry BCrypt hashes; hashing plain passwords is by far the slowest part of an import.
+        // Plain ones go through the login hasher, so they get the configured cost and share its threads
+        var plain = users.stream().filter(userData -> !BCRYPT_HASH.matcher(userData.password()).matches()).toList();
+        var hashes = passwordHasher.hashAll(plain.stream().map(UserData::password).toList()).iterator();
+        var hashedUsers = users.stream()
+                .map(userData -> BCRYPT_HASH.matcher(userData.password()).matches() ? userData
+                        : new UserData(userData.username(), hashes.next(), userData.email()))
+                .toList();
+        try {
+            return bulkDAO.importAll(hashedUsers, games, batchSize);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private boolean isBlank(String value) {
+        return Objects.requireNonNullElse(value, "").isEmpty();
+    }
+}
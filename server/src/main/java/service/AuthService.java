@@ -4,19 +4,32 @@ import dataaccess.DataAccess;
 import model.AuthData;
 import model.RegisterResponse;
 import model.UserData;
-import org.mindrot.jbcrypt.BCrypt;
 import model.ResponseException;
 import spark.Request;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public class AuthService {
     private final DataAccess.AuthDAO authDAO;
     private final DataAccess.UserDAO userDAO;
-    private final DataAccess.GameDAO gameDAO;
+    private final DataAccess.BulkDAO bulkDAO;
+    private final PasswordHasher passwordHasher;
 
     public AuthService(DataAccess.AuthDAO authDAO, DataAccess.UserDAO userDAO, DataAccess.GameDAO gameDAO) {
+        this(authDAO, userDAO, new DataAccess.BulkDAO(authDAO, userDAO, gameDAO));
+    }
+
+    public AuthService(DataAccess.AuthDAO authDAO, DataAccess.UserDAO userDAO, DataAccess.BulkDAO bulkDAO) {
+        this(authDAO, userDAO, bulkDAO, PasswordHasher.defaultHasher());
+    }
+
+    public AuthService(DataAccess.AuthDAO authDAO, DataAccess.UserDAO userDAO, DataAccess.BulkDAO bulkDAO,
+                       PasswordHasher passwordHasher) {
         this.authDAO = authDAO;
         this.userDAO = userDAO;
-        this.gameDAO = gameDAO;
+        this.bulkDAO = bulkDAO;
+        this.passwordHasher = passwordHasher;
     }
 
     public RegisterResponse registerRequest(UserData userData) throws ResponseException {
@@ -34,8 +47,8 @@ public class AuthService {
             if (userData.username().equals("") || userData.password().equals("")) {
                 throw new ResponseException(400, "Error: bad request");
             }
+            String hashedPassword = passwordHasher.hash(userData.password());
             try {
-                String hashedPassword = BCrypt.hashpw(userData.password(), BCrypt.gensalt());
                 userDAO.createUser(new UserData(userData.username(), hashedPassword, userData.email()));
             } catch (dataaccess.DataAccessException e) {
                 throw new RuntimeException(e);
@@ -65,7 +78,12 @@ public class AuthService {
         }
 
         String storedPassword = existingUser.password();
-        if (BCrypt.checkpw(userData.password(), storedPassword)) {
+        if (passwordHasher.verify(userData.password(), storedPassword)) {
+            if (passwordHasher.needsRehash(storedPassword)) {
+                // Upgrade to the configured cost off the request path; the login does not wait for it
+                var username = existingUser.username();
+                passwordHasher.rehashLater(userData.password(), hash -> userDAO.updatePassword(username, hash));
+            }
             AuthData authData = null;
             try {
                 authData = authDAO.createAuth(userData);
@@ -80,17 +98,7 @@ public class AuthService {
 
     public void clearDB() {
         try {
-            authDAO.clearAllAuth();
-        } catch (dataaccess.DataAccessException e) {
-            throw new RuntimeException(e);
-        }
-        try {
-            userDAO.clearAllUsers();
-        } catch (dataaccess.DataAccessException e) {
-            throw new RuntimeException(e);
-        }
-        try {
-            gameDAO.clearAllGames();
+            bulkDAO.clearAll();
         } catch (dataaccess.DataAccessException e) {
             throw new RuntimeException(e);
         }
@@ -127,6 +135,18 @@ public class AuthService {
         return authData.username();
     }
 
+    public CompletableFuture<AuthData> verifyAuthTokenAsync(String authToken) {
+        if (authToken == null) {
+            return CompletableFuture.failedFuture(new ResponseException(401, "Error: unauthorized"));
+        }
+        return authDAO.getAuthAsync(authToken).thenApply(authData -> {
+            if (authData == null) {
+                throw new CompletionException(new ResponseException(401, "Error: unauthorized"));
+            }
+            return authData;
+        });
+    }
+
     public void logoutRequest(String authToken) throws ResponseException {
         try {
             authDAO.deleteAuth(authToken);
@@ -134,4 +154,10 @@ public class AuthService {
             throw new ResponseException(401, "Error: unauthorized");
         }
     }
+
+    public CompletableFuture<Void> logoutAsync(String authToken) {
+        return authDAO.deleteAuthAsync(authToken).exceptionally(e -> {
+            throw new CompletionException(new ResponseException(401, "Error: unauthorized"));
+        });
+    }
 }
@@ -1,23 +1,50 @@
 package service;
 
+import chess.ChessClock;
+import chess.ChessGame;
 import dataaccess.DataAccess;
 import dataaccess.MySqlDataAccess;
+import model.CreateGameRequest;
 import model.GameData;
+import model.GameSummary;
 import model.JoinGameRequest;
+import model.ListGamesRequest;
 import model.ListGamesResponse;
 import model.NewGameResponse;
 import model.ResponseException;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class GameService {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final DataAccess.GameDAO gameDAO;
+    private final List<SeatListener> seatListeners = new CopyOnWriteArrayList<SeatListener>();
+
+    /**
+     * Told about every seat claimed or released through this service, after storage has accepted the change.
+     */
+    public interface SeatListener {
+        void seatClaimed(int gameID, ChessGame.TeamColor color, String username);
+
+        void seatReleased(int gameID, ChessGame.TeamColor color, String username);
+    }
 
     public GameService(DataAccess.GameDAO gameDAO) {
         this.gameDAO = gameDAO;
     }
 
+    public void addSeatListener(SeatListener listener) {
+        seatListeners.add(listener);
+    }
+
     public NewGameResponse newGameRequest(GameData gameData) throws ResponseException {
         if (gameData.gameName() != null && !gameData.gameName().isEmpty()) {
             GameData newGame = null;
@@ -32,55 +59,139 @@ public class GameService {
         }
     }
 
+    /**
+     * Creates a game, timed if the request has a time control.
+     */
+    public NewGameResponse newGameRequest(CreateGameRequest request) throws ResponseException {
+        var game = newGame(request.clockSeconds(), request.incrementSeconds());
+        return newGameRequest(new GameData(0, null, null, request.gameName(), game));
+    }
+
+    /**
+     * @return a new game, with a clock unless clockSeconds is null
+     */
+    static ChessGame newGame(Integer clockSeconds, Integer incrementSeconds) throws ResponseException {
+        var game = new ChessGame();
+        if (clockSeconds != null) {
+            int increment = Objects.requireNonNullElse(incrementSeconds, 0);
+            if (clockSeconds <= 0 || increment < 0) {
+                throw new ResponseException(400, "Error: bad request");
+            }
+            game.setClock(new ChessClock(clockSeconds * 1000L, increment * 1000L));
+        }
+        return game;
+    }
+
     public ListGamesResponse listGamesRequest() {
-        List<GameData> gameList = null;
         try {
-            gameList = gameDAO.getGames();
+            return listGamesRequest(new ListGamesRequest(null, null, null, null, null));
+        } catch (ResponseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public ListGamesResponse listGamesRequest(ListGamesRequest request) throws ResponseException {
+        int limit = pageSize(request);
+        List<GameSummary> gameList = null;
+        try {
+            // Ask for one extra row so we know whether another page follows
+            gameList = gameDAO.listGames(request, limit + 1);
         } catch (dataaccess.DataAccessException e) {
             throw new RuntimeException(e);
         }
-        return new ListGamesResponse(gameList);
+        return toPage(gameList, limit);
     }
 
-    public void joinGame(JoinGameRequest request, String username) throws ResponseException {
-        if (request.gameID() == null) {
-            throw new ResponseException(400, "Error: bad request");
+    public CompletableFuture<ListGamesResponse> listGamesAsync(ListGamesRequest request) {
+        int limit;
+        try {
+            limit = pageSize(request);
+        } catch (ResponseException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return gameDAO.listGamesAsync(request, limit + 1).thenApply(gameList -> toPage(gameList, limit));
+    }
 
-        GameData currGame = null;
+    public ListGamesResponse getPlayerGames(String username, int limit) throws ResponseException {
+        checkPageSize(limit);
         try {
-            currGame = gameDAO.getGame(Integer.parseInt(request.gameID()));
+            return new ListGamesResponse(gameDAO.getGamesByPlayer(username, limit), null);
         } catch (dataaccess.DataAccessException e) {
             throw new RuntimeException(e);
         }
-        if (currGame == null) {
-            throw new ResponseException(400, "Error: bad request");
+    }
+
+    public ListGamesResponse getGamesByStatus(ChessGame.GameState status, int limit) throws ResponseException {
+        checkPageSize(limit);
+        try {
+            return new ListGamesResponse(gameDAO.getGamesByStatus(status, limit), null);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        if (Objects.equals(request.playerColor(), "WHITE")) {
-            if (currGame.whiteUsername() != null && !currGame.whiteUsername().equals(username)) {
-                throw new ResponseException(403, "Error: already taken");
-            } else {
-                var modGame = new GameData(currGame.gameID(), username, currGame.blackUsername(), currGame.gameName(), currGame.game());
-                try {
-                    gameDAO.updateGame(modGame);
-                } catch (dataaccess.DataAccessException e) {
-                    throw new RuntimeException(e);
-                }
+    public CompletableFuture<ListGamesResponse> getPlayerGamesAsync(String username, int limit) {
+        try {
+            checkPageSize(limit);
+        } catch (ResponseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return gameDAO.getGamesByPlayerAsync(username, limit).thenApply(gameList -> new ListGamesResponse(gameList, null));
+    }
+
+    public ListGamesResponse getRecentlyActiveGames(Duration window, int limit) throws ResponseException {
+        checkPageSize(limit);
+        try {
+            return new ListGamesResponse(gameDAO.getGamesActiveSince(Instant.now().minus(window), limit), null);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void joinGame(JoinGameRequest request, String username) throws ResponseException {
+        var color = seatColor(request);
+        // Claim the seat in one conditional update so concurrent joins cannot both win
+        DataAccess.SeatClaim claim = null;
+        try {
+            claim = gameDAO.claimSeat(Integer.parseInt(request.gameID()), color, username);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+        checkClaim(claim);
+        for (var listener : seatListeners) {
+            listener.seatClaimed(Integer.parseInt(request.gameID()), color, username);
+        }
+    }
+
+    public CompletableFuture<Void> joinGameAsync(JoinGameRequest request, String username) {
+        ChessGame.TeamColor color;
+        int gameID;
+        try {
+            color = seatColor(request);
+            gameID = Integer.parseInt(request.gameID());
+        } catch (ResponseException | NumberFormatException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return gameDAO.claimSeatAsync(gameID, color, username).thenAccept(claim -> {
+            try {
+                checkClaim(claim);
+            } catch (ResponseException e) {
+                throw new CompletionException(e);
             }
-        } else if (Objects.equals(request.playerColor(), "BLACK")) {
-            if (currGame.blackUsername() != null && !currGame.blackUsername().equals(username)) {
-                throw new ResponseException(403, "Error: already taken");
-            } else {
-                var modGame = new GameData(currGame.gameID(), currGame.whiteUsername(), username, currGame.gameName(), currGame.game());
-                try {
-                    gameDAO.updateGame(modGame);
-                } catch (dataaccess.DataAccessException e) {
-                    throw new RuntimeException(e);
-                }
+            for (var listener : seatListeners) {
+                listener.seatClaimed(gameID, color, username);
             }
-        } else {
-            throw new ResponseException(400, "Error: bad request");
+        });
+    }
+
+    public void leaveGame(int gameID, ChessGame.TeamColor color, String username) {
+        try {
+            gameDAO.releaseSeat(gameID, color, username);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+        for (var listener : seatListeners) {
+            listener.seatReleased(gameID, color, username);
         }
     }
 
@@ -104,4 +215,60 @@ public class GameService {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Stores the game's board and state, leaving its seats as they are in storage.
+     */
+    public void updateGameState(GameData gameData) throws ResponseException {
+        try {
+            gameDAO.updateGameState(gameData.gameID(), gameData.game());
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private int pageSize(ListGamesRequest request) throws ResponseException {
+        int limit = request.limit() == null ? DEFAULT_PAGE_SIZE : request.limit();
+        checkPageSize(limit);
+        if (request.cursor() != null && request.cursor() < 0) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        return limit;
+    }
+
+    private ListGamesResponse toPage(List<GameSummary> gameList, int limit) {
+        Integer nextCursor = null;
+        if (gameList.size() > limit) {
+            gameList = gameList.subList(0, limit);
+            nextCursor = gameList.get(limit - 1).gameID();
+        }
+        return new ListGamesResponse(gameList, nextCursor);
+    }
+
+    private ChessGame.TeamColor seatColor(JoinGameRequest request) throws ResponseException {
+        if (request.gameID() == null) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        if (Objects.equals(request.playerColor(), "WHITE")) {
+            return ChessGame.TeamColor.WHITE;
+        } else if (Objects.equals(request.playerColor(), "BLACK")) {
+            return ChessGame.TeamColor.BLACK;
+        }
+        throw new ResponseException(400, "Error: bad request");
+    }
+
+    private void checkClaim(DataAccess.SeatClaim claim) throws ResponseException {
+        if (claim == DataAccess.SeatClaim.NO_GAME) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        if (claim == DataAccess.SeatClaim.TAKEN) {
+            throw new ResponseException(403, "Error: already taken");
+        }
+    }
+
+    private void checkPageSize(int limit) throws ResponseException {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package service;
+
+import model.PlayerRating;
+
+/**
+ * Glicko-1 rating updates, applied one game at a time. Uses StrictMath so a
+ * result gives bit-for-bit the same rating on every run and every machine,
+ * which lets a replay of the history reproduce the live ratings exactly.
+ */
+final class Glicko {
+    static final double INITIAL_RATING = 1500;
+    static final double INITIAL_DEVIATION = 350;
+    // Active players keep some uncertainty, so their rating still moves
+    private static final double MIN_DEVIATION = 30;
+    // Deviation grows back with time away: from 50 to the initial 350 in about 100 days
+    private static final double DEVIATION_GROWTH_PER_DAY = (350.0 * 350.0 - 50.0 * 50.0) / 100;
+    private static final double DAY_MILLIS = 86_400_000.0;
+    private static final double Q = StrictMath.log(10) / 400;
+
+    private Glicko() {
+    }
+
+    static PlayerRating unrated(String username) {
+        return new PlayerRating(username, INITIAL_RATING, INITIAL_DEVIATION, 0, 0);
+    }
+
+    /**
+     * @param score 1 for a win, 0.5 for a draw, 0 for a loss
+     * @return the player's rating after one game against opponent, both as they stood before it
+     */
+    static PlayerRating update(PlayerRating player, PlayerRating opponent, double score, long playedAtMillis) {
+        double deviation = currentDeviation(player, playedAtMillis);
+        double g = g(currentDeviation(opponent, playedAtMillis));
+        double expected = 1 / (1 + StrictMath.pow(10, -g * (player.rating() - opponent.rating()) / 400));
+        double precision = 1 / (deviation * deviation) + Q * Q * g * g * expected * (1 - expected);
+        double rating = player.rating() + Q / precision * g * (score - expected);
+        double newDeviation = Math.max(MIN_DEVIATION, StrictMath.sqrt(1 / precision));
+        return new PlayerRating(player.username(), rating, newDeviation, player.games() + 1, playedAtMillis);
+    }
+
+    private static double currentDeviation(PlayerRating rating, long atMillis) {
+        if (rating.games() == 0) {
+            return rating.deviation();
+        }
+        double days = Math.max(0, atMillis - rating.lastPlayedMillis()) / DAY_MILLIS;
+        double grown = StrictMath.sqrt(rating.deviation() * rating.deviation() + DEVIATION_GROWTH_PER_DAY * days);
+        return Math.min(INITIAL_DEVIATION, grown);
+    }
+
+    // Weight given to a result, lower the less certain the opponent's rating is
+    private static double g(double deviation) {
+        return 1 / StrictMath.sqrt(1 + 3 * Q * Q * deviation * deviation / (Math.PI * Math.PI));
+    }
+}
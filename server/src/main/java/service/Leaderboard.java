@@ -0,0 +1,62 @@
+package service;
+
+import model.PlayerRating;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Every player's rating, kept sorted best first. A rating change moves one
+ * entry in the tree, and the top of the leaderboard is read straight off it,
+ * so nothing is sorted per request. Equal ratings are ordered by username.
+ */
+class Leaderboard {
+    private static final Comparator<PlayerRating> ORDER = Comparator.comparingDouble(PlayerRating::rating).reversed()
+            .thenComparing(PlayerRating::username);
+
+    private final HashMap<String, PlayerRating> byUsername = new HashMap<String, PlayerRating>();
+    private final TreeSet<PlayerRating> ranked = new TreeSet<PlayerRating>(ORDER);
+
+    synchronized PlayerRating get(String username) {
+        return byUsername.get(username);
+    }
+
+    synchronized void putAll(Collection<PlayerRating> ratings) {
+        for (var rating : ratings) {
+            var previous = byUsername.put(rating.username(), rating);
+            if (previous != null) {
+                ranked.remove(previous);
+            }
+            ranked.add(rating);
+        }
+    }
+
+    synchronized void replaceAll(Collection<PlayerRating> ratings) {
+        clear();
+        putAll(ratings);
+    }
+
+    synchronized List<PlayerRating> top(int limit) {
+        var top = new ArrayList<PlayerRating>(Math.min(limit, ranked.size()));
+        for (var rating : ranked) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(rating);
+        }
+        return top;
+    }
+
+    synchronized int size() {
+        return byUsername.size();
+    }
+
+    synchronized void clear() {
+        byUsername.clear();
+        ranked.clear();
+    }
+}
@@ -0,0 +1,332 @@
+package service;
+
+import dataaccess.DataAccess;
+import dataaccess.DataAccessException;
+import model.GameData;
+import model.MatchRequest;
+import model.MatchResponse;
+import model.MatchmakingStats;
+import model.ResponseException;
+import chess.ChessGame;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matchmaking queue. Players wait in a pool per time control, filed into
+ * rating buckets. Every tick, the players who have waited longest pick first.
+ * Each looks through the few buckets within its rating band for an opponent
+ * whose own band also reaches it. Bands start narrow and widen the longer a
+ * player waits. Each pair gets a new game with both seats filled, the longer
+ * waiting player as white.
+ * <p>
+ * The queue lives in this process; in a cluster each node pairs its own players.
+ */
+public class MatchmakingService implements Closeable {
+    public static final int DEFAULT_RATING = 1500;
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+    private static final int MAX_RATING = 4000;
+    private static final int BUCKET_WIDTH = 50;
+    // Largest rating gap accepted on joining, and how it grows with waiting
+    private static final int INITIAL_BAND = 100;
+    private static final int BAND_STEP = 50;
+    private static final long BAND_STEP_MILLIS = Duration.ofSeconds(10).toMillis();
+    private static final int MAX_BAND = 800;
+    // Matches nobody has asked about are forgotten after this long
+    private static final long MATCH_TTL_MILLIS = Duration.ofMinutes(10).toMillis();
+    private static final long RATE_WINDOW_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    public record Match(int gameID, String whiteUsername, String blackUsername) {
+    }
+
+    /**
+     * Told about every game made by matchmaking, after it has been stored.
+     */
+    public interface MatchListener {
+        void matched(Match match);
+    }
+
+    private record TimeControl(int clockSeconds, int incrementSeconds) {
+    }
+
+    private record Ticket(String username, int rating, TimeControl timeControl, long enqueuedAt) {
+    }
+
+    private record MadeMatch(Match match, long madeAt) {
+    }
+
+    private final DataAccess.GameDAO gameDAO;
+    private final Clock clock;
+    private final List<MatchListener> listeners = new CopyOnWriteArrayList<MatchListener>();
+    // Everything below is guarded by this
+    private final HashMap<String, Ticket> tickets = new HashMap<String, Ticket>();
+    private final HashMap<TimeControl, Pool> pools = new HashMap<TimeControl, Pool>();
+    private final HashMap<String, MadeMatch> matches = new HashMap<String, MadeMatch>();
+    // Games made per tick over the last minute, as {tick time, count}
+    private final ArrayDeque<long[]> recentPairings = new ArrayDeque<long[]>();
+    private long pairings = 0;
+    private long matchedPlayers = 0;
+    private long totalWaitMillis = 0;
+    private ScheduledExecutorService ticker;
+
+    public MatchmakingService(DataAccess.GameDAO gameDAO, Clock clock) {
+        this.gameDAO = gameDAO;
+        this.clock = clock;
+    }
+
+    public void addMatchListener(MatchListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Puts the player in the queue, replacing any earlier place or unclaimed match.
+     */
+    public synchronized void enqueue(String username, MatchRequest request) throws ResponseException {
+        var timeControl = timeControl(request);
+        int rating = request == null || request.rating() == null ? DEFAULT_RATING : request.rating();
+        if (rating < 0 || rating > MAX_RATING) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        leave(username);
+        matches.remove(username);
+        var ticket = new Ticket(username, rating, timeControl, clock.millis());
+        tickets.put(username, ticket);
+        pools.computeIfAbsent(timeControl, key -> new Pool()).add(ticket);
+    }
+
+    /**
+     * @return true if the player was waiting
+     */
+    public synchronized boolean leave(String username) {
+        var ticket = tickets.remove(username);
+        if (ticket == null) {
+            return false;
+        }
+        pools.get(ticket.timeControl()).remove(ticket);
+        return true;
+    }
+
+    public synchronized MatchResponse status(String username) {
+        var made = matches.get(username);
+        if (made != null) {
+            var match = made.match();
+            var color = username.equals(match.whiteUsername()) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            return new MatchResponse(MatchResponse.Status.MATCHED, match.gameID(), color, null);
+        }
+        var ticket = tickets.get(username);
+        if (ticket != null) {
+            long waited = (clock.millis() - ticket.enqueuedAt()) / 1000;
+            return new MatchResponse(MatchResponse.Status.WAITING, null, null, waited);
+        }
+        return new MatchResponse(MatchResponse.Status.NOT_QUEUED, null, null, null);
+    }
+
+    public synchronized MatchmakingStats stats() {
+        long now = clock.millis();
+        trimRecentPairings(now);
+        long recent = recentPairings.stream().mapToLong(entry -> entry[1]).sum();
+        long longestWait = 0;
+        for (var pool : pools.values()) {
+            if (!pool.byArrival.isEmpty()) {
+                longestWait = Math.max(longestWait, now - pool.byArrival.getFirst().enqueuedAt());
+            }
+        }
+        long meanWait = matchedPlayers == 0 ? 0 : totalWaitMillis / matchedPlayers;
+        return new MatchmakingStats(pairings, recent * 1000.0 / RATE_WINDOW_MILLIS, tickets.size(), meanWait, longestWait);
+    }
+
+    /**
+     * Empties the queue and forgets every match, for when storage is cleared.
+     */
+    public synchronized void clear() {
+        tickets.clear();
+        pools.clear();
+        matches.clear();
+    }
+
+    public void start(Duration interval) {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "matchmaker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                System.err.printf("Matchmaking tick failed: %s%n", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pairs everyone it can, creates their games and tells the listeners.
+     *
+     * @return number of games created
+     */
+    public int tick() {
+        long now = clock.millis();
+        List<Ticket[]> pairs;
+        synchronized (this) {
+            pairs = pairAll(now);
+            matches.values().removeIf(made -> now - made.madeAt() > MATCH_TTL_MILLIS);
+        }
+        int created = 0;
+        for (var pair : pairs) {
+            Match match;
+            try {
+                match = createGame(pair[0], pair[1]);
+            } catch (Exception e) {
+                System.err.printf("Cannot create game for %s and %s: %s%n", pair[0].username(), pair[1].username(), e.getMessage());
+                requeue(pair);
+                continue;
+            }
+            synchronized (this) {
+                var made = new MadeMatch(match, now);
+                matches.put(match.whiteUsername(), made);
+                matches.put(match.blackUsername(), made);
+                pairings++;
+                matchedPlayers += 2;
+                totalWaitMillis += (now - pair[0].enqueuedAt()) + (now - pair[1].enqueuedAt());
+            }
+            for (var listener : listeners) {
+                listener.matched(match);
+            }
+            created++;
+        }
+        synchronized (this) {
+            recentPairings.add(new long[]{now, created});
+            trimRecentPairings(now);
+        }
+        return created;
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private List<Ticket[]> pairAll(long now) {
+        var pairs = new ArrayList<Ticket[]>();
+        for (var pool : pools.values()) {
+            for (var ticket : new ArrayList<Ticket>(pool.byArrival)) {
+                if (!pool.byArrival.contains(ticket)) {
+                    // Already taken as someone's opponent this tick
+                    continue;
+                }
+                var opponent = pool.findOpponent(ticket, now);
+                if (opponent != null) {
+                    pool.remove(ticket);
+                    pool.remove(opponent);
+                    tickets.remove(ticket.username());
+                    tickets.remove(opponent.username());
+                    pairs.add(new Ticket[]{ticket, opponent});
+                }
+            }
+        }
+        pools.values().removeIf(pool -> pool.byArrival.isEmpty());
+        return pairs;
+    }
+
+    private Match createGame(Ticket white, Ticket black) throws ResponseException, DataAccessException {
+        var timeControl = white.timeControl();
+        var game = timeControl.clockSeconds() == 0 ? new ChessGame()
+                : GameService.newGame(timeControl.clockSeconds(), timeControl.incrementSeconds());
+        var gameName = String.format("%s vs %s", white.username(), black.username());
+        var created = gameDAO.createGame(new GameData(0, white.username(), black.username(), gameName, game));
+        return new Match(created.gameID(), white.username(), black.username());
+    }
+
+    // Puts a pair whose game could not be made back in line, unless either has queued again since
+    private synchronized void requeue(Ticket[] pair) {
+        for (var ticket : pair) {
+            if (!tickets.containsKey(ticket.username())) {
+                tickets.put(ticket.username(), ticket);
+                pools.computeIfAbsent(ticket.timeControl(), key -> new Pool()).add(ticket);
+            }
+        }
+    }
+
+    private void trimRecentPairings(long now) {
+        while (!recentPairings.isEmpty() && now - recentPairings.getFirst()[0] >= RATE_WINDOW_MILLIS) {
+            recentPairings.removeFirst();
+        }
+    }
+
+    private static TimeControl timeControl(MatchRequest request) throws ResponseException {
+        if (request == null || request.clockSeconds() == null) {
+            return new TimeControl(0, 0);
+        }
+        int increment = Objects.requireNonNullElse(request.incrementSeconds(), 0);
+        if (request.clockSeconds() <= 0 || increment < 0) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        return new TimeControl(request.clockSeconds(), increment);
+    }
+
+    private static int band(Ticket ticket, long now) {
+        long steps = (now - ticket.enqueuedAt()) / BAND_STEP_MILLIS;
+        return (int) Math.min(MAX_BAND, INITIAL_BAND + steps * BAND_STEP);
+    }
+
+    private static int bucket(int rating) {
+        return rating / BUCKET_WIDTH;
+    }
+
+    // The players waiting for one time control
+    private static class Pool {
+        final LinkedHashSet<Ticket> byArrival = new LinkedHashSet<Ticket>();
+        final HashMap<Integer, LinkedHashSet<Ticket>> buckets = new HashMap<Integer, LinkedHashSet<Ticket>>();
+
+        void add(Ticket ticket) {
+            byArrival.add(ticket);
+            buckets.computeIfAbsent(bucket(ticket.rating()), key -> new LinkedHashSet<Ticket>()).add(ticket);
+        }
+
+        void remove(Ticket ticket) {
+            byArrival.remove(ticket);
+            var bucket = buckets.get(bucket(ticket.rating()));
+            if (bucket != null) {
+                bucket.remove(ticket);
+                if (bucket.isEmpty()) {
+                    buckets.remove(bucket(ticket.rating()));
+                }
+            }
+        }
+
+        // Nearest buckets first, so a close rating is preferred to an early arrival
+        Ticket findOpponent(Ticket ticket, long now) {
+            int band = band(ticket, now);
+            int home = bucket(ticket.rating());
+            int reach = band / BUCKET_WIDTH + 1;
+            for (int distance = 0; distance <= reach; distance++) {
+                for (int index : distance == 0 ? new int[]{home} : new int[]{home - distance, home + distance}) {
+                    var candidates = buckets.get(index);
+                    if (candidates == null) {
+                        continue;
+                    }
+                    for (var candidate : candidates) {
+                        int gap = Math.abs(candidate.rating() - ticket.rating());
+                        if (candidate != ticket && gap <= Math.min(band, band(candidate, now))) {
+                            return candidate;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package service;
+
+import model.ResponseException;
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt on a fixed pool of CPU threads with a bounded queue, so a burst
+ * of logins cannot take every request thread. When the queue is full callers
+ * get a 503 straight away instead of waiting.
+ */
+public class PasswordHasher {
+    public static final int DEFAULT_COST = 10;
+    public static final int DEFAULT_QUEUE_LIMIT = 64;
+
+    private static final PasswordHasher DEFAULT = new PasswordHasher(DEFAULT_COST,
+            Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_LIMIT);
+
+    public record Stats(long hashes, double meanHashMillis, double maxHashMillis,
+                        long verifies, double meanVerifyMillis, double maxVerifyMillis, long rejected) {
+    }
+
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final Latency hashLatency = new Latency();
+    private final Latency verifyLatency = new Latency();
+    private final LongAdder rejected = new LongAdder();
+
+    public PasswordHasher(int cost, int threads, int queueLimit) {
+        this.cost = cost;
+        var threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueLimit), runnable -> {
+                    var thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Shared hasher with the default cost, one thread per core.
+     */
+    public static PasswordHasher defaultHasher() {
+        return DEFAULT;
+    }
+
+    /**
+     * Hasher configured by -Dchess.bcryptCost, -Dchess.hashThreads and -Dchess.hashQueue.
+     */
+    public static PasswordHasher fromSystemProperties() {
+        int cost = Integer.getInteger("chess.bcryptCost", DEFAULT_COST);
+        int threads = Integer.getInteger("chess.hashThreads", Runtime.getRuntime().availableProcessors());
+        int queueLimit = Integer.getInteger("chess.hashQueue", DEFAULT_QUEUE_LIMIT);
+        return new PasswordHasher(cost, threads, queueLimit);
+    }
+
+    public String hash(String password) throws ResponseException {
+        return run(hashLatency, () -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+    }
+
+    /**
+     * Hashes many passwords for a bulk job. At most one per pool thread is in
+     * flight, so the queue keeps room for logins, and the caller waits rather
+     * than being turned away.
+     */
+    public List<String> hashAll(List<String> passwords) {
+        var pending = new ArrayDeque<Future<String>>();
+        var hashes = new ArrayList<String>(passwords.size());
+        try {
+            for (var password : passwords) {
+                if (pending.size() >= executor.getCorePoolSize()) {
+                    hashes.add(pending.removeFirst().get());
+                }
+                Future<String> future = null;
+                while (future == null) {
+                    try {
+                        future = executor.submit(() -> hashLatency.time(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+                    } catch (RejectedExecutionException e) {
+                        // Logins filled the queue; wait for our oldest hash instead of failing the job
+                        if (pending.isEmpty()) {
+                            Thread.sleep(10);
+                        } else {
+                            hashes.add(pending.removeFirst().get());
+                        }
+                    }
+                }
+                pending.addLast(future);
+            }
+            while (!pending.isEmpty()) {
+                hashes.add(pending.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(future -> future.cancel(true));
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            pending.forEach(future -> future.cancel(true));
+            throw new RuntimeException(e.getCause());
+        }
+        return hashes;
+    }
+
+    public boolean verify(String password, String hash) throws ResponseException {
+        return run(verifyLatency, () -> BCrypt.checkpw(password, hash));
+    }
+
+    /**
+     * True if the hash was made with a different cost than the one configured now.
+     */
+    public boolean needsRehash(String hash) {
+        // BCrypt hashes look like $2a$10$..., where 10 is the cost
+        var parts = hash.split("\\$");
+        try {
+            return parts.length < 3 || Integer.parseInt(parts[2]) != cost;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Hashes the password in the background and hands the result to onHashed.
+     * Skipped if the pool is busy; the next login tries again.
+     */
+    public void rehashLater(String password, HashConsumer onHashed) {
+        try {
+            executor.execute(() -> {
+                try {
+                    onHashed.accept(hashLatency.time(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+                } catch (Exception e) {
+                    System.err.printf("Password rehash failed: %s%n", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hashLatency.count.sum(), hashLatency.meanMillis(), hashLatency.maxMillis(),
+                verifyLatency.count.sum(), verifyLatency.meanMillis(), verifyLatency.maxMillis(), rejected.sum());
+    }
+
+    @FunctionalInterface
+    public interface HashConsumer {
+        void accept(String hash) throws Exception;
+    }
+
+    private <T> T run(Latency latency, Callable<T> operation) throws ResponseException {
+        var start = System.nanoTime();
+        try {
+            var result = executor.submit(operation).get();
+            // Measured from submission, so the figure includes time spent queued
+            latency.record(System.nanoTime() - start);
+            return result;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ResponseException(503, "Error: server busy, try again");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static class Latency {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        <T> T time(Callable<T> operation) throws Exception {
+            var start = System.nanoTime();
+            var result = operation.call();
+            record(System.nanoTime() - start);
+            return result;
+        }
+
+        double meanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / (n * 1_000_000.0);
+        }
+
+        double maxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
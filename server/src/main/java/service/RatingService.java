@@ -0,0 +1,213 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.DataAccess;
+import model.GameData;
+import model.GameResult;
+import model.LeaderboardResponse;
+import model.PlayerRating;
+import model.RecomputeResponse;
+import model.ResponseException;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Glicko ratings, updated as each rated game ends and served from an
+ * in-memory leaderboard. Every rated game is also appended to a result
+ * history, so all ratings can be rebuilt from scratch.
+ */
+public class RatingService {
+    public static final int DEFAULT_LEADERBOARD_SIZE = 100;
+    public static final int MAX_LEADERBOARD_SIZE = 1000;
+    // Rounds smaller than this are rated on the calling thread; splitting them costs more than it saves
+    private static final int PARALLEL_ROUND_SIZE = 64;
+
+    private final DataAccess.RatingDAO ratingDAO;
+    private final Clock clock;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final List<RatingListener> listeners = new CopyOnWriteArrayList<RatingListener>();
+    // Results are recorded and applied one at a time, in resultID order, so the
+    // live ratings are exactly what a replay of the history gives. A lock rather
+    // than synchronized, since it is held across storage calls on virtual threads.
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    /**
+     * Told about every rating change, after storage has accepted it.
+     */
+    public interface RatingListener {
+        void ratingsChanged(List<PlayerRating> ratings);
+    }
+
+    public RatingService(DataAccess.RatingDAO ratingDAO, Clock clock) {
+        this.ratingDAO = ratingDAO;
+        this.clock = clock;
+    }
+
+    public void addRatingListener(RatingListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Fills the leaderboard from storage.
+     */
+    public void load() {
+        updateLock.lock();
+        try {
+            leaderboard.replaceAll(ratingDAO.getRatings());
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * @return the player's rating, or the starting rating if they have no rated games
+     */
+    public PlayerRating getRating(String username) {
+        var rating = leaderboard.get(username);
+        return rating == null ? Glicko.unrated(username) : rating;
+    }
+
+    public LeaderboardResponse getLeaderboard(int limit) throws ResponseException {
+        if (limit < 1 || limit > MAX_LEADERBOARD_SIZE) {
+            throw new ResponseException(400, "Error: bad request");
+        }
+        return new LeaderboardResponse(leaderboard.top(limit));
+    }
+
+    /**
+     * Records a finished game and updates both players' ratings. Games with an
+     * empty seat, or with one player in both seats, are not rated.
+     *
+     * @return the players' new ratings, white first, or an empty list if the game is not rated
+     */
+    public List<PlayerRating> gameEnded(GameData gameData) {
+        var white = gameData.whiteUsername();
+        var black = gameData.blackUsername();
+        if (gameData.game().getGameState() != ChessGame.GameState.GAME_OVER || white == null || black == null || white.equals(black)) {
+            return List.of();
+        }
+        List<PlayerRating> updated;
+        updateLock.lock();
+        try {
+            var result = ratingDAO.recordResult(new GameResult(0, gameData.gameID(), white, black,
+                    gameData.game().getWinner(), clock.millis()));
+            updated = rate(result, getRating(white), getRating(black));
+            ratingDAO.saveRatings(updated);
+            leaderboard.putAll(updated);
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            updateLock.unlock();
+        }
+        for (var listener : listeners) {
+            listener.ratingsChanged(updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Rebuilds every rating by replaying the whole result history. The games
+     * are split into rounds in which no player appears twice: a game goes in
+     * the round after the last one either player was in. Rounds run in order,
+     * and the games within a round are rated in parallel. Each game still sees
+     * the ratings it would see in a one-by-one replay, so the outcome does not
+     * depend on thread count or scheduling.
+     */
+    public RecomputeResponse recompute() {
+        long start = System.nanoTime();
+        List<PlayerRating> ratings;
+        int resultCount;
+        int roundCount;
+        updateLock.lock();
+        try {
+            var results = ratingDAO.getResults();
+            var players = new HashMap<String, Integer>();
+            for (var result : results) {
+                players.putIfAbsent(result.whiteUsername(), players.size());
+                players.putIfAbsent(result.blackUsername(), players.size());
+            }
+            var current = new PlayerRating[players.size()];
+            players.forEach((username, index) -> current[index] = Glicko.unrated(username));
+
+            var lastRound = new int[players.size()];
+            var rounds = new ArrayList<List<GameResult>>();
+            for (var result : results) {
+                int white = players.get(result.whiteUsername());
+                int black = players.get(result.blackUsername());
+                int round = Math.max(lastRound[white], lastRound[black]) + 1;
+                lastRound[white] = round;
+                lastRound[black] = round;
+                if (round > rounds.size()) {
+                    rounds.add(new ArrayList<GameResult>());
+                }
+                rounds.get(round - 1).add(result);
+            }
+            for (var round : rounds) {
+                // Games in a round share no player, so each writes only its own two slots
+                var games = round.size() >= PARALLEL_ROUND_SIZE ? round.parallelStream() : round.stream();
+                games.forEach(result -> {
+                    int white = players.get(result.whiteUsername());
+                    int black = players.get(result.blackUsername());
+                    var updated = rate(result, current[white], current[black]);
+                    current[white] = updated.get(0);
+                    current[black] = updated.get(1);
+                });
+            }
+
+            ratings = List.of(current);
+            ratingDAO.saveRatings(ratings);
+            leaderboard.replaceAll(ratings);
+            resultCount = results.size();
+            roundCount = rounds.size();
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            updateLock.unlock();
+        }
+        for (var listener : listeners) {
+            listener.ratingsChanged(ratings);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new RecomputeResponse(resultCount, ratings.size(), roundCount, millis);
+    }
+
+    /**
+     * Puts ratings that another node has already stored into this node's leaderboard.
+     */
+    public void ratingsChangedElsewhere(List<PlayerRating> ratings) {
+        leaderboard.putAll(ratings);
+    }
+
+    public void clear() {
+        updateLock.lock();
+        try {
+            ratingDAO.clearAllRatings();
+            leaderboard.clear();
+        } catch (dataaccess.DataAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the leaderboard without touching storage, for when another node has cleared it.
+     */
+    public void clearLeaderboard() {
+        leaderboard.clear();
+    }
+
+    // Both players' ratings after the game, white first
+    private static List<PlayerRating> rate(GameResult result, PlayerRating white, PlayerRating black) {
+        double whiteScore = result.winner() == null ? 0.5 : result.winner() == ChessGame.TeamColor.WHITE ? 1 : 0;
+        return List.of(Glicko.update(white, black, whiteScore, result.endedAtMillis()),
+                Glicko.update(black, white, 1 - whiteScore, result.endedAtMillis()));
+    }
+}
@@ -0,0 +1,77 @@
+package dataaccess;
+
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthTokenSweeperTests {
+
+    // A clock the test moves by hand
+    private static class ManualClock extends Clock {
+        long millis = 1_000_000;
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private MemoryDataAccess.AuthDAO authDAO;
+    private AuthTokenSweeper sweeper;
+    private UserData testUser;
+
+    @BeforeEach
+    public void setUp() {
+        authDAO = new MemoryDataAccess.AuthDAO(Duration.ofMillis(500), clock);
+        // Not started, so only the explicit sweep() calls run
+        sweeper = new AuthTokenSweeper(authDAO, 2);
+        testUser = new UserData("testuser", "password", "testuser@example.com");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        sweeper.close();
+    }
+
+    @Test
+    public void testExpiredTokenRejectedBeforeSweep() throws Exception {
+        var authData = authDAO.createAuth(testUser);
+        assertNotNull(authDAO.getAuth(authData.authToken()));
+        clock.millis += 500;
+        assertNotNull(authDAO.getAuth(authData.authToken()));
+        clock.millis += 1;
+        assertNull(authDAO.getAuth(authData.authToken()));
+    }
+
+    @Test
+    public void testSweepDeletesOnlyExpiredInBatches() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            authDAO.createAuth(testUser);
+        }
+        clock.millis += 700;
+        var fresh = authDAO.createAuth(testUser);
+
+        assertEquals(5, sweeper.sweep());
+        assertEquals(5, sweeper.totalSwept());
+        assertEquals(1, authDAO.allAuth().size());
+        assertNotNull(authDAO.getAuth(fresh.authToken()));
+        assertEquals(0, sweeper.sweep());
+    }
+}
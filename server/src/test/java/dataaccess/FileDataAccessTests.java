@@ -0,0 +1,290 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.AuthData;
+import model.GameData;
+import model.GameResult;
+import model.GameSummary;
+import model.PlayerRating;
+import model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDataAccessTests {
+    @TempDir
+    Path tempDir;
+
+    private Path logFile;
+    private FileDataAccess store;
+    private UserData testUser;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        logFile = tempDir.resolve("chess.log");
+        store = new FileDataAccess(logFile);
+        testUser = new UserData("testuser", "password", "testuser@example.com");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        store.close();
+    }
+
+    private FileDataAccess reopen(int compactEvery) throws Exception {
+        store.close();
+        store = new FileDataAccess(logFile, compactEvery);
+        return store;
+    }
+
+    @Test
+    public void testRecoverAfterRestartSuccess() throws Exception {
+        new FileDataAccess.UserDAO(store).createUser(testUser);
+        AuthData authData = new FileDataAccess.AuthDAO(store).createAuth(testUser);
+        var gameDAO = new FileDataAccess.GameDAO(store);
+        GameData createdGame = gameDAO.createGame(new GameData(0, null, null, "Test Game", null));
+        gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, testUser.username());
+
+        reopen(FileDataAccess.DEFAULT_COMPACT_EVERY);
+
+        assertNotNull(new FileDataAccess.UserDAO(store).getUser(testUser));
+        assertEquals(testUser.username(), new FileDataAccess.AuthDAO(store).getAuth(authData.authToken()).username());
+        var recovered = new FileDataAccess.GameDAO(store);
+        assertEquals(testUser.username(), recovered.getGame(createdGame.gameID()).whiteUsername());
+        assertEquals(createdGame.gameID() + 1, recovered.createGame(new GameData(0, null, null, "Next", null)).gameID());
+    }
+
+    @Test
+    public void testFailedCompactionKeepsLogWritable() throws Exception {
+        // Compacting after every batch, with a directory where the compacted copy would be written
+        reopen(1);
+        var blocker = Files.createDirectory(logFile.resolveSibling(logFile.getFileName() + ".compact"));
+        var userDAO = new FileDataAccess.UserDAO(store);
+        var written = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            var userData = new UserData("user" + i, "password", "user@example.com");
+            try {
+                userDAO.createUser(userData);
+                written.add(userData.username());
+            } catch (DataAccessException e) {
+                // Queued behind a failed compaction; the change must be gone from memory too
+                assertNull(userDAO.getUser(userData));
+            }
+        }
+        assertFalse(written.isEmpty());
+        for (var username : written) {
+            assertNotNull(userDAO.getUser(new UserData(username, null, null)));
+        }
+
+        Files.delete(blocker);
+        reopen(FileDataAccess.DEFAULT_COMPACT_EVERY);
+        for (int i = 0; i < 20; i++) {
+            var userData = new UserData("user" + i, null, null);
+            assertEquals(written.contains(userData.username()), new FileDataAccess.UserDAO(store).getUser(userData) != null);
+        }
+    }
+
+    @Test
+    public void testDeleteAndClearSurviveRestart() throws Exception {
+        var authDAO = new FileDataAccess.AuthDAO(store);
+        AuthData authData = authDAO.createAuth(testUser);
+        authDAO.deleteAuth(authData.authToken());
+        new FileDataAccess.GameDAO(store).createGame(new GameData(0, null, null, "Test Game", null));
+        new FileDataAccess.GameDAO(store).clearAllGames();
+
+        reopen(FileDataAccess.DEFAULT_COMPACT_EVERY);
+
+        assertNull(new FileDataAccess.AuthDAO(store).getAuth(authData.authToken()));
+        assertTrue(new FileDataAccess.GameDAO(store).getGames().isEmpty());
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        new FileDataAccess.UserDAO(store).createUser(testUser);
+        store.close();
+        long goodSize = Files.size(logFile);
+        Files.write(logFile, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        store = new FileDataAccess(logFile);
+
+        assertNotNull(new FileDataAccess.UserDAO(store).getUser(testUser));
+        assertEquals(goodSize, Files.size(logFile));
+    }
+
+    @Test
+    public void testCompactionKeepsState() throws Exception {
+        reopen(4);
+        var gameDAO = new FileDataAccess.GameDAO(store);
+        GameData createdGame = gameDAO.createGame(new GameData(0, null, null, "Test Game", null));
+        for (int i = 0; i < 20; i++) {
+            gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.BLACK, "player" + (i % 2));
+            gameDAO.releaseSeat(createdGame.gameID(), ChessGame.TeamColor.BLACK, "player" + (i % 2));
+        }
+        gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.BLACK, "winner");
+
+        reopen(4);
+
+        assertEquals("winner", new FileDataAccess.GameDAO(store).getGame(createdGame.gameID()).blackUsername());
+    }
+
+    @Test
+    public void testResultsAndRatingsSurviveCompaction() throws Exception {
+        reopen(4);
+        var ratingDAO = new FileDataAccess.RatingDAO(store);
+        for (int i = 0; i < 10; i++) {
+            ratingDAO.recordResult(new GameResult(0, i, "alice", "bob", ChessGame.TeamColor.WHITE, 1000L * i));
+            ratingDAO.saveRatings(List.of(new PlayerRating("alice", 1500 + i, 300, i + 1, 1000L * i),
+                    new PlayerRating("bob", 1500 - i, 300, i + 1, 1000L * i)));
+        }
+
+        reopen(4);
+
+        var recovered = new FileDataAccess.RatingDAO(store);
+        var results = recovered.getResults();
+        assertEquals(10, results.size());
+        assertEquals(10, results.get(9).resultID());
+        assertEquals(11, recovered.recordResult(new GameResult(0, 10, "bob", "alice", null, 10_000)).resultID());
+        var ratings = recovered.getRatings();
+        assertEquals(2, ratings.size());
+        assertTrue(ratings.contains(new PlayerRating("alice", 1509, 300, 10, 9000)));
+    }
+
+    // The file store keeps its games in a MemoryDataAccess.GameDAO, which is also used on its own without a lock around it
+    @Test
+    public void testConcurrentSeatClaimsHaveOneWinner() throws Exception {
+        var gameDAO = new MemoryDataAccess.GameDAO();
+        int gameID = gameDAO.createGame(new GameData(0, null, null, "contested", null)).gameID();
+        int players = 16;
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(players);
+        try {
+            var claims = new ArrayList<Future<DataAccess.SeatClaim>>();
+            for (int i = 0; i < players; i++) {
+                var username = "player" + i;
+                claims.add(executor.submit(() -> {
+                    start.await();
+                    return gameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, username);
+                }));
+            }
+            start.countDown();
+            int claimed = 0;
+            for (var claim : claims) {
+                if (claim.get() == DataAccess.SeatClaim.CLAIMED) {
+                    claimed++;
+                } else {
+                    assertEquals(DataAccess.SeatClaim.TAKEN, claim.get());
+                }
+            }
+            assertEquals(1, claimed);
+        } finally {
+            executor.shutdownNow();
+        }
+        // Only the winner's game list shows the game
+        var winner = gameDAO.getGame(gameID).whiteUsername();
+        for (int i = 0; i < players; i++) {
+            var games = gameDAO.getGamesByPlayer("player" + i, 10);
+            assertEquals(("player" + i).equals(winner) ? 1 : 0, games.size());
+        }
+        assertEquals(DataAccess.SeatClaim.NO_GAME, gameDAO.claimSeat(gameID + 1, ChessGame.TeamColor.BLACK, "late"));
+    }
+
+    @Test
+    public void testPlayerIndexFollowsSeatChanges() throws Exception {
+        var gameDAO = new MemoryDataAccess.GameDAO();
+        int first = gameDAO.createGame(new GameData(0, null, null, "first", null)).gameID();
+        int second = gameDAO.createGame(new GameData(0, "alice", "bob", "second", null)).gameID();
+        gameDAO.claimSeat(first, ChessGame.TeamColor.WHITE, "alice");
+        gameDAO.claimSeat(first, ChessGame.TeamColor.BLACK, "alice");
+        // Newest first
+        assertEquals(List.of(second, first), gameDAO.getGamesByPlayer("alice", 10).stream().map(GameSummary::gameID).toList());
+
+        // Still seated as black, so the game stays on her list
+        gameDAO.releaseSeat(first, ChessGame.TeamColor.WHITE, "alice");
+        assertEquals(2, gameDAO.getGamesByPlayer("alice", 10).size());
+        // Releasing someone else's seat changes nothing
+        gameDAO.releaseSeat(second, ChessGame.TeamColor.BLACK, "alice");
+        assertEquals(1, gameDAO.getGamesByPlayer("bob", 10).size());
+
+        gameDAO.updateGame(new GameData(second, "carol", "bob", "second", new ChessGame()));
+        assertEquals(List.of(first), gameDAO.getGamesByPlayer("alice", 10).stream().map(GameSummary::gameID).toList());
+        assertEquals(1, gameDAO.getGamesByPlayer("carol", 10).size());
+
+        gameDAO.deleteGame(first);
+        assertTrue(gameDAO.getGamesByPlayer("alice", 10).isEmpty());
+    }
+
+    @Test
+    public void testRevocationsAndKeyEpochSurviveCompaction() throws Exception {
+        reopen(4);
+        var revocationDAO = new FileDataAccess.RevocationDAO(store);
+        long future = Instant.now().getEpochSecond() + 3600;
+        revocationDAO.revoke("before", future);
+        assertEquals(1, revocationDAO.rotateKeyEpoch());
+        for (int i = 0; i < 5; i++) {
+            revocationDAO.revoke("token" + i, future);
+        }
+        revocationDAO.revoke("expired", 1);
+
+        reopen(4);
+
+        var recovered = new FileDataAccess.RevocationDAO(store);
+        assertEquals(1, recovered.getKeyEpoch());
+        var revocations = recovered.getRevocations(future - 1);
+        // The rotation dropped the earlier revocation, and expired ones are not read back
+        assertEquals(5, revocations.size());
+        assertFalse(revocations.containsKey("before"));
+        assertEquals(future, (long) revocations.get("token4"));
+    }
+
+    @Test
+    public void testCreateUserFailure() throws Exception {
+        var userDAO = new FileDataAccess.UserDAO(store);
+        userDAO.createUser(testUser);
+        assertThrows(DataAccessException.class, () -> userDAO.createUser(testUser));
+    }
+
+    @Test
+    public void testBulkImportSurvivesRestart() throws Exception {
+        var users = new ArrayList<UserData>();
+        var games = new ArrayList<GameData>();
+        for (int i = 0; i < 500; i++) {
+            users.add(new UserData("user" + i, "hash", "user" + i + "@example.com"));
+            games.add(new GameData(0, "user" + i, null, "Game " + i, new ChessGame()));
+        }
+        var bulkDAO = new FileDataAccess.BulkDAO(store);
+        assertEquals(500, bulkDAO.importUsers(users, 100));
+        assertEquals(500, bulkDAO.importGames(games, 100));
+
+        reopen(FileDataAccess.DEFAULT_COMPACT_EVERY);
+
+        assertNotNull(new FileDataAccess.UserDAO(store).getUser(new UserData("user499", null, null)));
+        var gameDAO = new FileDataAccess.GameDAO(store);
+        assertEquals(500, gameDAO.getGames().size());
+        assertEquals("user0", gameDAO.getGamesByPlayer("user0", 10).get(0).whiteUsername());
+    }
+
+    @Test
+    public void testBulkImportDuplicateUserImportsNothing() throws Exception {
+        new FileDataAccess.UserDAO(store).createUser(testUser);
+        var bulkDAO = new FileDataAccess.BulkDAO(store);
+
+        assertThrows(DataAccessException.class, () -> {
+            bulkDAO.importUsers(List.of(new UserData("fresh", "hash", null), testUser), 100);
+        });
+        assertNull(new FileDataAccess.UserDAO(store).getUser(new UserData("fresh", null, null)));
+    }
+}
@@ -0,0 +1,128 @@
+package dataaccess;
+
+import chess.ChessGame;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameArchiveTests {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testAppendAndGetSuccess() throws Exception {
+        var archive = new GameArchive(tempDir);
+        var game = new ChessGame();
+        game.gameOver();
+        assertTrue(archive.append(new GameData(7, "white", "black", "Test Game", game)));
+
+        GameData archived = archive.get(7);
+        assertNotNull(archived);
+        assertEquals("white", archived.whiteUsername());
+        assertEquals(ChessGame.GameState.GAME_OVER, archived.game().getGameState());
+        assertNull(archive.get(8));
+    }
+
+    @Test
+    public void testIndexRebuiltOnReopen() throws Exception {
+        var archive = new GameArchive(tempDir);
+        for (int i = 1; i <= GameArchive.RECORDS_PER_SEGMENT + 2; i++) {
+            archive.append(new GameData(i, null, null, "Game " + i, new ChessGame()));
+        }
+        archive.close();
+
+        var reopened = new GameArchive(tempDir);
+        assertEquals(GameArchive.RECORDS_PER_SEGMENT + 2, reopened.size());
+        assertEquals("Game 1", reopened.get(1).gameName());
+        assertEquals("Game " + (GameArchive.RECORDS_PER_SEGMENT + 2), reopened.get(GameArchive.RECORDS_PER_SEGMENT + 2).gameName());
+        reopened.append(new GameData(100_000, null, null, "After reopen", new ChessGame()));
+        assertEquals("After reopen", reopened.get(100_000).gameName());
+    }
+
+    @Test
+    public void testAppendTooLargeFailure() throws Exception {
+        var archive = new GameArchive(tempDir);
+        var hugeName = new StringBuilder();
+        var random = new java.util.Random(42);
+        for (int i = 0; i < GameArchive.RECORD_SIZE * 2; i++) {
+            hugeName.append((char) ('a' + random.nextInt(26)));
+        }
+        assertFalse(archive.append(new GameData(1, null, null, hugeName.toString(), new ChessGame())));
+        assertFalse(archive.contains(1));
+    }
+
+    @Test
+    public void testArchivedGameDAOMovesFinishedGames() throws Exception {
+        var live = new MemoryDataAccess.GameDAO();
+        var gameDAO = new ArchivedGameDAO(live, new GameArchive(tempDir));
+        GameData finished = gameDAO.createGame(new GameData(0, null, null, "Finished", null));
+        GameData playing = gameDAO.createGame(new GameData(0, null, null, "Playing", null));
+        finished.game().gameOver();
+        gameDAO.updateGame(finished);
+
+        assertEquals(1, gameDAO.archiveFinishedGames());
+
+        assertNull(live.getGame(finished.gameID()));
+        assertEquals("Finished", gameDAO.getGame(finished.gameID()).gameName());
+        assertEquals(1, gameDAO.getGames().size());
+        assertEquals(playing.gameID(), gameDAO.getGames().get(0).gameID());
+        gameDAO.close();
+    }
+
+    @Test
+    public void testNewGamesAfterRestartDoNotReuseArchivedIDs() throws Exception {
+        var gameDAO = new ArchivedGameDAO(new MemoryDataAccess.GameDAO(), new GameArchive(tempDir));
+        GameData first = gameDAO.createGame(new GameData(0, null, null, "First", null));
+        first.game().gameOver();
+        gameDAO.updateGame(first);
+        gameDAO.archiveFinishedGames();
+        gameDAO.close();
+
+        // The memory store starts its IDs over, the archive does not
+        var restarted = new ArchivedGameDAO(new MemoryDataAccess.GameDAO(), new GameArchive(tempDir));
+        GameData second = restarted.createGame(new GameData(0, null, null, "Second", null));
+        assertTrue(second.gameID() > first.gameID());
+        second.game().gameOver();
+        restarted.updateGame(second);
+        assertEquals(1, restarted.archiveFinishedGames());
+        assertEquals("First", restarted.getGame(first.gameID()).gameName());
+        assertEquals("Second", restarted.getGame(second.gameID()).gameName());
+        restarted.close();
+    }
+
+    @Test
+    public void testLiveGameUnderAnArchivedIDIsNotDeleted() throws Exception {
+        var archive = new GameArchive(tempDir);
+        var old = new ChessGame();
+        old.gameOver();
+        archive.append(new GameData(1, "alice", "bob", "Old", old));
+        var live = new MemoryDataAccess.GameDAO();
+        var finished = new ChessGame();
+        finished.gameOver();
+        // As left behind by a store that reused the ID before IDs were reserved
+        live.restoreGame(new GameData(1, "carol", "dave", "New", finished));
+        var gameDAO = new ArchivedGameDAO(live, archive);
+
+        assertEquals(0, gameDAO.archiveFinishedGames());
+        assertEquals("New", gameDAO.getGame(1).gameName());
+        gameDAO.close();
+    }
+
+    @Test
+    public void testClearAlsoClearsArchive() throws Exception {
+        var gameDAO = new ArchivedGameDAO(new MemoryDataAccess.GameDAO(), new GameArchive(tempDir));
+        GameData finished = gameDAO.createGame(new GameData(0, null, null, "Finished", null));
+        finished.game().gameOver();
+        gameDAO.updateGame(finished);
+        gameDAO.archiveFinishedGames();
+
+        gameDAO.clearAllGames();
+
+        assertNull(gameDAO.getGame(finished.gameID()));
+        gameDAO.close();
+    }
+}
@@ -3,10 +3,20 @@ package dataaccess;
 import chess.ChessGame;
 import model.AuthData;
 import model.GameData;
+import model.ListGamesRequest;
 import model.UserData;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class MySqlDatabaseTests {
@@ -87,6 +97,21 @@ public class MySqlDatabaseTests {
         assertNull(authDAO.getAuth(testUser.username()));
     }
 
+    @Test
+    public void testExpiredAuthRejectedAndSwept() throws Exception {
+        var issued = Instant.parse("2026-01-01T00:00:00Z");
+        AuthData expiring = new MySqlDataAccess.AuthDAO(Duration.ofSeconds(1), Clock.fixed(issued, ZoneOffset.UTC))
+                .createAuth(testUser);
+        // Same table, read two seconds later
+        var shortLived = new MySqlDataAccess.AuthDAO(Duration.ofSeconds(1), Clock.fixed(issued.plusSeconds(2), ZoneOffset.UTC));
+        AuthData fresh = shortLived.createAuth(testUser);
+
+        assertNull(shortLived.getAuth(expiring.authToken()));
+        assertEquals(1, shortLived.deleteExpiredAuth(100));
+        assertNotNull(shortLived.getAuth(fresh.authToken()));
+        assertEquals(0, shortLived.deleteExpiredAuth(100));
+    }
+
     // UserDAO Tests
     @Test
     public void testCreateUserSuccess() throws Exception {
@@ -144,6 +169,72 @@ public class MySqlDatabaseTests {
         });
     }
 
+    @Test
+    public void testUpdateGameStateKeepsSeats() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        // The cached copy predates the claim, so its seats are stale
+        gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, "player1");
+        var game = createdGame.game();
+        game.gameOver();
+        gameDAO.updateGameState(createdGame.gameID(), game);
+
+        GameData retrievedGame = gameDAO.getGame(createdGame.gameID());
+        assertEquals("player1", retrievedGame.whiteUsername());
+        assertEquals(ChessGame.GameState.GAME_OVER, retrievedGame.game().getGameState());
+        assertThrows(DataAccessException.class, () -> gameDAO.updateGameState(-1, game));
+    }
+
+    @Test
+    public void testClaimSeatSuccess() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        assertEquals(DataAccess.SeatClaim.CLAIMED, gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, "player1"));
+        assertEquals("player1", gameDAO.getGame(createdGame.gameID()).whiteUsername());
+    }
+
+    @Test
+    public void testClaimSeatFailure() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.BLACK, "player1");
+        assertEquals(DataAccess.SeatClaim.TAKEN, gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.BLACK, "player2"));
+        assertEquals(DataAccess.SeatClaim.NO_GAME, gameDAO.claimSeat(-1, ChessGame.TeamColor.BLACK, "player2"));
+    }
+
+    @Test
+    public void testClaimSeatConcurrentOneWinner() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        var pool = Executors.newFixedThreadPool(8);
+        var claims = new ArrayList<Future<DataAccess.SeatClaim>>();
+        for (int i = 0; i < 8; i++) {
+            var username = "player" + i;
+            claims.add(pool.submit(() -> gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, username)));
+        }
+        int winners = 0;
+        for (var claim : claims) {
+            if (claim.get() == DataAccess.SeatClaim.CLAIMED) {
+                winners++;
+            }
+        }
+        pool.shutdown();
+        assertEquals(1, winners);
+    }
+
+    @Test
+    public void testReleaseSeatSuccess() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        gameDAO.claimSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, "player1");
+        gameDAO.releaseSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, "player2");
+        assertEquals("player1", gameDAO.getGame(createdGame.gameID()).whiteUsername());
+        gameDAO.releaseSeat(createdGame.gameID(), ChessGame.TeamColor.WHITE, "player1");
+        assertNull(gameDAO.getGame(createdGame.gameID()).whiteUsername());
+    }
+
+    @Test
+    public void testDeleteGameSuccess() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        gameDAO.deleteGame(createdGame.gameID());
+        assertNull(gameDAO.getGame(createdGame.gameID()));
+    }
+
     @Test
     public void testGetGamesSuccess() throws Exception {
         gameDAO.createGame(testGame);
@@ -156,10 +247,135 @@ public class MySqlDatabaseTests {
         assertTrue(gameDAO.getGames().isEmpty());
     }
 
+    @Test
+    public void testListGamesPageSuccess() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            gameDAO.createGame(testGame);
+        }
+        var firstPage = gameDAO.listGames(new ListGamesRequest(null, null, null, null, null), 2);
+        assertEquals(2, firstPage.size());
+        var secondPage = gameDAO.listGames(new ListGamesRequest(firstPage.get(1).gameID(), null, null, null, null), 2);
+        assertEquals(1, secondPage.size());
+        assertEquals(ChessGame.GameState.IN_PLAY, secondPage.get(0).status());
+    }
+
+    @Test
+    public void testListGamesFilterFailure() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        gameDAO.updateGame(new GameData(createdGame.gameID(), "player1", "player2", createdGame.gameName(), createdGame.game()));
+        assertTrue(gameDAO.listGames(new ListGamesRequest(null, null, true, null, null), 10).isEmpty());
+        assertTrue(gameDAO.listGames(new ListGamesRequest(null, null, null, "player3", null), 10).isEmpty());
+    }
+
+    @Test
+    public void testGetGamesByPlayerSuccess() throws Exception {
+        GameData first = gameDAO.createGame(testGame);
+        GameData second = gameDAO.createGame(testGame);
+        gameDAO.createGame(testGame);
+        gameDAO.updateGame(new GameData(first.gameID(), "player1", null, first.gameName(), first.game()));
+        gameDAO.updateGame(new GameData(second.gameID(), null, "player1", second.gameName(), second.game()));
+        var games = gameDAO.getGamesByPlayer("player1", 10);
+        assertEquals(2, games.size());
+        assertEquals(second.gameID(), games.get(0).gameID());
+    }
+
+    @Test
+    public void testGetGamesByPlayerFailure() throws Exception {
+        gameDAO.createGame(testGame);
+        assertTrue(gameDAO.getGamesByPlayer("nobody", 10).isEmpty());
+    }
+
+    @Test
+    public void testGetGamesByStatusSuccess() throws Exception {
+        GameData createdGame = gameDAO.createGame(testGame);
+        gameDAO.createGame(testGame);
+        createdGame.game().gameOver();
+        gameDAO.updateGame(createdGame);
+        var finished = gameDAO.getGamesByStatus(ChessGame.GameState.GAME_OVER, 10);
+        assertEquals(1, finished.size());
+        assertEquals(createdGame.gameID(), finished.get(0).gameID());
+    }
+
+    @Test
+    public void testGetGamesActiveSinceFailure() throws Exception {
+        gameDAO.createGame(testGame);
+        assertTrue(gameDAO.getGamesActiveSince(Instant.now().plusSeconds(60), 10).isEmpty());
+    }
+
     @Test
     public void testClearAllGamesSuccess() throws Exception {
         gameDAO.createGame(testGame);
         gameDAO.clearAllGames();
         assertTrue(gameDAO.getGames().isEmpty());
     }
+
+    // BulkDAO Tests
+    @Test
+    public void testImportUsersAndGamesSuccess() throws Exception {
+        var users = new ArrayList<UserData>();
+        var games = new ArrayList<GameData>();
+        for (int i = 0; i < 250; i++) {
+            users.add(new UserData("user" + i, "hash", "user" + i + "@example.com"));
+            games.add(new GameData(0, "user" + i, null, "Game " + i, new ChessGame()));
+        }
+        var bulkDAO = new MySqlDataAccess.BulkDAO();
+        assertEquals(250, bulkDAO.importUsers(users, 100));
+        assertEquals(250, bulkDAO.importGames(games, 100));
+        assertNotNull(userDAO.getUser(new UserData("user249", null, null)));
+        assertEquals(250, gameDAO.getGames().size());
+        assertEquals("user7", gameDAO.getGamesByPlayer("user7", 10).get(0).whiteUsername());
+    }
+
+    @Test
+    public void testImportUsersDuplicateRollsBack() throws Exception {
+        userDAO.createUser(testUser);
+        var bulkDAO = new MySqlDataAccess.BulkDAO();
+        assertThrows(DataAccessException.class, () -> {
+            bulkDAO.importUsers(List.of(new UserData("fresh", "hash", null), testUser), 100);
+        });
+        assertNull(userDAO.getUser(new UserData("fresh", null, null)));
+    }
+
+    @Test
+    public void testImportAllFailedGameRollsBackUsers() throws Exception {
+        var bulkDAO = new MySqlDataAccess.BulkDAO();
+        // Longer than the gameName column, so the game insert fails after the users went in
+        var tooLong = new GameData(0, null, null, "x".repeat(300), new ChessGame());
+        assertThrows(DataAccessException.class, () -> {
+            bulkDAO.importAll(List.of(new UserData("fresh", "hash", null)), List.of(tooLong), 100);
+        });
+        assertNull(userDAO.getUser(new UserData("fresh", null, null)));
+        assertTrue(gameDAO.getGames().isEmpty());
+    }
+
+    @Test
+    public void testClearAllSuccess() throws Exception {
+        userDAO.createUser(testUser);
+        authDAO.createAuth(testUser);
+        gameDAO.createGame(testGame);
+        new MySqlDataAccess.BulkDAO().clearAll();
+        assertNull(userDAO.getUser(testUser));
+        assertTrue(gameDAO.getGames().isEmpty());
+    }
+
+    // Connection pool Tests
+    @Test
+    public void testRepeatedQueryReusesStatement() throws Exception {
+        userDAO.createUser(testUser);
+        userDAO.getUser(testUser);
+        var before = DatabaseManager.poolStats();
+        userDAO.getUser(testUser);
+        var after = DatabaseManager.poolStats();
+        assertEquals(before.statementHits() + 1, after.statementHits());
+        assertEquals(before.statementMisses(), after.statementMisses());
+    }
+
+    @Test
+    public void testConnectionsReturnToPool() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            userDAO.getUser(testUser);
+        }
+        var stats = DatabaseManager.poolStats();
+        assertEquals(stats.openConnections(), stats.idleConnections());
+    }
 }
@@ -0,0 +1,103 @@
+package dataaccess;
+
+import model.AuthData;
+import model.UserData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SignedTokenAuthDAOTests {
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private SignedTokenAuthDAO authDAO;
+    private UserData testUser;
+
+    @BeforeEach
+    public void setUp() {
+        authDAO = new SignedTokenAuthDAO(SECRET, Duration.ofHours(1), Clock.fixed(NOW, ZoneOffset.UTC));
+        testUser = new UserData("test.user", "password", "testuser@example.com");
+    }
+
+    @Test
+    public void testCreateAndVerifySuccess() throws Exception {
+        AuthData authData = authDAO.createAuth(testUser);
+        assertEquals(testUser.username(), authDAO.getAuth(authData.authToken()).username());
+        assertNotEquals(authData.authToken(), authDAO.createAuth(testUser).authToken());
+    }
+
+    @Test
+    public void testTamperedTokenRejected() throws Exception {
+        var token = authDAO.createAuth(testUser).authToken();
+        var forged = authDAO.createAuth(new UserData("admin", null, null)).authToken();
+        // Swap the username of one token into the other's signature
+        var tampered = forged.substring(0, forged.indexOf('.')) + token.substring(token.indexOf('.'));
+        assertNull(authDAO.getAuth(tampered));
+        assertNull(authDAO.getAuth("not-a-token"));
+        var otherKey = new SignedTokenAuthDAO(Duration.ofHours(1));
+        assertNull(otherKey.getAuth(token));
+    }
+
+    @Test
+    public void testExpiredTokenRejected() throws Exception {
+        var token = authDAO.createAuth(testUser).authToken();
+        var later = new SignedTokenAuthDAO(SECRET, Duration.ofHours(1), Clock.fixed(NOW.plus(Duration.ofHours(2)), ZoneOffset.UTC));
+        assertNull(later.getAuth(token));
+    }
+
+    @Test
+    public void testLogoutRevokesOnlyThatToken() throws Exception {
+        var first = authDAO.createAuth(testUser).authToken();
+        var second = authDAO.createAuth(testUser).authToken();
+        authDAO.deleteAuth(first);
+        assertNull(authDAO.getAuth(first));
+        assertNotNull(authDAO.getAuth(second));
+        assertThrows(DataAccessException.class, () -> authDAO.deleteAuth(first));
+    }
+
+    @Test
+    public void testClearAllInvalidatesTokens() throws Exception {
+        var token = authDAO.createAuth(testUser).authToken();
+        authDAO.deleteAuth(authDAO.createAuth(testUser).authToken());
+        authDAO.clearAllAuth();
+        assertNull(authDAO.getAuth(token));
+        assertEquals(0, authDAO.revokedCount());
+    }
+
+    @Test
+    public void testLogoutAndClearSurviveRestart() throws Exception {
+        var revocationDAO = new MemoryDataAccess.RevocationDAO();
+        var clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        var before = new SignedTokenAuthDAO(SECRET, Duration.ofHours(1), clock, revocationDAO);
+        var loggedOut = before.createAuth(testUser).authToken();
+        before.deleteAuth(loggedOut);
+
+        // A new DAO over the same store, as after a restart or on another server with the secret
+        var after = new SignedTokenAuthDAO(SECRET, Duration.ofHours(1), clock, revocationDAO);
+        after.load();
+        assertNull(after.getAuth(loggedOut));
+        var kept = before.createAuth(testUser).authToken();
+        assertNotNull(after.getAuth(kept));
+
+        after.clearAllAuth();
+        assertNull(after.getAuth(kept));
+        var fresh = after.createAuth(testUser).authToken();
+        var restarted = new SignedTokenAuthDAO(SECRET, Duration.ofHours(1), clock, revocationDAO);
+        restarted.load();
+        assertNull(restarted.getAuth(kept));
+        assertNotNull(restarted.getAuth(fresh));
+
+        // The other server hears about the clear on its next sweep
+        assertNotNull(before.getAuth(kept));
+        before.deleteExpiredAuth(AuthTokenSweeper.DEFAULT_BATCH_SIZE);
+        assertNull(before.getAuth(kept));
+        assertNotNull(before.getAuth(fresh));
+    }
+}
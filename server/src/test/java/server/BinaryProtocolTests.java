@@ -0,0 +1,96 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import model.MatchRequest;
+import org.junit.jupiter.api.Test;
+import websocket.BinaryProtocol;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryProtocolTests {
+
+    @Test
+    public void testCommandRoundTrip() {
+        var move = new ChessMove(new ChessPosition(7, 2), new ChessPosition(8, 1), ChessPiece.PieceType.KNIGHT);
+        var command = new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, "token.with.dots", 42, move);
+        var decoded = BinaryProtocol.decodeCommand(BinaryProtocol.encode(command));
+        assertEquals(command, decoded);
+        assertEquals(move, decoded.getMove());
+
+        var resume = new UserGameCommand(UserGameCommand.CommandType.RESUME, "token", 7, null).withLastSeq(99).withStreamId(-5)
+                .withCompression();
+        decoded = BinaryProtocol.decodeCommand(BinaryProtocol.encode(resume));
+        assertEquals(99, decoded.getLastSeq());
+        assertEquals(Long.valueOf(-5), decoded.getStreamId());
+        assertNull(BinaryProtocol.decodeCommand(BinaryProtocol.encode(command)).getStreamId());
+        assertTrue(decoded.wantsMoveUpdates() == resume.wantsMoveUpdates());
+        assertTrue(decoded.wantsCompression());
+        assertNull(decoded.getMove());
+    }
+
+    @Test
+    public void testLoadGameRoundTripIsSmall() throws Exception {
+        var game = new ChessGame();
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        var message = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, null);
+        message.setGame(game);
+        message.setSeq(12);
+        message.setStreamId(Long.MIN_VALUE);
+
+        var encoded = BinaryProtocol.encode(message);
+        assertTrue(encoded.remaining() * 10 < new Gson().toJson(message).length());
+        var decoded = BinaryProtocol.decodeMessage(encoded);
+        assertEquals(ServerMessage.ServerMessageType.LOAD_GAME, decoded.getServerMessageType());
+        assertEquals(Long.valueOf(12), decoded.getSeq());
+        assertEquals(Long.valueOf(Long.MIN_VALUE), decoded.getStreamId());
+        assertEquals(game.getBoard(), decoded.getGame().getBoard());
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getGame().getTeamTurn());
+        assertEquals(1, decoded.getGame().getPly());
+    }
+
+    @Test
+    public void testMoveAndErrorRoundTrip() throws Exception {
+        var game = new ChessGame();
+        var move = new ChessMove(new ChessPosition(2, 1), new ChessPosition(3, 1), null);
+        game.makeMove(move);
+        var decoded = BinaryProtocol.decodeMessage(BinaryProtocol.encode(ServerMessage.move(move, game)));
+        assertEquals(move, decoded.getMove());
+        assertEquals(Integer.valueOf(1), decoded.getPly());
+        assertEquals(ChessGame.GameState.IN_PLAY, decoded.getGameState());
+        assertNull(decoded.getWinner());
+
+        var error = new ServerMessage(ServerMessage.ServerMessageType.ERROR, null);
+        error.setErrorMessage("Error: invalid move ♞");
+        decoded = BinaryProtocol.decodeMessage(BinaryProtocol.encode(error));
+        assertEquals("Error: invalid move ♞", decoded.getErrorMessage());
+    }
+
+    @Test
+    public void testMatchRoundTrip() {
+        var command = new UserGameCommand(UserGameCommand.CommandType.MATCH, "token", null, null)
+                .withMatchRequest(new MatchRequest(600, null, 1725));
+        var decodedCommand = BinaryProtocol.decodeCommand(BinaryProtocol.encode(command));
+        assertEquals(UserGameCommand.CommandType.MATCH, decodedCommand.getCommandType());
+        assertEquals(new MatchRequest(600, null, 1725), decodedCommand.getMatchRequest());
+
+        var decoded = BinaryProtocol.decodeMessage(BinaryProtocol.encode(ServerMessage.match(31, ChessGame.TeamColor.BLACK)));
+        assertEquals(ServerMessage.ServerMessageType.MATCH, decoded.getServerMessageType());
+        assertEquals(Integer.valueOf(31), decoded.getGameID());
+        assertEquals(ChessGame.TeamColor.BLACK, decoded.getPlayerColor());
+    }
+
+    @Test
+    public void testMalformedFrameRejected() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeCommand(ByteBuffer.wrap(new byte[]{BinaryProtocol.VERSION, 0})));
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeCommand(ByteBuffer.wrap(new byte[]{9, 0, 0})));
+        assertThrows(IllegalArgumentException.class, () -> BinaryProtocol.decodeMessage(ByteBuffer.wrap(new byte[]{BinaryProtocol.VERSION, 42, 0})));
+    }
+}
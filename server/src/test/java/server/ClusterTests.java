@@ -0,0 +1,184 @@
+package server;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import com.google.gson.Gson;
+import dataaccess.MemoryDataAccess;
+import model.GameData;
+import model.UserData;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.Test;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClusterTests {
+    private static final Gson GSON = new Gson();
+
+    // A client socket that records what the server sends it
+    private static Session fakeSession(List<ServerMessage> received) {
+        var remote = (RemoteEndpoint) Proxy.newProxyInstance(ClusterTests.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendString")) {
+                        received.add(GSON.fromJson((String) args[0], ServerMessage.class));
+                        if (args.length == 2) {
+                            ((WriteCallback) args[1]).writeSuccess();
+                        }
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(ClusterTests.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemote" -> remote;
+                    case "isOpen" -> true;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private static long count(List<ServerMessage> received, ServerMessage.ServerMessageType type) {
+        return received.stream().filter(message -> message.getServerMessageType() == type).count();
+    }
+
+    private static ServerMessage last(List<ServerMessage> received, ServerMessage.ServerMessageType type) {
+        return received.stream().filter(message -> message.getServerMessageType() == type)
+                .reduce((first, second) -> second).orElseThrow();
+    }
+
+    @Test
+    public void testClientOnOtherNodeFollowsGame() throws Exception {
+        // Two nodes over shared storage and one bus
+        var authDAO = new MemoryDataAccess.AuthDAO();
+        var userDAO = new MemoryDataAccess.UserDAO();
+        var gameDAO = new MemoryDataAccess.GameDAO();
+        var bus = new LoopbackMessageBus();
+        var nodes = List.of("a", "b");
+        var base = new Server(authDAO, userDAO, gameDAO);
+        var nodeA = base.inCluster("a", nodes, bus);
+        var nodeB = base.inCluster("b", nodes, bus);
+
+        // A game owned by node a
+        var ring = new HashRing(nodes, HashRing.DEFAULT_VIRTUAL_NODES);
+        GameData game;
+        do {
+            game = gameDAO.createGame(new GameData(0, null, null, "game", null));
+        } while (!ring.ownerOf(game.gameID()).equals("a"));
+        int gameID = game.gameID();
+        gameDAO.claimSeat(gameID, ChessGame.TeamColor.WHITE, "alice");
+        var alice = authDAO.createAuth(new UserData("alice", "pw", "a@mail"));
+        var bob = authDAO.createAuth(new UserData("bob", "pw", "b@mail"));
+
+        var aliceReceived = new CopyOnWriteArrayList<ServerMessage>();
+        var bobReceived = new CopyOnWriteArrayList<ServerMessage>();
+        var aliceSession = fakeSession(aliceReceived);
+        var bobSession = fakeSession(bobReceived);
+
+        // Bob watches through node b; his CONNECT is answered by node a
+        nodeB.webSocketHandler().onMessage(bobSession,
+                GSON.toJson(new UserGameCommand(UserGameCommand.CommandType.CONNECT, bob.authToken(), gameID, null)));
+        await(() -> count(bobReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 1);
+
+        // Alice plays on node a; her broadcasts reach Bob through the game's topic
+        nodeA.webSocketHandler().onMessage(aliceSession,
+                GSON.toJson(new UserGameCommand(UserGameCommand.CommandType.CONNECT, alice.authToken(), gameID, null)));
+        await(() -> count(bobReceived, ServerMessage.ServerMessageType.NOTIFICATION) == 1);
+        // The notification goes out before Alice's own LOAD_GAME, so wait for that too
+        await(() -> count(aliceReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 1);
+        assertEquals(0, count(aliceReceived, ServerMessage.ServerMessageType.NOTIFICATION));
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        nodeA.webSocketHandler().onMessage(aliceSession,
+                GSON.toJson(new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, alice.authToken(), gameID, move)));
+        await(() -> count(bobReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 2);
+        await(() -> count(bobReceived, ServerMessage.ServerMessageType.NOTIFICATION) == 2);
+        var board = bobReceived.stream()
+                .filter(message -> message.getServerMessageType() == ServerMessage.ServerMessageType.LOAD_GAME)
+                .reduce((first, second) -> second).orElseThrow().getGame();
+        assertNotNull(board.getBoard().getPiece(new ChessPosition(4, 5)));
+        assertEquals(ChessGame.TeamColor.BLACK, gameDAO.getGame(gameID).game().getTeamTurn());
+    }
+
+    @Test
+    public void testMoveUpdatesAndResyncCarryThePly() throws Exception {
+        // One node on its own: a player who asked for MOVE messages and an observer who did not
+        var authDAO = new MemoryDataAccess.AuthDAO();
+        var gameDAO = new MemoryDataAccess.GameDAO();
+        var handler = new Server(authDAO, new MemoryDataAccess.UserDAO(), gameDAO).webSocketHandler();
+        int gameID = gameDAO.createGame(new GameData(0, "alice", "bob", "game", null)).gameID();
+        var alice = authDAO.createAuth(new UserData("alice", "pw", "a@mail"));
+        var carol = authDAO.createAuth(new UserData("carol", "pw", "c@mail"));
+
+        var aliceReceived = new CopyOnWriteArrayList<ServerMessage>();
+        var carolReceived = new CopyOnWriteArrayList<ServerMessage>();
+        var aliceSession = fakeSession(aliceReceived);
+        var carolSession = fakeSession(carolReceived);
+        handler.onMessage(aliceSession, GSON.toJson(
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, alice.authToken(), gameID, null).withMoveUpdates()));
+        await(() -> count(aliceReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 1);
+        handler.onMessage(carolSession, GSON.toJson(
+                new UserGameCommand(UserGameCommand.CommandType.CONNECT, carol.authToken(), gameID, null)));
+        await(() -> count(carolReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 1);
+
+        var move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        handler.onMessage(aliceSession, GSON.toJson(
+                new UserGameCommand(UserGameCommand.CommandType.MAKE_MOVE, alice.authToken(), gameID, move)));
+        await(() -> count(aliceReceived, ServerMessage.ServerMessageType.MOVE) == 1);
+        await(() -> count(carolReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 2);
+        var moveMessage = last(aliceReceived, ServerMessage.ServerMessageType.MOVE);
+        assertEquals(move, moveMessage.getMove());
+        assertEquals(Integer.valueOf(1), moveMessage.getPly());
+        assertEquals(ChessGame.GameState.IN_PLAY, moveMessage.getGameState());
+        // Alice applies the MOVE instead of getting the board again
+        assertEquals(1, count(aliceReceived, ServerMessage.ServerMessageType.LOAD_GAME));
+        assertEquals(1, last(carolReceived, ServerMessage.ServerMessageType.LOAD_GAME).getGame().getPly());
+
+        // A client that missed a move asks for the whole game, which comes back at the same ply
+        handler.onMessage(carolSession, GSON.toJson(
+                new UserGameCommand(UserGameCommand.CommandType.RESYNC, carol.authToken(), gameID, null)));
+        await(() -> count(carolReceived, ServerMessage.ServerMessageType.LOAD_GAME) == 3);
+        var resynced = last(carolReceived, ServerMessage.ServerMessageType.LOAD_GAME);
+        assertEquals(1, resynced.getGame().getPly());
+        assertEquals(ChessGame.TeamColor.BLACK, resynced.getGame().getTeamTurn());
+        // Numbered after the move's NOTIFICATION, the last event of the game so far
+        assertEquals(moveMessage.getSeq() + 1, (long) resynced.getSeq());
+        assertEquals(1, gameDAO.getGame(gameID).game().getPly());
+    }
+
+    @Test
+    public void testRingSpreadsGamesAndMovesFewWhenANodeJoins() {
+        var two = new HashRing(List.of("a", "b"), HashRing.DEFAULT_VIRTUAL_NODES);
+        var three = new HashRing(List.of("a", "b", "c"), HashRing.DEFAULT_VIRTUAL_NODES);
+        var owners = new ArrayList<String>();
+        int moved = 0;
+        for (int gameID = 1; gameID <= 3000; gameID++) {
+            owners.add(two.ownerOf(gameID));
+            var after = three.ownerOf(gameID);
+            if (!after.equals(two.ownerOf(gameID))) {
+                assertEquals("c", after);
+                moved++;
+            }
+        }
+        long onA = owners.stream().filter("a"::equals).count();
+        assertTrue(onA > 1200 && onA < 1800, "uneven split: " + onA);
+        assertTrue(moved > 600 && moved < 1400, "moved: " + moved);
+    }
+}
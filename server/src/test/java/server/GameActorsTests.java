@@ -0,0 +1,83 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameActorsTests {
+
+    @Test
+    public void testCommandsForOneGameRunInOrderOneAtATime() throws Exception {
+        var actors = new GameActors(Executors.newVirtualThreadPerTaskExecutor());
+        var order = Collections.synchronizedList(new ArrayList<Integer>());
+        var running = new AtomicInteger();
+        var overlaps = new AtomicInteger();
+        var done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int command = i;
+            actors.submit(7, () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                order.add(command);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void testDifferentGamesRunInParallel() throws Exception {
+        var actors = new GameActors(Executors.newVirtualThreadPerTaskExecutor());
+        var bothStarted = new CountDownLatch(2);
+        var finished = new CountDownLatch(2);
+        for (int gameID = 1; gameID <= 2; gameID++) {
+            actors.submit(gameID, () -> {
+                bothStarted.countDown();
+                try {
+                    // Only returns if the other game's command is running at the same time
+                    if (bothStarted.await(5, TimeUnit.SECONDS)) {
+                        finished.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testIdleMailboxesAreDropped() throws Exception {
+        var actors = new GameActors(Executors.newVirtualThreadPerTaskExecutor());
+        var seen = ConcurrentHashMap.<Integer>newKeySet();
+        var done = new CountDownLatch(50);
+        for (int gameID = 0; gameID < 50; gameID++) {
+            int id = gameID;
+            actors.submit(gameID, () -> {
+                seen.add(id);
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && actors.activeGames() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(50, seen.size());
+        assertEquals(0, actors.activeGames());
+    }
+}
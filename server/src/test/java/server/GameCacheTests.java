@@ -0,0 +1,148 @@
+package server;
+
+import chess.ChessGame;
+import model.GameData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameCacheTests {
+    private final List<Integer> evicted = new ArrayList<Integer>();
+    private final List<Integer> flushed = new ArrayList<Integer>();
+
+    private static GameData game(int gameID) {
+        return new GameData(gameID, "white", "black", "game " + gameID, new ChessGame());
+    }
+
+    private GameCache cache(int maxGames, Duration idleTimeout, Set<Integer> inUse) {
+        return new GameCache(maxGames, idleTimeout, inUse::contains, (gameID, gameData, dirty) -> {
+            evicted.add(gameID);
+            if (dirty) {
+                flushed.add(gameID);
+            }
+        });
+    }
+
+    @Test
+    public void testLoadsOnMissAndCountsHits() throws Exception {
+        var cache = cache(10, Duration.ofHours(1), Set.of());
+        var loads = new ArrayList<Integer>();
+        for (int i = 0; i < 3; i++) {
+            cache.load(1, gameID -> {
+                loads.add(gameID);
+                return game(gameID);
+            });
+        }
+        assertEquals(List.of(1), loads);
+        var stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    public void testFullCacheEvictsLeastRecentlyUsedIdleGame() {
+        // Game 1 is oldest but has players connected, so game 2 goes instead
+        var cache = cache(2, Duration.ofHours(1), Set.of(1));
+        cache.put(game(1));
+        cache.put(game(2));
+        cache.put(game(3));
+        assertEquals(List.of(2), evicted);
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertEquals(1, cache.stats().sizeEvictions());
+    }
+
+    @Test
+    public void testIdleSweepSkipsGamesInUse() {
+        var cache = cache(10, Duration.ZERO, Set.of(1));
+        cache.put(game(1));
+        cache.put(game(2));
+        assertEquals(1, cache.evictIdle());
+        assertEquals(List.of(2), evicted);
+        assertNotNull(cache.get(1));
+    }
+
+    @Test
+    public void testFailedWriteIsFlushedOnEviction() {
+        var cache = cache(10, Duration.ZERO, Set.of());
+        assertThrows(IllegalStateException.class, () -> cache.write(game(1), gameData -> {
+            throw new IllegalStateException("storage down");
+        }));
+        assertDoesNotThrow(() -> cache.write(game(2), gameData -> {
+        }));
+        cache.evictIdle();
+        assertEquals(List.of(1), flushed);
+        assertEquals(1, cache.stats().dirtyEvictions());
+    }
+
+    @Test
+    public void testNewerWriteSupersedesPendingFlush() throws Exception {
+        var cache = cache(10, Duration.ZERO, Set.of());
+        var stale = game(1);
+        assertThrows(IllegalStateException.class, () -> cache.write(stale, gameData -> {
+            throw new IllegalStateException("storage down");
+        }));
+        cache.evictIdle();
+        // A command that was already running writes the game again before the flush gets its turn
+        var written = new ArrayList<GameData>();
+        cache.write(game(1), written::add);
+        assertFalse(cache.claimFlush(1, stale));
+        assertEquals(1, cache.stats().supersededFlushes());
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    public void testReloadBeforeFlushKeepsEvictedCopy() throws Exception {
+        var cache = cache(10, Duration.ZERO, Set.of());
+        var unsaved = new GameData(1, "white", "black", "unsaved", new ChessGame());
+        assertThrows(IllegalStateException.class, () -> cache.write(unsaved, gameData -> {
+            throw new IllegalStateException("storage down");
+        }));
+        cache.evictIdle();
+        // Storage still has the older copy; the cache serves the evicted one and keeps it dirty
+        assertEquals("unsaved", cache.load(1, gameID -> game(gameID)).gameName());
+        assertFalse(cache.claimFlush(1, unsaved));
+        flushed.clear();
+        cache.evictIdle();
+        assertEquals(List.of(1), flushed);
+        assertTrue(cache.claimFlush(1, unsaved));
+    }
+
+    @Test
+    public void testSeatChangeWhileEvictedSurvivesReload() throws Exception {
+        var cache = cache(10, Duration.ZERO, Set.of());
+        var game = new ChessGame();
+        var unsaved = new GameData(1, "white", null, "game 1", game);
+        assertThrows(IllegalStateException.class, () -> cache.write(unsaved, gameData -> {
+            throw new IllegalStateException("storage down");
+        }));
+        cache.evictIdle();
+        // A seat claim that reached storage after the eviction finds nothing cached to update
+        cache.update(1, gameData -> new GameData(1, gameData.whiteUsername(), "black", gameData.gameName(), gameData.game()));
+        var reloaded = cache.load(1, gameID -> new GameData(gameID, "white", "black", "game 1", new ChessGame()));
+        assertEquals("black", reloaded.blackUsername());
+        assertSame(game, reloaded.game());
+        // The merged copy is still flushed when evicted again
+        flushed.clear();
+        cache.evictIdle();
+        assertEquals(List.of(1), flushed);
+        assertTrue(cache.claimFlush(1, reloaded));
+    }
+
+    @Test
+    public void testUpdateOnlyTouchesCachedGames() {
+        var cache = cache(10, Duration.ofHours(1), Set.of());
+        cache.put(new GameData(1, null, "black", "game 1", new ChessGame()));
+        cache.update(1, gameData -> new GameData(1, "white", gameData.blackUsername(), gameData.gameName(), gameData.game()));
+        cache.update(2, gameData -> {
+            throw new AssertionError("game 2 is not cached");
+        });
+        assertEquals("white", cache.get(1).whiteUsername());
+        assertNull(cache.get(2));
+    }
+}
@@ -0,0 +1,61 @@
+package server;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import websocket.messages.ServerMessage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventsTests {
+
+    @Test
+    public void testEventsAreNumberedInOrder() {
+        var events = new GameEvents(GameEvents.DEFAULT_REPLAY_LIMIT);
+        for (int i = 1; i <= 3; i++) {
+            var encoded = events.record(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "event " + i));
+            var decoded = new Gson().fromJson(encoded, ServerMessage.class);
+            assertEquals(Long.valueOf(i), decoded.getSeq());
+            assertEquals(Long.valueOf(events.streamId()), decoded.getStreamId());
+        }
+        assertEquals(3, events.lastSeq());
+    }
+
+    @Test
+    public void testSinceReturnsOnlyMissedEvents() {
+        var events = new GameEvents(GameEvents.DEFAULT_REPLAY_LIMIT);
+        for (int i = 1; i <= 5; i++) {
+            events.record(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "event " + i));
+        }
+        var missed = events.since(events.streamId(), 3);
+        assertEquals(2, missed.size());
+        assertEquals("event 4", new Gson().fromJson(missed.get(0), ServerMessage.class).getMessage());
+        assertEquals("event 5", new Gson().fromJson(missed.get(1), ServerMessage.class).getMessage());
+        assertTrue(events.since(events.streamId(), 5).isEmpty());
+    }
+
+    @Test
+    public void testSinceNeedsReloadWhenEventsWereDropped() {
+        var events = new GameEvents(4);
+        for (int i = 1; i <= 10; i++) {
+            events.record(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "event " + i));
+        }
+        assertNull(events.since(events.streamId(), 2));
+        assertNull(events.since(events.streamId(), 11));
+        assertEquals(4, events.since(events.streamId(), 6).size());
+    }
+
+    @Test
+    public void testSinceNeedsReloadFromAnotherStream() {
+        var before = new GameEvents(GameEvents.DEFAULT_REPLAY_LIMIT);
+        // The same game after a restart numbers its events from 1 again
+        var after = new GameEvents(GameEvents.DEFAULT_REPLAY_LIMIT);
+        for (int i = 1; i <= 5; i++) {
+            before.record(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "old " + i));
+            after.record(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "new " + i));
+        }
+        assertNotEquals(before.streamId(), after.streamId());
+        assertNull(after.since(before.streamId(), 3));
+        assertNull(after.since(null, 3));
+        assertEquals(2, after.since(after.streamId(), 3).size());
+    }
+}
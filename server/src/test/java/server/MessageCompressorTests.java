@@ -0,0 +1,61 @@
+package server;
+
+import chess.ChessGame;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import websocket.BinaryProtocol;
+import websocket.FrameCompression;
+import websocket.messages.ServerMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageCompressorTests {
+
+    private static ByteBuffer loadGameJson() {
+        var message = new ServerMessage(ServerMessage.ServerMessageType.LOAD_GAME, null);
+        message.setGame(new ChessGame());
+        return StandardCharsets.UTF_8.encode(new Gson().toJson(message));
+    }
+
+    @Test
+    public void testLargeMessageCompressesAndRoundTrips() {
+        var compressor = new MessageCompressor(MessageCompressor.DEFAULT_THRESHOLD);
+        var payload = loadGameJson();
+        int size = payload.remaining();
+
+        var frame = compressor.compress(payload);
+        assertNotNull(frame);
+        assertTrue(FrameCompression.isCompressed(frame));
+        // The repeated piece JSON shrinks to a fraction of its size
+        assertTrue(frame.remaining() * 5 < size, "compressed to " + frame.remaining());
+        assertEquals(size, payload.remaining());
+        assertEquals(payload, FrameCompression.decompress(frame));
+
+        var stats = compressor.stats();
+        assertEquals(1, stats.compressed());
+        assertEquals(size, stats.bytesIn());
+        assertEquals(frame.remaining(), stats.bytesOut());
+        assertTrue(stats.ratio() < 0.2);
+    }
+
+    @Test
+    public void testSmallMessagesSkipped() {
+        var compressor = new MessageCompressor(MessageCompressor.DEFAULT_THRESHOLD);
+        var notification = new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "alice joined the game as WHITE");
+        assertNull(compressor.compress(StandardCharsets.UTF_8.encode(new Gson().toJson(notification))));
+        assertNull(compressor.compress(BinaryProtocol.encode(notification)));
+        assertEquals(2, compressor.stats().skipped());
+        assertEquals(0, compressor.stats().compressed());
+    }
+
+    @Test
+    public void testCompressedFrameNeverMistakenForBinaryProtocol() {
+        var frame = BinaryProtocol.encode(new ServerMessage(ServerMessage.ServerMessageType.NOTIFICATION, "hi"));
+        assertFalse(FrameCompression.isCompressed(frame));
+        assertThrows(IllegalArgumentException.class,
+                () -> FrameCompression.decompress(ByteBuffer.wrap(new byte[]{FrameCompression.DEFLATED, 1, 2, 3})));
+    }
+}
@@ -0,0 +1,87 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutboundQueuesTests {
+    private final List<String> sent = new ArrayList<String>();
+    private final List<WriteCallback> pending = new ArrayList<WriteCallback>();
+    private int closeCode;
+    private Session session;
+
+    @BeforeEach
+    public void setUp() {
+        // A session whose writes complete only when the test says so
+        var remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (args[0] instanceof ByteBuffer bytes) {
+                        // Writing drains the buffer, as Jetty's does
+                        sent.add("bytes:" + bytes.remaining());
+                        bytes.position(bytes.limit());
+                    } else {
+                        sent.add((String) args[0]);
+                    }
+                    pending.add((WriteCallback) args[1]);
+                    return null;
+                });
+        session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemote" -> remote;
+                    case "isOpen" -> closeCode == 0;
+                    case "close" -> {
+                        closeCode = (Integer) args[0];
+                        yield null;
+                    }
+                    case "hashCode" -> 1;
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    @Test
+    public void testOneWriteInFlightInOrder() {
+        var outbound = new OutboundQueues(10);
+        outbound.send(session, "a");
+        outbound.send(session, "b");
+        outbound.send(session, "c");
+        assertEquals(List.of("a"), sent);
+
+        pending.get(0).writeSuccess();
+        pending.get(1).writeSuccess();
+        assertEquals(List.of("a", "b", "c"), sent);
+    }
+
+    @Test
+    public void testSlowSessionClosedOnOverflow() {
+        var outbound = new OutboundQueues(2);
+        for (int i = 0; i < 4; i++) {
+            outbound.send(session, "message " + i);
+        }
+        assertEquals(1013, closeCode);
+        assertEquals(1, outbound.overflowedSessions());
+        assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void testBinaryFramesShareOneBuffer() {
+        var outbound = new OutboundQueues(10);
+        var frame = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        outbound.send(session, frame);
+        outbound.send(session, "text");
+        outbound.send(session, frame);
+        pending.get(0).writeSuccess();
+        pending.get(1).writeSuccess();
+        assertEquals(List.of("bytes:3", "text", "bytes:3"), sent);
+        assertEquals(3, frame.remaining());
+    }
+}
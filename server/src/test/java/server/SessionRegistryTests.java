@@ -0,0 +1,71 @@
+package server;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionRegistryTests {
+
+    private static Session fakeSession(AtomicBoolean disconnected) {
+        return (Session) Proxy.newProxyInstance(SessionRegistryTests.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "disconnect" -> {
+                        disconnected.set(true);
+                        yield null;
+                    }
+                    case "isOpen" -> !disconnected.get();
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    @Test
+    public void testRemoveFindsGameWithoutSearching() {
+        var registry = new SessionRegistry();
+        var first = fakeSession(new AtomicBoolean());
+        var second = fakeSession(new AtomicBoolean());
+        registry.add(1, first);
+        registry.add(2, second);
+        assertEquals(Map.of(1, 1, 2, 1), registry.liveSessionsPerGame());
+
+        assertEquals(Integer.valueOf(1), registry.remove(first));
+        assertNull(registry.remove(first));
+        assertTrue(registry.sessions(1).isEmpty());
+        assertEquals(Map.of(2, 1), registry.liveSessionsPerGame());
+        assertEquals(1, registry.totalSessions());
+        assertEquals(new SessionRegistry.Stats(1, 0, Map.of(2, 1)), registry.stats());
+    }
+
+    @Test
+    public void testAddingToAnotherGameMovesTheSession() {
+        var registry = new SessionRegistry();
+        var session = fakeSession(new AtomicBoolean());
+        registry.add(1, session);
+        registry.add(2, session);
+        assertEquals(0, registry.liveSessions(1));
+        assertEquals(1, registry.liveSessions(2));
+    }
+
+    @Test
+    public void testQuietSessionsAreReaped() {
+        var registry = new SessionRegistry();
+        var disconnected = new AtomicBoolean();
+        var session = fakeSession(disconnected);
+        registry.add(1, session);
+
+        assertEquals(0, registry.reapIdle(Duration.ofHours(1)));
+        assertFalse(disconnected.get());
+
+        assertEquals(1, registry.reapIdle(Duration.ZERO));
+        assertTrue(disconnected.get());
+        assertEquals(0, registry.totalSessions());
+        assertEquals(1, registry.reapedSessions());
+    }
+}
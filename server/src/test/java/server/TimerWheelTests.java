@@ -0,0 +1,163 @@
+package server;
+
+import chess.ChessClock;
+import chess.ChessGame;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTests {
+
+    // A clock the test moves by hand
+    private static class ManualClock extends Clock {
+        long millis = 1_000_000;
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    @Test
+    public void testTimersFireAtTheirDeadlineInOrder() {
+        var clock = new ManualClock();
+        var wheel = new TimerWheel(Duration.ofMillis(100), clock);
+        var fired = new ArrayList<String>();
+        long start = clock.millis();
+        wheel.schedule(start + 250, () -> fired.add("short"));
+        wheel.schedule(start + 10_000, () -> fired.add("medium"));
+        // Well past level 0 and level 1, so it cascades twice before firing
+        wheel.schedule(start + Duration.ofMinutes(30).toMillis(), () -> fired.add("long"));
+        assertEquals(3, wheel.pending());
+
+        clock.millis = start + 200;
+        wheel.advance();
+        assertTrue(fired.isEmpty());
+        clock.millis = start + 300;
+        wheel.advance();
+        assertEquals(List.of("short"), fired);
+
+        clock.millis = start + 9_999;
+        wheel.advance();
+        assertEquals(List.of("short"), fired);
+        clock.millis = start + 10_000;
+        wheel.advance();
+        assertEquals(List.of("short", "medium"), fired);
+
+        clock.millis = start + Duration.ofMinutes(30).toMillis() - 100;
+        wheel.advance();
+        assertEquals(2, fired.size());
+        clock.millis = start + Duration.ofMinutes(30).toMillis();
+        wheel.advance();
+        assertEquals(List.of("short", "medium", "long"), fired);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void testCancelledTimerDoesNotFire() {
+        var clock = new ManualClock();
+        var wheel = new TimerWheel(Duration.ofMillis(100), clock);
+        var fired = new ArrayList<String>();
+        var timeout = wheel.schedule(clock.millis() + 5_000, () -> fired.add("cancelled"));
+        wheel.schedule(clock.millis() + 5_000, () -> fired.add("kept"));
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+
+        clock.millis += 6_000;
+        wheel.advance();
+        assertEquals(List.of("kept"), fired);
+        assertEquals(0, wheel.pending());
+    }
+
+    @Test
+    public void testManyTimersAcrossLevels() {
+        var clock = new ManualClock();
+        var wheel = new TimerWheel(Duration.ofMillis(100), clock);
+        long start = clock.millis();
+        var firedAt = new long[20_000];
+        for (int i = 0; i < firedAt.length; i++) {
+            int timer = i;
+            // Deadlines from one second out to over five hours
+            wheel.schedule(start + (i + 1) * 1_000L, () -> firedAt[timer] = clock.millis());
+        }
+        for (long t = start; t <= start + (firedAt.length + 1) * 1_000L; t += 700) {
+            clock.millis = t;
+            wheel.advance();
+        }
+        assertEquals(0, wheel.pending());
+        for (int i = 0; i < firedAt.length; i++) {
+            long deadline = start + (i + 1) * 1_000L;
+            assertTrue(firedAt[i] >= deadline && firedAt[i] < deadline + 700, "timer " + i + " fired at " + firedAt[i]);
+        }
+    }
+
+    @Test
+    public void testDeadlinesOnSlotBoundaries() {
+        var clock = new ManualClock();
+        var wheel = new TimerWheel(Duration.ofMillis(100), clock);
+        long start = clock.millis();
+        // Ticks just before, on and after the edges of level 1 and level 2 slots
+        long[] ticks = {1, 63, 64, 65, 127, 128, 191, 4095, 4096, 4097, 4159, 8191, 262_143, 262_144};
+        var firedAt = new long[ticks.length];
+        for (int i = 0; i < ticks.length; i++) {
+            int timer = i;
+            wheel.schedule(start + ticks[i] * 100, () -> firedAt[timer] = clock.millis());
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (long tick = 1; tick <= 262_144; tick++) {
+                clock.millis = start + tick * 100;
+                wheel.advance();
+            }
+        });
+        assertEquals(0, wheel.pending());
+        for (int i = 0; i < ticks.length; i++) {
+            assertEquals(start + ticks[i] * 100, firedAt[i], "timer at tick " + ticks[i]);
+        }
+
+        // Scheduled partway through a slot, landing on the last tick of a later one
+        wheel.schedule(clock.millis() + 63 * 100, () -> firedAt[0] = clock.millis());
+        long deadline = clock.millis() + 63 * 100;
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            clock.millis = deadline;
+            wheel.advance();
+        });
+        assertEquals(deadline, firedAt[0]);
+    }
+
+    @Test
+    public void testChessClockChargesMoverAndAddsIncrement() {
+        var chessClock = new ChessClock(60_000, 2_000);
+        assertFalse(chessClock.isRunning());
+        assertEquals(Long.MAX_VALUE, chessClock.flagAt(ChessGame.TeamColor.WHITE));
+
+        // White's first move starts the clock without costing White anything
+        chessClock.punch(ChessGame.TeamColor.WHITE, 1_000);
+        assertEquals(62_000, chessClock.remainingMillis(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.BLACK, 1_000));
+        assertEquals(61_000, chessClock.flagAt(ChessGame.TeamColor.BLACK));
+
+        // Black thinks for ten seconds
+        chessClock.punch(ChessGame.TeamColor.BLACK, 11_000);
+        assertEquals(52_000, chessClock.remainingMillis(ChessGame.TeamColor.BLACK, ChessGame.TeamColor.WHITE, 11_000));
+        assertFalse(chessClock.hasFlagged(ChessGame.TeamColor.WHITE, 72_999));
+        assertTrue(chessClock.hasFlagged(ChessGame.TeamColor.WHITE, 73_000));
+
+        chessClock.stop(ChessGame.TeamColor.WHITE, 80_000);
+        assertFalse(chessClock.isRunning());
+        assertEquals(0, chessClock.remainingMillis(ChessGame.TeamColor.WHITE, ChessGame.TeamColor.WHITE, 90_000));
+    }
+}
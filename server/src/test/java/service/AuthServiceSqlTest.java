@@ -9,6 +9,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import model.ResponseException;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AuthServiceSqlTest {
@@ -182,4 +185,67 @@ public class AuthServiceSqlTest {
         var gamesAfterFailedClear = gameService.listGamesRequest().games();
         assertFalse(gamesAfterFailedClear.isEmpty(), "Games should still exist after failed DB clear");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testVerifyAuthTokenAsyncSuccess() throws Exception {
+        // Arrange
+        RegisterResponse registered = authService.registerRequest(new UserData("testUser", "password123", "test@example.com"));
+
+        // Act
+        String username = authService.verifyAuthTokenAsync(registered.authToken).join().username();
+
+        // Assert
+        assertEquals("testUser", username);
+    }
+
+    @Test
+    public void testVerifyAuthTokenAsyncInvalidToken() {
+        // Act & Assert
+        CompletionException thrown = assertThrows(CompletionException.class, () -> {
+            authService.verifyAuthTokenAsync("not-a-token").join();
+        });
+
+        assertEquals(401, ((ResponseException) thrown.getCause()).statusCode());
+    }
+
+    @Test
+    public void testLoginRehashesWhenCostChanges() throws Exception {
+        // Arrange: register with cost 4, then log in through a service configured for cost 5
+        var cheapService = new AuthService(authDAO, userDAO, new dataaccess.DataAccess.BulkDAO(authDAO, userDAO, gameDAO),
+                new PasswordHasher(4, 1, 4));
+        cheapService.registerRequest(new UserData("testUser", "password123", "test@example.com"));
+        var upgradedService = new AuthService(authDAO, userDAO, new dataaccess.DataAccess.BulkDAO(authDAO, userDAO, gameDAO),
+                new PasswordHasher(5, 1, 4));
+
+        // Act
+        upgradedService.loginRequest(new UserData("testUser", "password123", null));
+
+        // Assert: the rehash runs in the background, so poll for it
+        String stored = null;
+        for (int i = 0; i < 50; i++) {
+            stored = userDAO.getUser(new UserData("testUser", null, null)).password();
+            if (stored.startsWith("$2a$05$")) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertTrue(stored.startsWith("$2a$05$"));
+        assertNotNull(upgradedService.loginRequest(new UserData("testUser", "password123", null)));
+    }
+
+    @Test
+    public void testHasherRejectsWhenSaturated() throws Exception {
+        // Arrange: one worker, blocked, and a queue of one, already full
+        var hasher = new PasswordHasher(4, 1, 1);
+        var release = new CountDownLatch(1);
+        hasher.rehashLater("a", hash -> release.await());
+        hasher.rehashLater("b", hash -> { });
+        Thread.sleep(200);
+
+        // Act & Assert
+        ResponseException thrown = assertThrows(ResponseException.class, () -> hasher.hash("password123"));
+        assertEquals(503, thrown.statusCode());
+        assertEquals(1, hasher.stats().rejected());
+        release.countDown();
+    }
+}
@@ -1,15 +1,21 @@
 package service;
 
+import chess.ChessGame;
 import dataaccess.DataAccessException;
 import dataaccess.MySqlDataAccess;
 import model.GameData;
 import model.JoinGameRequest;
+import model.ListGamesRequest;
 import model.ListGamesResponse;
 import model.NewGameResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import model.ResponseException;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class GameServiceSqlTest {
@@ -90,6 +96,55 @@ public class GameServiceSqlTest {
         assertTrue(response.games().isEmpty());  // No games should be listed
     }
 
+    @Test
+    public void testListGamesRequestNextCursor() throws ResponseException {
+        // Arrange
+        GameData gameData = new GameData(0, null, null, "ChessGame", null);
+        gameService.newGameRequest(gameData);
+        gameService.newGameRequest(gameData);
+
+        // Act
+        ListGamesResponse response = gameService.listGamesRequest(new ListGamesRequest(null, 1, null, null, null));
+
+        // Assert
+        assertEquals(1, response.games().size());
+        assertEquals(response.games().get(0).gameID(), (int) response.nextCursor());
+    }
+
+    @Test
+    public void testListGamesRequestBadLimit() {
+        // Act & Assert
+        ResponseException thrown = assertThrows(ResponseException.class, () -> {
+            gameService.listGamesRequest(new ListGamesRequest(null, 0, null, null, null));
+        });
+
+        assertEquals(400, thrown.statusCode());
+    }
+
+    @Test
+    public void testGetPlayerGamesSuccess() throws ResponseException {
+        // Arrange
+        var newGame = gameService.newGameRequest(new GameData(0, null, null, "ChessGame", null));
+        gameService.joinGame(new JoinGameRequest(Integer.toString(newGame.gameID()), "BLACK"), "player1");
+
+        // Act
+        ListGamesResponse response = gameService.getPlayerGames("player1", 10);
+
+        // Assert
+        assertEquals(1, response.games().size());
+        assertEquals("player1", response.games().get(0).blackUsername());
+    }
+
+    @Test
+    public void testGetGamesByStatusBadLimit() {
+        // Act & Assert
+        ResponseException thrown = assertThrows(ResponseException.class, () -> {
+            gameService.getGamesByStatus(ChessGame.GameState.IN_PLAY, GameService.MAX_PAGE_SIZE + 1);
+        });
+
+        assertEquals(400, thrown.statusCode());
+    }
+
     @Test
     public void testJoinGameSuccess() throws ResponseException {
         // Arrange
@@ -114,6 +169,21 @@ public class GameServiceSqlTest {
         assertEquals("player1", updatedGame.whiteUsername());
     }
 
+    @Test
+    public void testJoinGameAlreadyTaken() throws ResponseException {
+        // Arrange
+        var newGame = gameService.newGameRequest(new GameData(0, null, null, "ChessGame", null));
+        var gameID = Integer.toString(newGame.gameID());
+        gameService.joinGame(new JoinGameRequest(gameID, "WHITE"), "player1");
+
+        // Act & Assert
+        ResponseException thrown = assertThrows(ResponseException.class, () -> {
+            gameService.joinGame(new JoinGameRequest(gameID, "WHITE"), "player2");
+        });
+
+        assertEquals(403, thrown.statusCode());
+    }
+
     @Test
     public void testJoinGameThrowsException() {
         // Arrange
@@ -127,4 +197,58 @@ public class GameServiceSqlTest {
         assertEquals(400, thrown.statusCode());
         assertEquals("Error: bad request", thrown.getMessage());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testJoinGameAsyncSuccess() throws ResponseException {
+        // Arrange
+        var newGame = gameService.newGameRequest(new GameData(0, null, null, "ChessGame", null));
+        var gameID = Integer.toString(newGame.gameID());
+
+        // Act
+        gameService.joinGameAsync(new JoinGameRequest(gameID, "BLACK"), "player1").join();
+
+        // Assert
+        assertEquals("player1", gameService.getGame(newGame.gameID()).blackUsername());
+    }
+
+    @Test
+    public void testJoinGameAsyncAlreadyTaken() throws ResponseException {
+        // Arrange
+        var newGame = gameService.newGameRequest(new GameData(0, null, null, "ChessGame", null));
+        var gameID = Integer.toString(newGame.gameID());
+        gameService.joinGameAsync(new JoinGameRequest(gameID, "WHITE"), "player1").join();
+
+        // Act & Assert
+        CompletionException thrown = assertThrows(CompletionException.class, () -> {
+            gameService.joinGameAsync(new JoinGameRequest(gameID, "WHITE"), "player2").join();
+        });
+
+        assertEquals(403, ((ResponseException) thrown.getCause()).statusCode());
+    }
+
+    @Test
+    public void testSeatListenerToldOnlyAboutSuccessfulChanges() throws ResponseException {
+        // Arrange
+        var newGame = gameService.newGameRequest(new GameData(0, null, null, "ChessGame", null));
+        var gameID = Integer.toString(newGame.gameID());
+        var changes = new ArrayList<String>();
+        gameService.addSeatListener(new GameService.SeatListener() {
+            public void seatClaimed(int id, ChessGame.TeamColor color, String username) {
+                changes.add("claimed " + color + " " + username);
+            }
+
+            public void seatReleased(int id, ChessGame.TeamColor color, String username) {
+                changes.add("released " + color + " " + username);
+            }
+        });
+
+        // Act
+        gameService.joinGame(new JoinGameRequest(gameID, "WHITE"), "player1");
+        assertThrows(ResponseException.class, () -> gameService.joinGame(new JoinGameRequest(gameID, "WHITE"), "player2"));
+        gameService.joinGameAsync(new JoinGameRequest(gameID, "BLACK"), "player2").join();
+        gameService.leaveGame(newGame.gameID(), ChessGame.TeamColor.WHITE, "player1");
+
+        // Assert
+        assertEquals(List.of("claimed WHITE player1", "claimed BLACK player2", "released WHITE player1"), changes);
+    }
+}
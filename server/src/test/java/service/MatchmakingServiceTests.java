@@ -0,0 +1,145 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.MemoryDataAccess;
+import model.MatchRequest;
+import model.MatchResponse;
+import model.ResponseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MatchmakingServiceTests {
+
+    // A clock the test moves by hand
+    private static class ManualClock extends Clock {
+        long millis = 1_000_000;
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private MemoryDataAccess.GameDAO gameDAO;
+    private MatchmakingService matchmaking;
+    private List<MatchmakingService.Match> matches;
+
+    @BeforeEach
+    public void setUp() {
+        gameDAO = new MemoryDataAccess.GameDAO();
+        matchmaking = new MatchmakingService(gameDAO, clock);
+        matches = new ArrayList<>();
+        matchmaking.addMatchListener(matches::add);
+    }
+
+    @Test
+    public void testCloseRatingsArePairedIntoAGameWithBothSeats() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(300, 2, 1500));
+        clock.millis += 1000;
+        matchmaking.enqueue("bob", new MatchRequest(300, 2, 1560));
+
+        assertEquals(1, matchmaking.tick());
+        assertEquals(1, matches.size());
+        var match = matches.getFirst();
+        // Alice waited longer, so she plays white
+        assertEquals("alice", match.whiteUsername());
+        assertEquals("bob", match.blackUsername());
+
+        var game = gameDAO.getGame(match.gameID());
+        assertEquals("alice", game.whiteUsername());
+        assertEquals("bob", game.blackUsername());
+        assertNotNull(game.game().getClock());
+        assertEquals(2000, game.game().getClock().getIncrementMillis());
+
+        var status = matchmaking.status("bob");
+        assertEquals(MatchResponse.Status.MATCHED, status.status());
+        assertEquals(Integer.valueOf(match.gameID()), status.gameID());
+        assertEquals(ChessGame.TeamColor.BLACK, status.playerColor());
+    }
+
+    @Test
+    public void testBandWidensTheLongerPlayersWait() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(null, null, 1500));
+        matchmaking.enqueue("bob", new MatchRequest(null, null, 1800));
+
+        assertEquals(0, matchmaking.tick());
+        assertEquals(MatchResponse.Status.WAITING, matchmaking.status("alice").status());
+
+        // 100 to start, plus 50 every 10 seconds: 300 apart is reached after 40 seconds
+        clock.millis += 30_000;
+        assertEquals(0, matchmaking.tick());
+        clock.millis += 10_000;
+        assertEquals(1, matchmaking.tick());
+    }
+
+    @Test
+    public void testClosestRatingIsPreferred() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(null, null, 1500));
+        matchmaking.enqueue("far", new MatchRequest(null, null, 1590));
+        matchmaking.enqueue("near", new MatchRequest(null, null, 1510));
+
+        assertEquals(1, matchmaking.tick());
+        assertEquals("near", matches.getFirst().blackUsername());
+        assertEquals(MatchResponse.Status.WAITING, matchmaking.status("far").status());
+    }
+
+    @Test
+    public void testTimeControlsAreNeverMixed() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(60, 0, 1500));
+        matchmaking.enqueue("bob", new MatchRequest(600, 0, 1500));
+        matchmaking.enqueue("carol", new MatchRequest(null, null, 1500));
+
+        clock.millis += 600_000;
+        assertEquals(0, matchmaking.tick());
+        assertEquals(3, matchmaking.stats().waiting());
+    }
+
+    @Test
+    public void testLeaveAndBadRequests() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(null, null, null));
+        assertTrue(matchmaking.leave("alice"));
+        assertFalse(matchmaking.leave("alice"));
+        assertEquals(MatchResponse.Status.NOT_QUEUED, matchmaking.status("alice").status());
+
+        var error = assertThrows(ResponseException.class, () -> matchmaking.enqueue("bob", new MatchRequest(0, 0, 1500)));
+        assertEquals(400, error.statusCode());
+        assertThrows(ResponseException.class, () -> matchmaking.enqueue("bob", new MatchRequest(null, null, -5)));
+    }
+
+    @Test
+    public void testStatsCountPairingsAndWaits() throws Exception {
+        matchmaking.enqueue("alice", new MatchRequest(null, null, 1500));
+        matchmaking.enqueue("bob", new MatchRequest(null, null, 1500));
+        matchmaking.enqueue("carol", new MatchRequest(null, null, 3000));
+        clock.millis += 4000;
+        matchmaking.tick();
+
+        var stats = matchmaking.stats();
+        assertEquals(1, stats.pairings());
+        assertEquals(1, stats.waiting());
+        assertEquals(4000, stats.meanWaitMillis());
+        assertEquals(4000, stats.longestWaitMillis());
+        assertEquals(1 / 60.0, stats.pairingsPerSecond(), 1e-9);
+
+        // Pairings drop out of the rate once they are a minute old
+        clock.millis += 60_000;
+        assertEquals(0.0, matchmaking.stats().pairingsPerSecond(), 1e-9);
+    }
+}
@@ -0,0 +1,146 @@
+package service;
+
+import chess.ChessGame;
+import dataaccess.MemoryDataAccess;
+import model.GameData;
+import model.PlayerRating;
+import model.ResponseException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RatingServiceTests {
+
+    // A clock the test moves by hand
+    private static class ManualClock extends Clock {
+        long millis = 1_000_000;
+
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private MemoryDataAccess.RatingDAO ratingDAO;
+    private RatingService ratingService;
+    private int nextGameID = 1;
+
+    @BeforeEach
+    public void setUp() {
+        ratingDAO = new MemoryDataAccess.RatingDAO();
+        ratingService = new RatingService(ratingDAO, clock);
+    }
+
+    private GameData finishedGame(String white, String black, ChessGame.TeamColor winner) {
+        var game = new ChessGame();
+        game.gameOver();
+        game.setWinner(winner);
+        return new GameData(nextGameID++, white, black, "rated", game);
+    }
+
+    @Test
+    public void testWinnerGainsWhatLoserLoses() throws Exception {
+        var updated = ratingService.gameEnded(finishedGame("alice", "bob", ChessGame.TeamColor.BLACK));
+        var alice = updated.get(0);
+        var bob = updated.get(1);
+        assertTrue(bob.rating() > 1500);
+        assertEquals(1500 - alice.rating(), bob.rating() - 1500, 1e-9);
+        assertTrue(bob.deviation() < 350);
+        assertEquals(1, bob.games());
+
+        assertEquals(bob, ratingService.getRating("bob"));
+        assertEquals(List.of(bob, alice), ratingService.getLeaderboard(10).players());
+        assertEquals(1, ratingDAO.getResults().size());
+        assertEquals(2, ratingDAO.getRatings().size());
+    }
+
+    @Test
+    public void testDrawAndUnratedGames() throws Exception {
+        var updated = ratingService.gameEnded(finishedGame("alice", "bob", null));
+        assertEquals(1500, updated.get(0).rating(), 1e-9);
+        assertEquals(1500, updated.get(1).rating(), 1e-9);
+
+        // An empty seat, one player in both seats, or a game still going
+        assertTrue(ratingService.gameEnded(finishedGame("alice", null, ChessGame.TeamColor.WHITE)).isEmpty());
+        assertTrue(ratingService.gameEnded(finishedGame("alice", "alice", ChessGame.TeamColor.WHITE)).isEmpty());
+        assertTrue(ratingService.gameEnded(new GameData(99, "alice", "bob", "live", new ChessGame())).isEmpty());
+        assertEquals(1, ratingDAO.getResults().size());
+        assertEquals(1500, ratingService.getRating("carol").rating(), 1e-9);
+    }
+
+    @Test
+    public void testRecomputeReproducesLiveRatingsExactly() throws Exception {
+        var random = new Random(7);
+        var colors = new ChessGame.TeamColor[]{ChessGame.TeamColor.WHITE, ChessGame.TeamColor.BLACK, null};
+        for (int i = 0; i < 3000; i++) {
+            var white = "player" + random.nextInt(200);
+            var black = "player" + random.nextInt(200);
+            ratingService.gameEnded(finishedGame(white, black, colors[random.nextInt(3)]));
+            clock.millis += random.nextInt((int) Duration.ofHours(6).toMillis());
+        }
+        var live = ratingService.getLeaderboard(RatingService.MAX_LEADERBOARD_SIZE).players();
+
+        var response = ratingService.recompute();
+        assertEquals(ratingDAO.getResults().size(), response.results());
+        assertEquals(live.size(), response.players());
+        // Far fewer steps than games, since games with no player in common share a round
+        assertTrue(response.rounds() < response.results() / 10);
+        assertEquals(live, ratingService.getLeaderboard(RatingService.MAX_LEADERBOARD_SIZE).players());
+
+        // Again from the stored ratings alone, as after a restart
+        var restarted = new RatingService(ratingDAO, clock);
+        restarted.load();
+        assertEquals(live, restarted.getLeaderboard(RatingService.MAX_LEADERBOARD_SIZE).players());
+    }
+
+    @Test
+    public void testLeaderboardOrderAndLimit() throws Exception {
+        ratingService.gameEnded(finishedGame("alice", "bob", ChessGame.TeamColor.WHITE));
+        ratingService.gameEnded(finishedGame("alice", "carol", ChessGame.TeamColor.WHITE));
+        ratingService.gameEnded(finishedGame("dave", "erin", null));
+
+        var top = ratingService.getLeaderboard(3).players();
+        assertEquals(3, top.size());
+        assertEquals("alice", top.get(0).username());
+        // Equal ratings are listed by username
+        assertEquals("dave", top.get(1).username());
+        assertEquals("erin", top.get(2).username());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(top.get(i - 1).rating() >= top.get(i).rating());
+        }
+
+        var error = assertThrows(ResponseException.class, () -> ratingService.getLeaderboard(0));
+        assertEquals(400, error.statusCode());
+    }
+
+    @Test
+    public void testDeviationGrowsBackWithTimeAway() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            ratingService.gameEnded(finishedGame("alice", "bob", i % 2 == 0 ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK));
+        }
+        PlayerRating settled = ratingService.getRating("alice");
+
+        clock.millis += Duration.ofDays(365).toMillis();
+        var afterBreak = ratingService.gameEnded(finishedGame("alice", "carol", ChessGame.TeamColor.WHITE)).get(0);
+        var beforeBreak = Glicko.update(settled, Glicko.unrated("carol"), 1, settled.lastPlayedMillis());
+        // Less certain after a year away, so the same win moves the rating further
+        assertTrue(afterBreak.rating() - settled.rating() > beforeBreak.rating() - settled.rating());
+    }
+}
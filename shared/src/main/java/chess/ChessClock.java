@@ -0,0 +1,83 @@
+package chess;
+
+/**
+ * A chess clock for a time control of base time plus an increment per move.
+ * Only the side to move's time runs, and nothing runs until the first move
+ * is made. Times are epoch milliseconds, so a stored clock keeps running
+ * correctly after it is loaded again.
+ */
+public class ChessClock {
+    private final long incrementMillis;
+    private long whiteMillis;
+    private long blackMillis;
+    private boolean running = false;
+    // When the side to move's time started running
+    private long turnStartedAt;
+
+    public ChessClock(long baseMillis, long incrementMillis) {
+        this.incrementMillis = incrementMillis;
+        this.whiteMillis = baseMillis;
+        this.blackMillis = baseMillis;
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return time left for the given side at now, counting time used on the current move
+     */
+    public long remainingMillis(ChessGame.TeamColor color, ChessGame.TeamColor toMove, long now) {
+        long stored = color == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis;
+        if (running && color == toMove) {
+            return stored - (now - turnStartedAt);
+        }
+        return stored;
+    }
+
+    public boolean hasFlagged(ChessGame.TeamColor toMove, long now) {
+        return running && remainingMillis(toMove, toMove, now) <= 0;
+    }
+
+    /**
+     * @return when the side to move runs out of time, or Long.MAX_VALUE while the clock is stopped
+     */
+    public long flagAt(ChessGame.TeamColor toMove) {
+        if (!running) {
+            return Long.MAX_VALUE;
+        }
+        return turnStartedAt + (toMove == ChessGame.TeamColor.WHITE ? whiteMillis : blackMillis);
+    }
+
+    /**
+     * Ends the mover's turn: charges the time the move took, adds the
+     * increment and starts the opponent's time. The first move starts the clock.
+     */
+    public void punch(ChessGame.TeamColor mover, long now) {
+        long remaining = remainingMillis(mover, mover, now) + incrementMillis;
+        if (mover == ChessGame.TeamColor.WHITE) {
+            whiteMillis = remaining;
+        } else {
+            blackMillis = remaining;
+        }
+        running = true;
+        turnStartedAt = now;
+    }
+
+    /**
+     * Stops the clock for good, charging the side to move for the time it used.
+     */
+    public void stop(ChessGame.TeamColor toMove, long now) {
+        long remaining = Math.max(0, remainingMillis(toMove, toMove, now));
+        if (toMove == ChessGame.TeamColor.WHITE) {
+            whiteMillis = remaining;
+        } else {
+            blackMillis = remaining;
+        }
+        running = false;
+    }
+}
@@ -19,6 +19,10 @@ public class ChessGame {
     }
     private GameState gameState = GameState.IN_PLAY;
     private TeamColor winner = null;
+    // Half-moves played so far; lets a client applying single moves notice one it missed
+    private int ply = 0;
+    // Null for untimed games
+    private ChessClock clock = null;
 
     public ChessGame() {
         board.resetBoard();
@@ -36,6 +40,29 @@ public class ChessGame {
         winner = color;
     }
 
+    public TeamColor getWinner() {
+        return winner;
+    }
+
+    /**
+     * @return Number of moves made in this game so far, counting each side's move separately
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    public void setPly(int ply) {
+        this.ply = ply;
+    }
+
+    public ChessClock getClock() {
+        return clock;
+    }
+
+    public void setClock(ChessClock clock) {
+        this.clock = clock;
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -111,6 +138,7 @@ public class ChessGame {
             nextTurn = TeamColor.WHITE;
         }
         setTeamTurn(nextTurn);
+        ply++;
     }
 
     /**
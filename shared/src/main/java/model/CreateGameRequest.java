@@ -0,0 +1,8 @@
+package model;
+
+/**
+ * A new game's name and, for a timed game, its time control: clockSeconds per
+ * side plus incrementSeconds after every move. Games without clockSeconds are untimed.
+ */
+public record CreateGameRequest(String gameName, Integer clockSeconds, Integer incrementSeconds) {
+}
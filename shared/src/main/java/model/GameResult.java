@@ -0,0 +1,13 @@
+package model;
+
+import chess.ChessGame;
+
+/**
+ * One finished, rated game in the result history.
+ *
+ * @param resultID orders results by when the games ended
+ * @param winner   null for a draw
+ */
+public record GameResult(long resultID, int gameID, String whiteUsername, String blackUsername, ChessGame.TeamColor winner,
+                         long endedAtMillis) {
+}
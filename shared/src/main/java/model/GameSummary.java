@@ -0,0 +1,6 @@
+package model;
+
+import chess.ChessGame;
+
+public record GameSummary(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame.GameState status) {
+}
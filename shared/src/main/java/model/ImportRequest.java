@@ -0,0 +1,6 @@
+package model;
+
+import java.util.List;
+
+public record ImportRequest(List<UserData> users, List<GameData> games, Integer batchSize) {
+}
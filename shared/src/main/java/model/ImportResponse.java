@@ -0,0 +1,4 @@
+package model;
+
+public record ImportResponse(int users, int games) {
+}
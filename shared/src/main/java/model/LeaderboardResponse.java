@@ -0,0 +1,6 @@
+package model;
+
+import java.util.List;
+
+public record LeaderboardResponse(List<PlayerRating> players) {
+}
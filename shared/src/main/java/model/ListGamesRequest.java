@@ -0,0 +1,6 @@
+package model;
+
+import chess.ChessGame;
+
+public record ListGamesRequest(Integer cursor, Integer limit, Boolean openSeats, String player, ChessGame.GameState status) {
+}
@@ -2,5 +2,5 @@ package model;
 
 import java.util.List;
 
-public record ListGamesResponse(List<GameData> games) {
+public record ListGamesResponse(List<GameSummary> games, Integer nextCursor) {
 }
@@ -0,0 +1,9 @@
+package model;
+
+/**
+ * Entry into the matchmaking queue: the time control wanted, as for CreateGameRequest,
+ * and the player's rating. Players are only paired with others who want the same time control.
+ * The server fills in the rating from the player's stored rating.
+ */
+public record MatchRequest(Integer clockSeconds, Integer incrementSeconds, Integer rating) {
+}
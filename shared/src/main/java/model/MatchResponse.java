@@ -0,0 +1,15 @@
+package model;
+
+import chess.ChessGame;
+
+/**
+ * A player's place in matchmaking. While WAITING, waitedSeconds says how long
+ * so far; once MATCHED, gameID and playerColor say where to play.
+ */
+public record MatchResponse(Status status, Integer gameID, ChessGame.TeamColor playerColor, Long waitedSeconds) {
+    public enum Status {
+        NOT_QUEUED,
+        WAITING,
+        MATCHED
+    }
+}
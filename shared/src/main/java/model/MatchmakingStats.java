@@ -0,0 +1,10 @@
+package model;
+
+/**
+ * @param pairingsPerSecond averaged over the last minute
+ * @param meanWaitMillis    mean time matched players spent in the queue
+ * @param longestWaitMillis how long the player waiting longest right now has waited
+ */
+public record MatchmakingStats(long pairings, double pairingsPerSecond, int waiting, long meanWaitMillis,
+                               long longestWaitMillis) {
+}
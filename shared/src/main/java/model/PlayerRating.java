@@ -0,0 +1,9 @@
+package model;
+
+/**
+ * A player's Glicko rating.
+ *
+ * @param deviation how uncertain the rating is; it shrinks with games played and grows back with time away
+ */
+public record PlayerRating(String username, double rating, double deviation, int games, long lastPlayedMillis) {
+}
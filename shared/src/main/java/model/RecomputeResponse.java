@@ -0,0 +1,7 @@
+package model;
+
+/**
+ * @param rounds number of sequential steps the replay took; the games within each ran in parallel
+ */
+public record RecomputeResponse(int results, int players, int rounds, long millis) {
+}
@@ -0,0 +1,373 @@
+package websocket;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import model.MatchRequest;
+import websocket.commands.UserGameCommand;
+import websocket.messages.ServerMessage;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding of UserGameCommand and ServerMessage, for clients
+ * that send binary WebSocket frames instead of JSON text. Every frame starts
+ * with a version byte, the type and a byte of flags saying which optional
+ * fields follow. A move packs into two bytes and a board into 32, one nibble
+ * per square, so a MOVE is about 20 bytes and a LOAD_GAME about 50.
+ */
+public final class BinaryProtocol {
+    public static final byte VERSION = 1;
+
+    // Command flags
+    private static final int MOVE_UPDATES = 1;
+    private static final int HAS_LAST_SEQ = 1 << 1;
+    private static final int HAS_MOVE = 1 << 2;
+    private static final int HAS_GAME_ID = 1 << 3;
+    private static final int HAS_AUTH_TOKEN = 1 << 4;
+    private static final int COMPRESSION = 1 << 5;
+    private static final int HAS_MATCH_REQUEST = 1 << 6;
+    private static final int HAS_STREAM_ID = 1 << 7;
+
+    // Message flags
+    private static final int HAS_SEQ = 1;
+    private static final int HAS_MESSAGE = 1 << 1;
+    private static final int HAS_ERROR_MESSAGE = 1 << 2;
+    private static final int HAS_GAME = 1 << 3;
+    private static final int HAS_MOVE_DELTA = 1 << 4;
+    private static final int HAS_MATCH = 1 << 5;
+    private static final int HAS_MESSAGE_STREAM_ID = 1 << 6;
+
+    private static final int BOARD_BYTES = 32;
+    private static final int BLACK_PIECE = 8;
+    private static final int NO_COLOR = 0;
+    private static final int NO_VALUE = -1;
+
+    private BinaryProtocol() {
+    }
+
+    public static ByteBuffer encode(UserGameCommand command) {
+        var authToken = command.getAuthToken() == null ? null : utf8(command.getAuthToken());
+        int flags = 0;
+        int size = 3;
+        if (command.wantsMoveUpdates()) {
+            flags |= MOVE_UPDATES;
+        }
+        if (command.wantsCompression()) {
+            flags |= COMPRESSION;
+        }
+        if (command.getCommandType() == UserGameCommand.CommandType.RESUME) {
+            flags |= HAS_LAST_SEQ;
+            size += Long.BYTES;
+        }
+        if (command.getMove() != null) {
+            flags |= HAS_MOVE;
+            size += Short.BYTES;
+        }
+        if (command.getGameID() != null) {
+            flags |= HAS_GAME_ID;
+            size += Integer.BYTES;
+        }
+        if (authToken != null) {
+            flags |= HAS_AUTH_TOKEN;
+            size += Short.BYTES + authToken.length;
+        }
+        if (command.getMatchRequest() != null) {
+            flags |= HAS_MATCH_REQUEST;
+            // Clock, increment, rating
+            size += 3 * Integer.BYTES;
+        }
+        if (command.getStreamId() != null) {
+            flags |= HAS_STREAM_ID;
+            size += Long.BYTES;
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION).put((byte) command.getCommandType().ordinal()).put((byte) flags);
+        if ((flags & HAS_GAME_ID) != 0) {
+            buffer.putInt(command.getGameID());
+        }
+        if ((flags & HAS_AUTH_TOKEN) != 0) {
+            putBytes(buffer, authToken);
+        }
+        if ((flags & HAS_MOVE) != 0) {
+            buffer.putShort(packMove(command.getMove()));
+        }
+        if ((flags & HAS_LAST_SEQ) != 0) {
+            buffer.putLong(command.getLastSeq());
+        }
+        if ((flags & HAS_MATCH_REQUEST) != 0) {
+            var request = command.getMatchRequest();
+            putOptionalInt(buffer, request.clockSeconds());
+            putOptionalInt(buffer, request.incrementSeconds());
+            putOptionalInt(buffer, request.rating());
+        }
+        if ((flags & HAS_STREAM_ID) != 0) {
+            buffer.putLong(command.getStreamId());
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is not a command in this protocol
+     */
+    public static UserGameCommand decodeCommand(ByteBuffer buffer) {
+        try {
+            checkVersion(buffer);
+            var type = enumAt(UserGameCommand.CommandType.values(), buffer.get());
+            int flags = buffer.get();
+            Integer gameID = (flags & HAS_GAME_ID) != 0 ? buffer.getInt() : null;
+            String authToken = (flags & HAS_AUTH_TOKEN) != 0 ? getString(buffer) : null;
+            ChessMove move = (flags & HAS_MOVE) != 0 ? unpackMove(buffer.getShort()) : null;
+            var command = new UserGameCommand(type, authToken, gameID, move);
+            if ((flags & MOVE_UPDATES) != 0) {
+                command.withMoveUpdates();
+            }
+            if ((flags & COMPRESSION) != 0) {
+                command.withCompression();
+            }
+            if ((flags & HAS_LAST_SEQ) != 0) {
+                command.withLastSeq(buffer.getLong());
+            }
+            if ((flags & HAS_MATCH_REQUEST) != 0) {
+                command.withMatchRequest(new MatchRequest(getOptionalInt(buffer), getOptionalInt(buffer), getOptionalInt(buffer)));
+            }
+            if ((flags & HAS_STREAM_ID) != 0) {
+                command.withStreamId(buffer.getLong());
+            }
+            return command;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated command");
+        }
+    }
+
+    public static ByteBuffer encode(ServerMessage message) {
+        var text = message.getMessage() == null ? null : utf8(message.getMessage());
+        var errorText = message.getErrorMessage() == null ? null : utf8(message.getErrorMessage());
+        int flags = 0;
+        int size = 3;
+        if (message.getSeq() != null) {
+            flags |= HAS_SEQ;
+            size += Long.BYTES;
+        }
+        if (text != null) {
+            flags |= HAS_MESSAGE;
+            size += Short.BYTES + text.length;
+        }
+        if (errorText != null) {
+            flags |= HAS_ERROR_MESSAGE;
+            size += Short.BYTES + errorText.length;
+        }
+        if (message.getGame() != null) {
+            flags |= HAS_GAME;
+            // Board, turn, state, winner, ply
+            size += BOARD_BYTES + 3 + Integer.BYTES;
+        }
+        if (message.getMove() != null) {
+            flags |= HAS_MOVE_DELTA;
+            // Move, ply, state, winner
+            size += Short.BYTES + Integer.BYTES + 2;
+        }
+        if (message.getGameID() != null) {
+            flags |= HAS_MATCH;
+            size += Integer.BYTES + 1;
+        }
+        if (message.getStreamId() != null) {
+            flags |= HAS_MESSAGE_STREAM_ID;
+            size += Long.BYTES;
+        }
+
+        var buffer = ByteBuffer.allocate(size);
+        buffer.put(VERSION).put((byte) message.getServerMessageType().ordinal()).put((byte) flags);
+        if ((flags & HAS_SEQ) != 0) {
+            buffer.putLong(message.getSeq());
+        }
+        if ((flags & HAS_MESSAGE) != 0) {
+            putBytes(buffer, text);
+        }
+        if ((flags & HAS_ERROR_MESSAGE) != 0) {
+            putBytes(buffer, errorText);
+        }
+        if ((flags & HAS_GAME) != 0) {
+            putGame(buffer, message.getGame());
+        }
+        if ((flags & HAS_MOVE_DELTA) != 0) {
+            buffer.putShort(packMove(message.getMove()));
+            buffer.putInt(message.getPly());
+            buffer.put((byte) message.getGameState().ordinal());
+            buffer.put(colorCode(message.getWinner()));
+        }
+        if ((flags & HAS_MATCH) != 0) {
+            buffer.putInt(message.getGameID());
+            buffer.put(colorCode(message.getPlayerColor()));
+        }
+        if ((flags & HAS_MESSAGE_STREAM_ID) != 0) {
+            buffer.putLong(message.getStreamId());
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is not a message in this protocol
+     */
+    public static ServerMessage decodeMessage(ByteBuffer buffer) {
+        try {
+            checkVersion(buffer);
+            var type = enumAt(ServerMessage.ServerMessageType.values(), buffer.get());
+            int flags = buffer.get();
+            Long seq = (flags & HAS_SEQ) != 0 ? buffer.getLong() : null;
+            String text = (flags & HAS_MESSAGE) != 0 ? getString(buffer) : null;
+            String errorText = (flags & HAS_ERROR_MESSAGE) != 0 ? getString(buffer) : null;
+            ChessGame game = (flags & HAS_GAME) != 0 ? getGame(buffer) : null;
+
+            ServerMessage message;
+            if ((flags & HAS_MOVE_DELTA) != 0) {
+                var move = unpackMove(buffer.getShort());
+                int ply = buffer.getInt();
+                var gameState = enumAt(ChessGame.GameState.values(), buffer.get());
+                message = ServerMessage.move(move, ply, gameState, colorAt(buffer.get()));
+            } else if ((flags & HAS_MATCH) != 0) {
+                message = ServerMessage.match(buffer.getInt(), colorAt(buffer.get()));
+            } else {
+                message = new ServerMessage(type, text);
+            }
+            if (errorText != null) {
+                message.setErrorMessage(errorText);
+            }
+            if (game != null) {
+                message.setGame(game);
+            }
+            if (seq != null) {
+                message.setSeq(seq);
+            }
+            if ((flags & HAS_MESSAGE_STREAM_ID) != 0) {
+                message.setStreamId(buffer.getLong());
+            }
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated message");
+        }
+    }
+
+    // From square in the top six bits, to square in the next six, promotion piece (0 for none) in the low three
+    private static short packMove(ChessMove move) {
+        var promotion = move.getPromotionPiece();
+        int promotionCode = promotion == null ? 0 : promotion.ordinal() + 1;
+        return (short) (squareIndex(move.getStartPosition()) << 9 | squareIndex(move.getEndPosition()) << 3 | promotionCode);
+    }
+
+    private static ChessMove unpackMove(short packed) {
+        int promotionCode = packed & 0x7;
+        var promotion = promotionCode == 0 ? null : enumAt(ChessPiece.PieceType.values(), promotionCode - 1);
+        return new ChessMove(squareAt(packed >> 9 & 0x3f), squareAt(packed >> 3 & 0x3f), promotion);
+    }
+
+    private static int squareIndex(ChessPosition position) {
+        return (position.getRow() - 1) * 8 + position.getColumn() - 1;
+    }
+
+    private static ChessPosition squareAt(int index) {
+        return new ChessPosition(index / 8 + 1, index % 8 + 1);
+    }
+
+    // One nibble per square, a1 first: 0 for empty, else the piece type plus one, with 8 set for black
+    private static void putGame(ByteBuffer buffer, ChessGame game) {
+        var board = game.getBoard();
+        for (int i = 0; i < 64; i += 2) {
+            buffer.put((byte) (pieceCode(board.getPiece(squareAt(i))) | pieceCode(board.getPiece(squareAt(i + 1))) << 4));
+        }
+        buffer.put(colorCode(game.getTeamTurn()));
+        buffer.put((byte) game.getGameState().ordinal());
+        buffer.put(colorCode(game.getWinner()));
+        buffer.putInt(game.getPly());
+    }
+
+    private static ChessGame getGame(ByteBuffer buffer) {
+        var board = new ChessBoard();
+        for (int i = 0; i < 64; i += 2) {
+            int pair = buffer.get();
+            board.addPiece(squareAt(i), pieceAt(pair & 0xf));
+            board.addPiece(squareAt(i + 1), pieceAt(pair >> 4 & 0xf));
+        }
+        var game = new ChessGame();
+        game.setBoard(board);
+        game.setTeamTurn(colorAt(buffer.get()));
+        if (enumAt(ChessGame.GameState.values(), buffer.get()) == ChessGame.GameState.GAME_OVER) {
+            game.gameOver();
+        }
+        game.setWinner(colorAt(buffer.get()));
+        game.setPly(buffer.getInt());
+        return game;
+    }
+
+    private static int pieceCode(ChessPiece piece) {
+        if (piece == null) {
+            return 0;
+        }
+        int code = piece.getPieceType().ordinal() + 1;
+        return piece.getTeamColor() == ChessGame.TeamColor.BLACK ? code | BLACK_PIECE : code;
+    }
+
+    private static ChessPiece pieceAt(int code) {
+        if (code == 0) {
+            return null;
+        }
+        var color = (code & BLACK_PIECE) != 0 ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        return new ChessPiece(color, enumAt(ChessPiece.PieceType.values(), (code & ~BLACK_PIECE) - 1));
+    }
+
+    private static byte colorCode(ChessGame.TeamColor color) {
+        return (byte) (color == null ? NO_COLOR : color.ordinal() + 1);
+    }
+
+    private static ChessGame.TeamColor colorAt(int code) {
+        return code == NO_COLOR ? null : enumAt(ChessGame.TeamColor.values(), code - 1);
+    }
+
+    private static <T> T enumAt(T[] values, int ordinal) {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IllegalArgumentException("Unknown value " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void checkVersion(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported protocol version " + version);
+        }
+    }
+
+    // Absent values are written as -1, which no time control or rating can be
+    private static void putOptionalInt(ByteBuffer buffer, Integer value) {
+        buffer.putInt(value == null ? NO_VALUE : value);
+    }
+
+    private static Integer getOptionalInt(ByteBuffer buffer) {
+        int value = buffer.getInt();
+        return value == NO_VALUE ? null : value;
+    }
+
+    private static byte[] utf8(String text) {
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("String too long for the binary protocol");
+        }
+        return bytes;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,77 @@
+package websocket;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate-compressed WebSocket frames. A compressed frame is a binary frame
+ * holding one marker byte and then a raw deflate stream of the original
+ * message, which is either JSON text or a BinaryProtocol frame depending on
+ * what the client speaks. The marker never starts a BinaryProtocol frame, so
+ * a client can tell the two apart from the first byte.
+ */
+public final class FrameCompression {
+    public static final byte DEFLATED = (byte) 0xdf;
+    // Guards a client against a frame that inflates without end
+    private static final int MAX_INFLATED_BYTES = 1 << 20;
+
+    private FrameCompression() {
+    }
+
+    /**
+     * @return the compressed frame, ready to send; the payload's position is left alone
+     */
+    public static ByteBuffer compress(ByteBuffer payload, int level) {
+        var deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(payload.duplicate());
+            deflater.finish();
+            var out = new ByteArrayOutputStream(payload.remaining() / 2 + 16);
+            out.write(DEFLATED);
+            var chunk = new byte[1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                out.write(chunk, 0, length);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static boolean isCompressed(ByteBuffer frame) {
+        return frame.hasRemaining() && frame.get(frame.position()) == DEFLATED;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is not valid compressed data
+     */
+    public static ByteBuffer decompress(ByteBuffer frame) {
+        var inflater = new Inflater(true);
+        try {
+            var input = frame.duplicate();
+            input.get();
+            inflater.setInput(input);
+            var out = new ByteArrayOutputStream(input.remaining() * 4);
+            var chunk = new byte[1024];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(chunk);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed frame");
+                }
+                out.write(chunk, 0, length);
+                if (out.size() > MAX_INFLATED_BYTES) {
+                    throw new IllegalArgumentException("Compressed frame too large");
+                }
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed frame");
+        } finally {
+            inflater.end();
+        }
+    }
+}
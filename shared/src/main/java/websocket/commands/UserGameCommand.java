@@ -1,6 +1,7 @@
 package websocket.commands;
 
 import chess.ChessMove;
+import model.MatchRequest;
 
 import java.util.Objects;
 
@@ -20,6 +21,19 @@ public class UserGameCommand {
 
     public final ChessMove move;
 
+    // Set on CONNECT by clients that can apply MOVE messages instead of a full LOAD_GAME after every move
+    private Boolean moveUpdates;
+
+    // Set on RESUME: the last event sequence number the client saw before it dropped, and its stream
+    private Long lastSeq;
+    private Long streamId;
+
+    // Set by clients that can read deflate-compressed frames; large messages to them are sent compressed
+    private Boolean compression;
+
+    // Set on MATCH: the time control and rating to queue with
+    private MatchRequest matchRequest;
+
     public UserGameCommand(CommandType commandType, String authToken, Integer gameID, ChessMove move) {
         this.commandType = commandType;
         this.authToken = authToken;
@@ -31,7 +45,13 @@ public class UserGameCommand {
         CONNECT,
         MAKE_MOVE,
         LEAVE,
-        RESIGN
+        RESIGN,
+        // Ask for a fresh LOAD_GAME, e.g. after missing a MOVE
+        RESYNC,
+        // Rejoin after a dropped connection and receive only the events missed since lastSeq
+        RESUME,
+        // Join the matchmaking queue; a MATCH message follows once an opponent is found
+        MATCH
     }
 
     public CommandType getCommandType() {
@@ -50,6 +70,54 @@ public class UserGameCommand {
         return move;
     }
 
+    public UserGameCommand withMoveUpdates() {
+        this.moveUpdates = true;
+        return this;
+    }
+
+    public boolean wantsMoveUpdates() {
+        return Boolean.TRUE.equals(moveUpdates);
+    }
+
+    public UserGameCommand withLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+        return this;
+    }
+
+    public long getLastSeq() {
+        return lastSeq == null ? 0 : lastSeq;
+    }
+
+    public UserGameCommand withStreamId(long streamId) {
+        this.streamId = streamId;
+        return this;
+    }
+
+    /**
+     * @return the stream lastSeq was counted in, or null if the client has none
+     */
+    public Long getStreamId() {
+        return streamId;
+    }
+
+    public UserGameCommand withCompression() {
+        this.compression = true;
+        return this;
+    }
+
+    public boolean wantsCompression() {
+        return Boolean.TRUE.equals(compression);
+    }
+
+    public UserGameCommand withMatchRequest(MatchRequest matchRequest) {
+        this.matchRequest = matchRequest;
+        return this;
+    }
+
+    public MatchRequest getMatchRequest() {
+        return matchRequest;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
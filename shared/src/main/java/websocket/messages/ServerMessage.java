@@ -1,6 +1,7 @@
 package websocket.messages;
 
 import chess.ChessGame;
+import chess.ChessMove;
 
 import java.util.Objects;
 
@@ -15,11 +16,27 @@ public class ServerMessage {
     String message;
     String errorMessage;
     ChessGame game = null;
+    // Set on MOVE messages only
+    ChessMove move = null;
+    Integer ply = null;
+    ChessGame.GameState gameState = null;
+    ChessGame.TeamColor winner = null;
+    // Position in the game's event stream; lets a client that drops resume where it left off
+    Long seq = null;
+    // Which numbering seq belongs to; it starts over when the server does
+    Long streamId = null;
+    // Set on MATCH messages only
+    Integer gameID = null;
+    ChessGame.TeamColor playerColor = null;
 
     public enum ServerMessageType {
         LOAD_GAME,
         ERROR,
-        NOTIFICATION
+        NOTIFICATION,
+        // A single move to apply to the board the client already has
+        MOVE,
+        // Matchmaking found an opponent; the game is ready to connect to
+        MATCH
     }
 
     public ServerMessage(ServerMessageType type, String body) {
@@ -51,6 +68,70 @@ public class ServerMessage {
         return game;
     }
 
+    /**
+     * Builds a MOVE message for a move that has just been made in the game.
+     * The ply and status are read from the game after the move.
+     */
+    public static ServerMessage move(ChessMove move, ChessGame game) {
+        return move(move, game.getPly(), game.getGameState(), game.getWinner());
+    }
+
+    public static ServerMessage move(ChessMove move, int ply, ChessGame.GameState gameState, ChessGame.TeamColor winner) {
+        var message = new ServerMessage(ServerMessageType.MOVE, null);
+        message.move = move;
+        message.ply = ply;
+        message.gameState = gameState;
+        message.winner = winner;
+        return message;
+    }
+
+    public static ServerMessage match(int gameID, ChessGame.TeamColor playerColor) {
+        var message = new ServerMessage(ServerMessageType.MATCH, null);
+        message.gameID = gameID;
+        message.playerColor = playerColor;
+        return message;
+    }
+
+    public ChessMove getMove() {
+        return move;
+    }
+
+    public Integer getPly() {
+        return ply;
+    }
+
+    public ChessGame.GameState getGameState() {
+        return gameState;
+    }
+
+    public ChessGame.TeamColor getWinner() {
+        return winner;
+    }
+
+    public Integer getGameID() {
+        return gameID;
+    }
+
+    public ChessGame.TeamColor getPlayerColor() {
+        return playerColor;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public Long getStreamId() {
+        return streamId;
+    }
+
+    public void setStreamId(long streamId) {
+        this.streamId = streamId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {